@@ -0,0 +1,13 @@
+package com.vs.starnet.star.constants;
+
+/**
+ * Declares enums for the delivery states of a message accepted by the sol
+ */
+public enum DeliveryState {
+    QUEUED,               // Stored by the sol, waiting for the delivery pipeline
+    DELIVERING,           // Being forwarded to the other stars
+    DELIVERED,            // Forwarded to all other stars
+    PARTIALLY_DELIVERED,  // At least one star could not be reached
+    FAILED,               // No star could be reached
+    STORED                // Stored by the sol, delivered synchronously or received from another star
+}
@@ -0,0 +1,10 @@
+package com.vs.starnet.star.constants;
+
+/**
+ * Declares enums for the kinds of message origins
+ */
+public enum OriginType {
+    COM_UUID,   // Component in the range 1000-9999
+    EMAIL,      // Email address of a user
+    INVALID     // Neither of both
+}
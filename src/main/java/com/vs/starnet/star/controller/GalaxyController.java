@@ -2,10 +2,12 @@ package com.vs.starnet.star.controller;
 
 import com.vs.starnet.star.model.Sol;
 import com.vs.starnet.star.service.GalaxyService;
+import com.vs.starnet.star.service.LinkStatsService;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -22,9 +24,11 @@ public class GalaxyController {
 
     // deendency injection -> service/GalaxyService
     GalaxyService galaxyService;
+    LinkStatsService linkStatsService;
 
-    public GalaxyController(GalaxyService galaxyService) {
+    public GalaxyController(GalaxyService galaxyService, LinkStatsService linkStatsService) {
         this.galaxyService = galaxyService;
+        this.linkStatsService = linkStatsService;
     }
 
     /**
@@ -48,6 +52,15 @@ public class GalaxyController {
         return galaxyService.updateStar(starUuid, sol);
     }
 
+    /**
+     * Gets statistics (latency, throughput, failures) of the links to the other stars
+     * @return map containing the statistics per peer star
+     */
+    @GetMapping("/links")
+    public ResponseEntity<Map<String, Object>> getLinkStatistics() {
+        return linkStatsService.getLinkStatistics();
+    }
+
     /**
      * Fetches details of specified sol
      * @param starUuid star uuid for identification
@@ -60,11 +73,13 @@ public class GalaxyController {
 
     /**
      * Gets map of registered star
+     * @param ifNoneMatch ETag of a previous response, answered with 304 if nothing changed
      * @return map containing details of star
      */
     @GetMapping
-    public ResponseEntity<Map<String, Object>> getStarDetails(){
-        return galaxyService.getStarDetails();
+    public ResponseEntity<Map<String, Object>> getStarDetails(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return galaxyService.getStarDetails(ifNoneMatch);
     }
 
     /**
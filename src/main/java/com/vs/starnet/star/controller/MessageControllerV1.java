@@ -3,6 +3,7 @@ package com.vs.starnet.star.controller;
 import com.vs.starnet.star.model.Message;
 import com.vs.starnet.star.service.MessageService;
 import jakarta.validation.Valid;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -44,18 +45,51 @@ public class MessageControllerV1 {
     }
 
     /**
-     * get messages
+     * searches the subjects of the active messages
+     * @param star star uuid for validation
+     * @param query words to search for
+     * @param limit maximum number of hits, 20 by default
+     * @return response entity with the matching messages in the header view, best match first
+     */
+    @GetMapping("/search")
+    public ResponseEntity<?> searchMessages(
+            @RequestParam String star,
+            @RequestParam("q") String query,
+            @RequestParam(required = false) Integer limit) {
+        return messageService.searchMessages(star, query, limit);
+    }
+
+    /**
+     * get messages, optionally page by page in the order of their last change
      * @param star star uuid for validation
      * @param scope filter such as "all", "active", etc
-     * @param view specific view
+     * @param view "id" (default), "header" or "full" (header and body)
+     * @param limit maximum number of messages per page
+     * @param cursor "next-cursor" of the previous page to continue after it
+     * @param since only messages changed at or after this timestamp
+     * @param origin only messages of this COM-UUID or EMAIL, with or without star suffix
+     * @param createdAfter only messages created after this timestamp
+     * @param createdBefore only messages created before this timestamp
+     * @param changedAfter only messages changed after this timestamp
+     * @param ifNoneMatch ETag of a previous response, answered with 304 if nothing changed
      * @return response entity with json
      */
     @GetMapping
     public ResponseEntity<?> getMessages(
             @RequestParam String star,
             @RequestParam(required = false) String scope,
-            @RequestParam(required = false) String view) {
-        return messageService.getMessages(star, scope, view);
+            @RequestParam(required = false) String view,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Long since,
+            @RequestParam(required = false) String origin,
+            @RequestParam(value = "created-after", required = false) Long createdAfter,
+            @RequestParam(value = "created-before", required = false) Long createdBefore,
+            @RequestParam(value = "changed-after", required = false) Long changedAfter,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return messageService.getMessages(star,
+                new MessageService.MessageQuery(scope, view, limit, cursor, since, origin, createdAfter, createdBefore, changedAfter),
+                ifNoneMatch);
     }
 
     /**
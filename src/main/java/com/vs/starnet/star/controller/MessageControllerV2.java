@@ -3,9 +3,13 @@ package com.vs.starnet.star.controller;
 import com.vs.starnet.star.model.Message;
 import com.vs.starnet.star.service.MessageService;
 import jakarta.validation.Valid;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.util.List;
 import java.util.Map;
 /**
  * newer version of the message controller
@@ -21,13 +25,81 @@ public class MessageControllerV2 {
     }
 
     /**
-     * message object is passed to the message service method
+     * message object is passed to the message service method.
+     * with the preference "respond-async" in the Prefer header (e.g. "Prefer: respond-async, wait=10")
+     * the sol answers with 202 accepted and the msg-id as soon as it stored the message,
+     * the delivery to the other stars continues in the background
      * @param message message Object containing all the details of the msg such as sender, star, content, etc
+     * @param prefer preferences of the client, may be null
      * @return response entity containing message's details.
      */
     @PostMapping()
     public ResponseEntity<Map<String, String>> handleMessage(
-            @RequestBody @Valid Message message) {
-        return messageService.handleMessageV2(message);
+            @RequestBody @Valid Message message,
+            @RequestHeader(value = "Prefer", required = false) String prefer) {
+        if (!prefersRespondAsync(prefer)) {
+            return messageService.handleMessageV2(message);
+        }
+        ResponseEntity<Map<String, String>> response = messageService.handleMessageV2Async(message);
+        if (response.getStatusCode() != HttpStatus.ACCEPTED) {
+            return response;
+        }
+        return ResponseEntity.status(response.getStatusCode())
+                .headers(response.getHeaders())
+                .header("Preference-Applied", "respond-async")
+                .body(response.getBody());
+    }
+
+    /**
+     * batch variant, every message of the array is validated and answered on its own
+     * @param batch array of message objects
+     * @return response entity containing status and msg-id per message in the order of the array
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<Map<String, Object>> handleMessageBatch(@RequestBody List<Message> batch) {
+        return messageService.handleMessageBatchV2(batch);
+    }
+
+    /**
+     * subscribes to server-sent events about new (message-created) and deleted (message-deleted) messages
+     * @param star star UUID for validation
+     * @param lastEventId id of the last received event, sent by clients reconnecting to the stream
+     * @return event stream
+     */
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> subscribeToChanges(
+            @RequestParam String star,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        return messageService.subscribeToChanges(star, lastEventId);
+    }
+
+    /**
+     * checks the Prefer header for "respond-async", preferences are separated by commas
+     * and may carry a value and parameters, e.g. "respond-async, wait=10" or "respond-async; foo=bar"
+     * @param prefer value of the Prefer header, several headers are joined with commas
+     * @return true if the client prefers an asynchronous answer
+     */
+    static boolean prefersRespondAsync(String prefer) {
+        if (prefer == null) {
+            return false;
+        }
+        for (String preference : prefer.split(",")) {
+            String token = preference.split("[;=]", 2)[0].trim();
+            if ("respond-async".equalsIgnoreCase(token)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * gets the delivery state of a message
+     * @param msgId UUID to specify msg
+     * @param star star UUID for validation
+     * @return delivery state (queued, delivering, delivered, ...) including the result per star
+     */
+    @GetMapping("/{msgId}/status")
+    public ResponseEntity<?> getDeliveryStatus(@PathVariable String msgId, @RequestParam String star) {
+        return messageService.getDeliveryStatus(msgId, star);
     }
 }
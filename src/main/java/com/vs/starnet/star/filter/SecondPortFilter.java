@@ -49,8 +49,8 @@ public class SecondPortFilter implements Filter {
 
         String normalizedUri = uri.split("\\?")[0]; // Normalize URI (strip query parameters)
 
-        // Allow `/vs/v2/messages` only on the primary port, not on the secondary
-        if (normalizedUri.equals("/vs/v2/messages")) {
+        // Allow `/vs/v2/messages` and its batch variant only on the primary port, not on the secondary
+        if (normalizedUri.equals("/vs/v2/messages") || normalizedUri.equals("/vs/v2/messages/batch")) {
             if (localPort == ApplicationState.getGalaxyPort()) {
                 LOGGER.debug("Request to /vs/v2/messages is not allowed on the secondary port.");
                 httpResponse.sendError(HttpServletResponse.SC_FORBIDDEN, "Access Denied on this port.");
@@ -0,0 +1,42 @@
+package com.vs.starnet.star.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.vs.starnet.star.constants.DeliveryState;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * represents the delivery state of a message accepted by the sol.
+ * handles data for both internal logic and json payload
+ */
+@Getter
+@Setter
+@ToString
+public class DeliveryStatus {
+
+    @JsonProperty("msg-id")
+    private final String msgId;             // MSG-UUID
+
+    @JsonProperty("state")
+    private volatile DeliveryState state;   // Current delivery state
+
+    @JsonProperty("accepted")
+    private final long accepted;            // Timestamp when accepted by the SOL
+
+    @JsonProperty("changed")
+    private volatile long changed;          // Timestamp of the last state change
+
+    @JsonProperty("stars")
+    private final Map<String, String> stars = new ConcurrentHashMap<>(); // Delivery result per STAR-UUID
+
+    public DeliveryStatus(String msgId, DeliveryState state, long accepted) {
+        this.msgId = msgId;
+        this.state = state;
+        this.accepted = accepted;
+        this.changed = accepted;
+    }
+}
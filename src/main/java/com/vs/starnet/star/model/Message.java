@@ -15,7 +15,7 @@ import lombok.ToString;
  */
 @Getter
 @Setter
-@Builder
+@Builder(toBuilder = true)
 @ToString
 @JsonInclude(JsonInclude.Include.NON_NULL) // Include only non-null fields in JSON serialization
 public class Message {
@@ -64,4 +64,32 @@ public class Message {
 
     @JsonProperty("delivered")
     private Long delivered;       // Timestamp when delivered to another SOL (optional)
+
+    @JsonProperty("ttl")
+    private Long ttl;             // Requested lifetime in seconds, turned into "expires" by the SOL (optional)
+
+    @JsonProperty("expires")
+    private Long expires;         // Timestamp the message expires at, forwarded to other SOLs (optional)
+
+    /**
+     * reads the number in front of the '@' of a msg-id ("<n>@<origin>:<star>") as handed out by the stars
+     * @param msgId MSG-UUID
+     * @return the number or -1 if the msg-id does not start with a number
+     * that prints back to the same characters (no sign, no leading zeros, up to {@link Long#MAX_VALUE})
+     */
+    public static long parseNonce(String msgId) {
+        int separator = msgId.indexOf('@');
+        if (separator < 1 || (msgId.charAt(0) == '0' && separator > 1)) {
+            return -1;
+        }
+        long nonce = 0;
+        for (int i = 0; i < separator; i++) {
+            char digit = msgId.charAt(i);
+            if (digit < '0' || digit > '9' || nonce > (Long.MAX_VALUE - (digit - '0')) / 10) {
+                return -1; // Not a number or too large for a long
+            }
+            nonce = nonce * 10 + (digit - '0');
+        }
+        return nonce;
+    }
 }
@@ -10,11 +10,15 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.stream.Stream;
 
 /**
  * Utility class for HTTP-based communication using Java 11+ HttpClient.
@@ -24,6 +28,10 @@ import java.nio.charset.StandardCharsets;
 public class HttpHandler {
     static final Logger LOGGER = LogManager.getRootLogger();
     private static final HttpClient CLIENT = HttpClient.newHttpClient();
+    // Until the headers of a stream arrive, reads of the body have no deadline and are watched by the caller
+    private static final Duration STREAM_RESPONSE_TIMEOUT = Duration.ofSeconds(10);
+    // Start of this process, part of every ETag so versions of an earlier run never match
+    private static final long ETAG_EPOCH = System.currentTimeMillis();
 
     @Getter
     public enum HttpMethodType {
@@ -84,12 +92,20 @@ public class HttpHandler {
      *                    Must be one of {@link HttpMethodType}.
      * @param contentType The value of the "Content-Type" header (e.g., "application/json").
      *                    Required for methods with a payload (e.g., POST, PATCH).
+     * @param headers     Additional request headers (e.g., "Prefer"), may be empty.
      * @return A {@link HttpResponse} containing the status code, headers, and body returned by the server.
      * @throws RuntimeException If the request fails due to an {@link IOException} (e.g., unreachable server) or
      *                          an {@link InterruptedException} (e.g., request was interrupted).
      *                          The exception includes detailed logs for debugging purposes.
      */
-    private static HttpResponse<String> sendRequest(String urlString, String jsonPayload, HttpMethodType methodType, String contentType) {
+    private static HttpResponse<String> sendRequest(String urlString, String jsonPayload, HttpMethodType methodType, String contentType, Map<String, String> headers) {
+        HttpRequest.BodyPublisher body = jsonPayload != null
+                ? HttpRequest.BodyPublishers.ofString(jsonPayload, StandardCharsets.UTF_8)
+                : HttpRequest.BodyPublishers.noBody();
+        return sendRequest(urlString, body, methodType, contentType, headers);
+    }
+
+    private static HttpResponse<String> sendRequest(String urlString, HttpRequest.BodyPublisher body, HttpMethodType methodType, String contentType, Map<String, String> headers) {
         try {
             HttpRequest.Builder requestBuilder = HttpRequest.newBuilder()
                     .uri(URI.create(urlString));
@@ -97,12 +113,9 @@ public class HttpHandler {
             if (methodType == HttpMethodType.POST || methodType == HttpMethodType.PATCH) {
                 requestBuilder.header("Content-Type", contentType);
             }
+            headers.forEach(requestBuilder::header);
 
-            if (jsonPayload != null) {
-                requestBuilder.method(methodType.name(), HttpRequest.BodyPublishers.ofString(jsonPayload, StandardCharsets.UTF_8));
-            } else {
-                requestBuilder.method(methodType.name(), HttpRequest.BodyPublishers.noBody());
-            }
+            requestBuilder.method(methodType.name(), body);
 
             HttpRequest request = requestBuilder.build();
             LOGGER.log(Level.getLevel("STAR_DEBUG"), "Sending {} request to URL: {}", methodType, urlString);
@@ -132,7 +145,36 @@ public class HttpHandler {
      * @throws InterruptedException If the request is interrupted.
      */
     public static HttpResponse<String> sendPostRequest(String urlString, String jsonPayload, String contentType) throws IOException, InterruptedException {
-        return sendRequest(urlString, jsonPayload, HttpMethodType.POST, contentType);
+        return sendRequest(urlString, jsonPayload, HttpMethodType.POST, contentType, Map.of());
+    }
+
+    /**
+     * Sends a POST request with dynamic content type and additional headers to a specified URL.
+     * This method is a wrapper for the generic {@link #sendRequest} method using POST as the HTTP method.
+     *
+     * @param urlString   The URL to send the POST request to.
+     * @param jsonPayload The JSON payload to send.
+     * @param contentType The Content-Type for the request (e.g., "application/json").
+     * @param headers     Additional request headers (e.g., "Prefer: respond-async").
+     * @return The server response as a string.
+     * @throws IOException          If an I/O error occurs during the request.
+     * @throws InterruptedException If the request is interrupted.
+     */
+    public static HttpResponse<String> sendPostRequest(String urlString, String jsonPayload, String contentType, Map<String, String> headers) throws IOException, InterruptedException {
+        return sendRequest(urlString, jsonPayload, HttpMethodType.POST, contentType, headers);
+    }
+
+    /**
+     * Sends a POST request with a payload that is already encoded, e.g. a message json built from a template.
+     * The bytes are sent as they are, nothing is serialized again.
+     *
+     * @param urlString   The URL to send the POST request to.
+     * @param payload     The encoded payload to send.
+     * @param contentType The Content-Type for the request (e.g., "application/json").
+     * @return The server response as a string.
+     */
+    public static HttpResponse<String> sendPostRequest(String urlString, byte[] payload, String contentType) {
+        return sendRequest(urlString, HttpRequest.BodyPublishers.ofByteArray(payload), HttpMethodType.POST, contentType, Map.of());
     }
 
     /**
@@ -145,7 +187,96 @@ public class HttpHandler {
      * @throws InterruptedException If the request is interrupted.
      */
     public static HttpResponse<String> sendGetRequest(String urlString) throws IOException, InterruptedException {
-        return sendRequest(urlString, null, HttpMethodType.GET, null);
+        return sendRequest(urlString, HttpRequest.BodyPublishers.noBody(), HttpMethodType.GET, null, Map.of());
+    }
+
+    /**
+     * Sends a GET request to a specified URL and returns the response body as stream.
+     * Used to pass large responses through without holding them in memory.
+     *
+     * @param urlString The URL to send the GET request to.
+     * @return The server response with the body as unread stream, the caller has to close it.
+     * @throws IOException          If an I/O error occurs during the request.
+     * @throws InterruptedException If the request is interrupted.
+     */
+    public static HttpResponse<InputStream> sendGetRequestForStream(String urlString) throws IOException, InterruptedException {
+        return sendGetRequestForStream(urlString, Map.of());
+    }
+
+    /**
+     * Sends a GET request with additional headers to a specified URL and returns the response body as stream.
+     *
+     * @param urlString The URL to send the GET request to.
+     * @param headers   Additional request headers such as If-None-Match.
+     * @return The server response with the body as unread stream, the caller has to close it.
+     * @throws IOException          If an I/O error occurs during the request.
+     * @throws InterruptedException If the request is interrupted.
+     */
+    public static HttpResponse<InputStream> sendGetRequestForStream(String urlString, Map<String, String> headers) throws IOException, InterruptedException {
+        HttpRequest.Builder builder = HttpRequest.newBuilder()
+                .uri(URI.create(urlString))
+                .GET();
+        headers.forEach(builder::header);
+        HttpRequest request = builder.build();
+        LOGGER.log(Level.getLevel("STAR_DEBUG"), "Sending {} request to URL: {}", HttpMethodType.GET, urlString);
+        return CLIENT.send(request, HttpResponse.BodyHandlers.ofInputStream());
+    }
+
+    /**
+     * Sends a GET request for an event stream and returns the response body line by line.
+     * The lines are read while the server keeps sending, so the call returns as soon as the headers arrived.
+     * The headers have to arrive within 10 seconds, reading the lines has no deadline, so the caller watches
+     * the stream (e.g. for heartbeats) and closes it if the server went silent.
+     *
+     * @param urlString The URL of the event stream.
+     * @param headers   Additional request headers such as Last-Event-ID.
+     * @return The server response with the body as stream of lines, the caller has to close it.
+     * @throws IOException          If an I/O error occurs during the request.
+     * @throws InterruptedException If the request is interrupted.
+     */
+    public static HttpResponse<Stream<String>> sendGetRequestForLines(String urlString, Map<String, String> headers) throws IOException, InterruptedException {
+        HttpRequest.Builder builder = HttpRequest.newBuilder()
+                .uri(URI.create(urlString))
+                .header("Accept", "text/event-stream")
+                .timeout(STREAM_RESPONSE_TIMEOUT)
+                .GET();
+        headers.forEach(builder::header);
+        HttpRequest request = builder.build();
+        LOGGER.log(Level.getLevel("STAR_DEBUG"), "Sending {} request to URL: {}", HttpMethodType.GET, urlString);
+        return CLIENT.send(request, HttpResponse.BodyHandlers.ofLines());
+    }
+
+    /**
+     * Builds the ETag for a version of a store.
+     *
+     * @param version Current version of the store.
+     * @return The quoted entity tag.
+     */
+    public static String buildETag(long version) {
+        return "\"" + ETAG_EPOCH + "-" + version + "\"";
+    }
+
+    /**
+     * Checks an If-None-Match header against the current ETag.
+     *
+     * @param ifNoneMatch Value of the If-None-Match header, may be null.
+     * @param eTag        Current ETag of the resource.
+     * @return True if the client already has the current version.
+     */
+    public static boolean matchesETag(String ifNoneMatch, String eTag) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2); // Weak comparison as required for If-None-Match
+            }
+            if (tag.equals("*") || tag.equals(eTag)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
@@ -160,7 +291,7 @@ public class HttpHandler {
      * @throws InterruptedException If the request is interrupted.
      */
     public static HttpResponse<String> sendDeleteRequest(String urlString, String jsonPayload, String contentType) throws IOException, InterruptedException {
-        return sendRequest(urlString, jsonPayload, HttpMethodType.DELETE, contentType);
+        return sendRequest(urlString, jsonPayload, HttpMethodType.DELETE, contentType, Map.of());
     }
 
     /**
@@ -175,6 +306,6 @@ public class HttpHandler {
      * @throws InterruptedException If the request is interrupted.
      */
     public static HttpResponse<String> sendPatchRequest(String urlString, String jsonPayload, String contentType) throws IOException, InterruptedException {
-        return sendRequest(urlString, jsonPayload, HttpMethodType.PATCH, contentType);
+        return sendRequest(urlString, jsonPayload, HttpMethodType.PATCH, contentType, Map.of());
     }
 }
\ No newline at end of file
@@ -0,0 +1,188 @@
+package com.vs.starnet.star.repository;
+
+import com.vs.starnet.star.model.Message;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * keeps the message headers on the heap and the bodies in direct memory outside of it.
+ * list views and status checks only touch the headers, the body is decoded when a message is read in full,
+ * so large bodies add little to the heap and the gc work of a long running sol.
+ * the space of replaced bodies is reclaimed by {@link #compactStorage}
+ */
+public class BodyArenaMessageStore extends IndexedMessageStore<String> {
+    private static final long NO_BODY = -1;
+    private static final double MIN_UNUSED_RATIO = 0.5; // Chunks at least half released are compacted
+
+    /**
+     * header of a message (everything but the body) and location of its body in the arena
+     */
+    private record Entry(Message header, long bodyLocation) {
+    }
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final DirectMemoryArena arena;
+
+    public BodyArenaMessageStore() {
+        this(DirectMemoryArena.DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param chunkSize bytes per direct memory chunk of the arena
+     */
+    BodyArenaMessageStore(int chunkSize) {
+        this.arena = new DirectMemoryArena(chunkSize);
+    }
+
+    @Override
+    protected String keyOf(String msgId) {
+        return msgId;
+    }
+
+    @Override
+    protected Message read(String msgId) {
+        while (true) {
+            Entry entry = entries.get(msgId);
+            if (entry == null) {
+                return null;
+            }
+            // Only used if the body was not moved or replaced while it was read
+            Message message = withBody(entry);
+            if (message != null && entries.get(msgId) == entry) {
+                return message;
+            }
+        }
+    }
+
+    @Override
+    protected boolean insert(String msgId, Message message) {
+        if (entries.containsKey(msgId)) {
+            return false;
+        }
+        entries.put(msgId, toEntry(message));
+        return true;
+    }
+
+    @Override
+    protected Message write(String msgId, Message message) {
+        Entry previous = entries.put(msgId, toEntry(message));
+        return previous == null ? null : release(previous);
+    }
+
+    @Override
+    protected Message erase(String msgId) {
+        Entry previous = entries.remove(msgId);
+        return previous == null ? null : release(previous);
+    }
+
+    @Override
+    protected void eraseAll() {
+        entries.clear();
+        arena.clear();
+    }
+
+    /**
+     * @return copy of the header of the message without decoding its body, the message field is null
+     */
+    @Override
+    public Message findHeaderById(String msgId) {
+        Entry entry = entries.get(msgId);
+        return entry == null ? null : entry.header().toBuilder().build();
+    }
+
+    /**
+     * moves the live bodies out of the chunks that are mostly unused and frees those chunks
+     */
+    @Override
+    public long compactStorage() {
+        Set<Integer> compactable = arena.findCompactable(MIN_UNUSED_RATIO);
+        if (compactable.isEmpty()) {
+            return 0;
+        }
+        for (String msgId : entries.keySet()) {
+            synchronized (lockFor(msgId)) {
+                Entry entry = entries.get(msgId);
+                if (entry != null && entry.bodyLocation() != NO_BODY
+                        && compactable.contains(DirectMemoryArena.chunkOf(entry.bodyLocation()))) {
+                    entries.put(msgId, new Entry(entry.header(), arena.append(arena.read(entry.bodyLocation()))));
+                    arena.release(entry.bodyLocation());
+                }
+            }
+        }
+        return arena.free(compactable);
+    }
+
+    @Override
+    public boolean existsById(String msgId) {
+        return entries.containsKey(msgId);
+    }
+
+    @Override
+    public Map<String, Message> findAll() {
+        Map<String, Message> all = new LinkedHashMap<>();
+        for (String msgId : entries.keySet()) {
+            Message message = read(msgId);
+            if (message != null) {
+                all.put(msgId, message);
+            }
+        }
+        return all;
+    }
+
+    @Override
+    public long count() {
+        return entries.size();
+    }
+
+    /**
+     * @return bytes of direct memory taken by bodies
+     */
+    public long getUsedBytes() {
+        return arena.getUsedBytes();
+    }
+
+    /**
+     * @return bytes of bodies that were replaced or removed
+     */
+    public long getUnusedBytes() {
+        return arena.getUnusedBytes();
+    }
+
+    private Entry toEntry(Message message) {
+        long bodyLocation = message.getMessage() == null
+                ? NO_BODY
+                : arena.append(message.getMessage().getBytes(StandardCharsets.UTF_8));
+        return new Entry(message.toBuilder().message(null).build(), bodyLocation);
+    }
+
+    /**
+     * @return copy of the header with the decoded body, callers may change it without touching the stored header,
+     * null if the body is no longer readable at the location of the entry
+     */
+    private Message withBody(Entry entry) {
+        if (entry.bodyLocation() == NO_BODY) {
+            return entry.header().toBuilder().build();
+        }
+        byte[] body = arena.read(entry.bodyLocation());
+        return body == null ? null : entry.header().toBuilder().message(new String(body, StandardCharsets.UTF_8)).build();
+    }
+
+    /**
+     * @return number of direct memory chunks holding bodies
+     */
+    public int getChunkCount() {
+        return arena.getChunkCount();
+    }
+
+    private Message release(Entry entry) {
+        Message previous = withBody(entry);
+        if (entry.bodyLocation() != NO_BODY) {
+            arena.release(entry.bodyLocation());
+        }
+        return previous;
+    }
+}
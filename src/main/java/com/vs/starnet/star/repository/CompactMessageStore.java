@@ -0,0 +1,247 @@
+package com.vs.starnet.star.repository;
+
+import com.vs.starnet.star.model.Message;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * keeps the messages on the heap as compact {@link MessageRecord}s instead of message dtos.
+ * star uuids, origins, senders and versions repeat across many messages and are stored once in an
+ * {@link IdentifierTable}, so a message takes far fewer bytes than with {@link HeapMessageStore}.
+ * msg-ids of the form "<n>@<origin>:<star>" are parsed once per operation into a {@link MessageKey}
+ * and found through a primitive {@link MessageIdIndex},
+ * the records sit in slots of an array and the msg-id string itself is not kept.
+ * every read builds a new dto, nothing survives a restart
+ */
+public class CompactMessageStore extends IndexedMessageStore<CompactMessageStore.MessageKey> {
+    private static final int MIN_SLOTS = 64;
+
+    private final IdentifierTable identifiers = new IdentifierTable();
+    private final StampedLock lock = new StampedLock(); // Guards the id index and the slots, reads are optimistic
+    private final MessageIdIndex idIndex = new MessageIdIndex();
+    private MessageRecord[] records = new MessageRecord[MIN_SLOTS];
+    private long[] slotNonces = new long[MIN_SLOTS]; // Msg-id of every slot, rebuilt on reads
+    private int[] slotSuffixes = new int[MIN_SLOTS];
+    private int[] freeSlots = new int[MIN_SLOTS];
+    private int freeCount;
+    private int nextSlot;
+    // Msg-ids without a number in front, e.g. from stars outside of this galaxy
+    private final ConcurrentHashMap<String, MessageRecord> otherRecords = new ConcurrentHashMap<>();
+
+    /**
+     * msg-id of an operation, parsed once into its number and the interned id of the part behind the '@'
+     * @param msgId msg-id as given
+     * @param nonce number in front of the '@' or -1 if the msg-id does not start with one
+     * @param suffix interned id of "<origin>:<star>" or {@link IdentifierTable#NONE} if it was not interned yet
+     */
+    record MessageKey(String msgId, long nonce, int suffix) {
+    }
+
+    @Override
+    protected MessageKey keyOf(String msgId) {
+        long nonce = Message.parseNonce(msgId);
+        if (nonce < 0) {
+            return new MessageKey(msgId, -1, IdentifierTable.NONE);
+        }
+        // Found in place, the suffix is not cut out of the msg-id
+        return new MessageKey(msgId, nonce, identifiers.find(msgId, msgId.indexOf('@') + 1));
+    }
+
+    @Override
+    protected Message read(MessageKey key) {
+        if (key.nonce() < 0) {
+            return toMessage(key.msgId(), otherRecords.get(key.msgId()));
+        }
+        return key.suffix() == IdentifierTable.NONE ? null : toMessage(key.msgId(), readRecord(key.nonce(), key.suffix()));
+    }
+
+    @Override
+    protected boolean insert(MessageKey key, Message message) {
+        MessageRecord record = MessageRecord.of(message, identifiers);
+        if (key.nonce() < 0) {
+            return otherRecords.putIfAbsent(key.msgId(), record) == null;
+        }
+        int suffix = internSuffix(key);
+        long stamp = lock.writeLock();
+        try {
+            if (idIndex.get(key.nonce(), suffix) != MessageIdIndex.NOT_FOUND) {
+                return false;
+            }
+            idIndex.put(key.nonce(), suffix, allocateSlot(key.nonce(), suffix, record));
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    protected Message write(MessageKey key, Message message) {
+        MessageRecord record = MessageRecord.of(message, identifiers);
+        if (key.nonce() < 0) {
+            return toMessage(key.msgId(), otherRecords.put(key.msgId(), record));
+        }
+        int suffix = internSuffix(key);
+        MessageRecord previous = null;
+        long stamp = lock.writeLock();
+        try {
+            int slot = idIndex.get(key.nonce(), suffix);
+            if (slot == MessageIdIndex.NOT_FOUND) {
+                idIndex.put(key.nonce(), suffix, allocateSlot(key.nonce(), suffix, record));
+            } else {
+                previous = records[slot];
+                records[slot] = record;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        return toMessage(key.msgId(), previous);
+    }
+
+    @Override
+    protected Message erase(MessageKey key) {
+        if (key.nonce() < 0) {
+            return toMessage(key.msgId(), otherRecords.remove(key.msgId()));
+        }
+        if (key.suffix() == IdentifierTable.NONE) {
+            return null;
+        }
+        MessageRecord previous = null;
+        long stamp = lock.writeLock();
+        try {
+            int slot = idIndex.remove(key.nonce(), key.suffix());
+            if (slot != MessageIdIndex.NOT_FOUND) {
+                previous = records[slot];
+                records[slot] = null;
+                freeSlots[freeCount++] = slot;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        return toMessage(key.msgId(), previous);
+    }
+
+    @Override
+    protected void eraseAll() {
+        long stamp = lock.writeLock();
+        try {
+            idIndex.clear();
+            records = new MessageRecord[MIN_SLOTS];
+            slotNonces = new long[MIN_SLOTS];
+            slotSuffixes = new int[MIN_SLOTS];
+            freeSlots = new int[MIN_SLOTS];
+            freeCount = 0;
+            nextSlot = 0;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        otherRecords.clear();
+    }
+
+    @Override
+    public boolean existsById(String msgId) {
+        MessageKey key = keyOf(msgId);
+        if (key.nonce() < 0) {
+            return otherRecords.containsKey(msgId);
+        }
+        return key.suffix() != IdentifierTable.NONE && readRecord(key.nonce(), key.suffix()) != null;
+    }
+
+    @Override
+    public Map<String, Message> findAll() {
+        Map<String, Message> all = new LinkedHashMap<>();
+        long stamp = lock.readLock();
+        try {
+            for (int slot = 0; slot < nextSlot; slot++) {
+                if (records[slot] != null) {
+                    String msgId = slotNonces[slot] + "@" + identifiers.lookup(slotSuffixes[slot]);
+                    all.put(msgId, records[slot].toMessage(msgId, identifiers));
+                }
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        otherRecords.forEach((msgId, record) -> all.put(msgId, record.toMessage(msgId, identifiers)));
+        return all;
+    }
+
+    @Override
+    public long count() {
+        long stamp = lock.readLock();
+        try {
+            return idIndex.size() + otherRecords.size();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @return number of distinct identifiers interned so far
+     */
+    public int getIdentifierCount() {
+        return identifiers.size();
+    }
+
+    /**
+     * @return interned id of the part behind the '@', interned now if the key was parsed before it was known
+     */
+    private int internSuffix(MessageKey key) {
+        if (key.suffix() != IdentifierTable.NONE) {
+            return key.suffix();
+        }
+        return identifiers.intern(key.msgId().substring(key.msgId().indexOf('@') + 1));
+    }
+
+    /**
+     * looks a record up without locking, falls back to the read lock if a change ran meanwhile
+     */
+    private MessageRecord readRecord(long nonce, int suffix) {
+        long stamp = lock.tryOptimisticRead();
+        MessageRecord record = lookup(nonce, suffix);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                record = lookup(nonce, suffix);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return record;
+    }
+
+    private MessageRecord lookup(long nonce, int suffix) {
+        int slot = idIndex.get(nonce, suffix);
+        MessageRecord[] current = records;
+        return slot >= 0 && slot < current.length ? current[slot] : null;
+    }
+
+    /**
+     * puts a record into a free slot, called with the write lock held
+     */
+    private int allocateSlot(long nonce, int suffix, MessageRecord record) {
+        int slot;
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else {
+            if (nextSlot == records.length) {
+                int capacity = records.length * 2;
+                records = Arrays.copyOf(records, capacity);
+                slotNonces = Arrays.copyOf(slotNonces, capacity);
+                slotSuffixes = Arrays.copyOf(slotSuffixes, capacity);
+                freeSlots = Arrays.copyOf(freeSlots, capacity);
+            }
+            slot = nextSlot++;
+        }
+        records[slot] = record;
+        slotNonces[slot] = nonce;
+        slotSuffixes[slot] = suffix;
+        return slot;
+    }
+
+    private Message toMessage(String msgId, MessageRecord record) {
+        return record == null ? null : record.toMessage(msgId, identifiers);
+    }
+}
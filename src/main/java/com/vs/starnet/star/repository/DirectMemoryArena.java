@@ -0,0 +1,215 @@
+package com.vs.starnet.star.repository;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * append-only byte records in direct memory chunks outside of the java heap.
+ * a record is its length followed by its bytes, the location of a record is chunk << 32 | offset.
+ * released records are counted per chunk, once most of a chunk is released its owner moves the live records
+ * to the end of the arena and frees the chunk, the freed buffer is reused for the next chunk
+ */
+public class DirectMemoryArena {
+    static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024; // Bytes per direct memory chunk
+    private static final int MAX_SPARE_BUFFERS = 4; // Freed chunks kept for reuse instead of waiting for the gc
+
+    /**
+     * direct memory chunk and the bytes written to and released in it
+     */
+    private static final class Chunk {
+        final ByteBuffer buffer;
+        final AtomicLong released = new AtomicLong();
+        volatile int written;
+
+        Chunk(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+    }
+
+    private final int chunkSize;
+    private final List<Chunk> chunks = new ArrayList<>(); // Index is the chunk of a location, null once freed
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+    private final Deque<ByteBuffer> spareBuffers = new ArrayDeque<>();
+    private volatile Chunk[] readableChunks = new Chunk[0];
+    private int writeChunk = -1;
+    private final AtomicLong usedBytes = new AtomicLong();
+    private final AtomicLong unusedBytes = new AtomicLong();
+
+    public DirectMemoryArena() {
+        this(DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param chunkSize bytes per direct memory chunk
+     */
+    public DirectMemoryArena(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * writes a record behind the last one
+     * @param bytes content of the record
+     * @return location of the record
+     */
+    public synchronized long append(byte[] bytes) {
+        int recordSize = Integer.BYTES + bytes.length;
+        Chunk chunk = writeChunk < 0 ? null : chunks.get(writeChunk);
+        if (chunk == null || chunk.written + recordSize > chunk.buffer.capacity()) {
+            // Records larger than a chunk get a chunk of their own
+            writeChunk = addChunk(recordSize);
+            chunk = chunks.get(writeChunk);
+        }
+        int offset = chunk.written;
+        chunk.buffer.putInt(offset, bytes.length);
+        chunk.buffer.put(offset + Integer.BYTES, bytes);
+        chunk.written = offset + recordSize;
+        usedBytes.addAndGet(recordSize);
+        return ((long) writeChunk << 32) | offset;
+    }
+
+    /**
+     * reads a record without locking. the chunk of a location may have been freed and reused meanwhile,
+     * so callers check afterwards that the location is still the current one of their record
+     * @param location location returned by {@link #append}
+     * @return copy of the record content or null if the location is no longer readable
+     */
+    public byte[] read(long location) {
+        Chunk[] current = readableChunks;
+        int chunkIndex = (int) (location >>> 32);
+        int offset = (int) location;
+        if (chunkIndex >= current.length || current[chunkIndex] == null) {
+            return null;
+        }
+        ByteBuffer buffer = current[chunkIndex].buffer;
+        if (offset < 0 || offset > buffer.capacity() - Integer.BYTES) {
+            return null;
+        }
+        int length = buffer.getInt(offset);
+        if (length < 0 || length > buffer.capacity() - Integer.BYTES - offset) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(offset + Integer.BYTES, bytes); // Absolute read, the chunk is shared between threads
+        return bytes;
+    }
+
+    /**
+     * counts a record as unused, e.g. when it was replaced by a newer one
+     * @param location location returned by {@link #append}, still held by the caller
+     */
+    public void release(long location) {
+        Chunk chunk = readableChunks[(int) (location >>> 32)];
+        int recordSize = Integer.BYTES + chunk.buffer.getInt((int) location);
+        chunk.released.addAndGet(recordSize);
+        unusedBytes.addAndGet(recordSize);
+    }
+
+    /**
+     * @param location location returned by {@link #append}
+     * @return chunk of the location
+     */
+    public static int chunkOf(long location) {
+        return (int) (location >>> 32);
+    }
+
+    /**
+     * picks the chunks worth compacting, the chunk written to is never picked
+     * @param minUnusedRatio share of released bytes from which a chunk is picked
+     * @return picked chunks, their live records have to be appended again before {@link #free}
+     */
+    public synchronized Set<Integer> findCompactable(double minUnusedRatio) {
+        Set<Integer> compactable = new HashSet<>();
+        for (int i = 0; i < chunks.size(); i++) {
+            Chunk chunk = chunks.get(i);
+            if (i != writeChunk && chunk != null && chunk.released.get() >= minUnusedRatio * chunk.written) {
+                compactable.add(i);
+            }
+        }
+        return compactable;
+    }
+
+    /**
+     * frees the given chunks that hold no live record any more, chunks still holding one are kept
+     * @param chunkIndexes chunks whose live records were moved
+     * @return bytes of direct memory freed
+     */
+    public synchronized long free(Set<Integer> chunkIndexes) {
+        long freed = 0;
+        for (int chunkIndex : chunkIndexes) {
+            Chunk chunk = chunkIndex < chunks.size() ? chunks.get(chunkIndex) : null;
+            if (chunkIndex == writeChunk || chunk == null || chunk.released.get() < chunk.written) {
+                continue;
+            }
+            chunks.set(chunkIndex, null);
+            freeSlots.add(chunkIndex);
+            if (chunk.buffer.capacity() == chunkSize && spareBuffers.size() < MAX_SPARE_BUFFERS) {
+                spareBuffers.add(chunk.buffer);
+            }
+            usedBytes.addAndGet(-chunk.written);
+            unusedBytes.addAndGet(-chunk.released.get());
+            freed += chunk.buffer.capacity();
+        }
+        if (freed > 0) {
+            readableChunks = chunks.toArray(new Chunk[0]);
+        }
+        return freed;
+    }
+
+    /**
+     * drops all chunks, the direct memory is freed once the buffers are collected
+     */
+    public synchronized void clear() {
+        chunks.clear();
+        freeSlots.clear();
+        spareBuffers.clear();
+        readableChunks = new Chunk[0];
+        writeChunk = -1;
+        usedBytes.set(0);
+        unusedBytes.set(0);
+    }
+
+    /**
+     * @return bytes of direct memory taken by records
+     */
+    public long getUsedBytes() {
+        return usedBytes.get();
+    }
+
+    /**
+     * @return bytes of records that were released and not freed yet
+     */
+    public long getUnusedBytes() {
+        return unusedBytes.get();
+    }
+
+    /**
+     * @return number of chunks holding records
+     */
+    public synchronized int getChunkCount() {
+        return chunks.size() - freeSlots.size();
+    }
+
+    private int addChunk(int recordSize) {
+        ByteBuffer buffer = recordSize <= chunkSize && !spareBuffers.isEmpty()
+                ? spareBuffers.poll()
+                : ByteBuffer.allocateDirect(Math.max(chunkSize, recordSize));
+        Chunk chunk = new Chunk(buffer);
+        Integer slot = freeSlots.poll();
+        int chunkIndex;
+        if (slot != null) {
+            chunkIndex = slot;
+            chunks.set(chunkIndex, chunk);
+        } else {
+            chunkIndex = chunks.size();
+            chunks.add(chunk);
+        }
+        readableChunks = chunks.toArray(new Chunk[0]);
+        return chunkIndex;
+    }
+}
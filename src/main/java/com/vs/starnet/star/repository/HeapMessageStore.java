@@ -0,0 +1,62 @@
+package com.vs.starnet.star.repository;
+
+import com.vs.starnet.star.model.Message;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * keeps the messages as objects in a concurrent map on the heap.
+ * fastest engine, nothing survives a restart.
+ * the stored objects are handed out to readers, so they are treated as immutable and replaced on every update
+ */
+public class HeapMessageStore extends IndexedMessageStore<String> {
+
+    protected final ConcurrentHashMap<String, Message> messages = new ConcurrentHashMap<>();
+
+    @Override
+    protected String keyOf(String msgId) {
+        return msgId;
+    }
+
+    @Override
+    protected Message read(String msgId) {
+        return messages.get(msgId);
+    }
+
+    @Override
+    protected Message copyForUpdate(Message current) {
+        return current.toBuilder().build();
+    }
+
+    @Override
+    protected boolean insert(String msgId, Message message) {
+        return messages.putIfAbsent(msgId, message) == null;
+    }
+
+    @Override
+    protected Message write(String msgId, Message message) {
+        return messages.put(msgId, message);
+    }
+
+    @Override
+    protected Message erase(String msgId) {
+        return messages.remove(msgId);
+    }
+
+    @Override
+    protected void eraseAll() {
+        messages.clear();
+    }
+
+    @Override
+    public Map<String, Message> findAll() {
+        return Collections.unmodifiableMap(messages);
+    }
+
+    @Override
+    public long count() {
+        return messages.size();
+    }
+}
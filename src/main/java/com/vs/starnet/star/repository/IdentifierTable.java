@@ -0,0 +1,121 @@
+package com.vs.starnet.star.repository;
+
+import java.util.Arrays;
+
+/**
+ * interns identifiers that repeat across many messages (star uuids, origins, versions) into int ids.
+ * ids are handed out in ascending order and never reused, lookups need no lock.
+ * the ids are found through an open-addressing table of the string hashes, so a part of a longer string
+ * (e.g. the "<origin>:<star>" of a msg-id) is found without cutting it out first
+ */
+public class IdentifierTable {
+    public static final int NONE = -1; // Id of null
+
+    private volatile String[] values = new String[64];
+    private volatile int[] table = newTable(128); // Ids by hash, linear probing, copied on every add
+    private volatile int size;
+
+    /**
+     * @param value identifier, may be null
+     * @return id of the identifier, a new one if it was not seen before
+     */
+    public int intern(String value) {
+        if (value == null) {
+            return NONE;
+        }
+        int id = find(value, 0);
+        return id != NONE ? id : add(value);
+    }
+
+    /**
+     * @param value identifier, may be null
+     * @return id of the identifier or {@link #NONE} if it was not interned, nothing is added
+     */
+    public int find(String value) {
+        return value == null ? NONE : find(value, 0);
+    }
+
+    /**
+     * @param text string ending with the identifier
+     * @param from index of the first character of the identifier
+     * @return id of the identifier or {@link #NONE} if it was not interned, nothing is added
+     */
+    public int find(String text, int from) {
+        int length = text.length() - from;
+        int hash = 0;
+        for (int i = from; i < text.length(); i++) {
+            hash = 31 * hash + text.charAt(i); // Same as String.hashCode of the identifier
+        }
+        // The table is read first, values are published before it and hold every id it contains
+        int[] current = table;
+        String[] known = values;
+        int mask = current.length - 1;
+        for (int position = spread(hash) & mask; current[position] != NONE; position = (position + 1) & mask) {
+            String candidate = known[current[position]];
+            if (candidate.length() == length && candidate.regionMatches(0, text, from, length)) {
+                return current[position];
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * @param id id returned by {@link #intern}
+     * @return identifier of the id
+     */
+    public String lookup(int id) {
+        return id == NONE ? null : values[id];
+    }
+
+    /**
+     * @return number of distinct identifiers
+     */
+    public int size() {
+        return size;
+    }
+
+    private synchronized int add(String value) {
+        int id = find(value, 0);
+        if (id != NONE) {
+            return id;
+        }
+        id = size;
+        String[] current = values;
+        if (id == current.length) {
+            current = Arrays.copyOf(current, id * 2);
+        }
+        // The value is published before the id, so a reader with the id always finds it
+        current[id] = value;
+        values = current;
+        int[] next = Arrays.copyOf(table, (id + 1) * 2 > table.length ? table.length * 2 : table.length);
+        if (next.length != table.length) {
+            Arrays.fill(next, NONE);
+            for (int known = 0; known < id; known++) {
+                place(next, current[known].hashCode(), known);
+            }
+        }
+        place(next, value.hashCode(), id);
+        table = next;
+        size = id + 1;
+        return id;
+    }
+
+    private static void place(int[] table, int hash, int id) {
+        int mask = table.length - 1;
+        int position = spread(hash) & mask;
+        while (table[position] != NONE) {
+            position = (position + 1) & mask;
+        }
+        table[position] = id;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int[] newTable(int capacity) {
+        int[] table = new int[capacity];
+        Arrays.fill(table, NONE);
+        return table;
+    }
+}
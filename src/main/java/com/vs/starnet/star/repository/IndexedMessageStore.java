@@ -0,0 +1,285 @@
+package com.vs.starnet.star.repository;
+
+import com.vs.starnet.star.model.Message;
+
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * base of the message store engines.
+ * keeps the secondary indexes and the version on the heap,
+ * the engines only decide how the messages themselves are kept.
+ * a msg-id is turned into the key of the engine once per operation and the key is passed to the engine
+ * @param <K> key of a message in the engine, e.g. the msg-id itself or its parsed parts
+ */
+public abstract class IndexedMessageStore<K> implements MessageStore {
+    private static final int LOCK_STRIPES = 64; // Locks for updates, picked by msg-id hash
+
+    protected final MessageIndex index = new MessageIndex();
+    private final AtomicLong version = new AtomicLong();
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    protected IndexedMessageStore() {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * @param msgId msg-id of an operation
+     * @return key of the msg-id in the engine
+     */
+    protected abstract K keyOf(String msgId);
+
+    /**
+     * @return stored message or null
+     */
+    protected abstract Message read(K key);
+
+    /**
+     * stores a message unless the id is taken
+     * @return false if the id is taken
+     */
+    protected abstract boolean insert(K key, Message message);
+
+    /**
+     * stores a batch of messages, each unless its id is taken, also by an earlier message of the batch.
+     * runs under the update locks of all msg-ids of the batch, engines may write the messages as one group
+     * @return per message true if it was stored
+     */
+    protected boolean[] insertAll(List<K> keys, List<Message> messages) {
+        boolean[] stored = new boolean[messages.size()];
+        for (int i = 0; i < messages.size(); i++) {
+            stored[i] = insert(keys.get(i), messages.get(i));
+        }
+        return stored;
+    }
+
+    /**
+     * stores a message, replacing the previous one
+     * @return previous message or null
+     */
+    protected abstract Message write(K key, Message message);
+
+    /**
+     * @return removed message or null
+     */
+    protected abstract Message erase(K key);
+
+    /**
+     * removes all messages of the engine
+     */
+    protected abstract void eraseAll();
+
+    /**
+     * gives an update its own copy of the stored message, engines keeping the stored objects themselves
+     * have to copy them, engines decoding a new object on every read can hand it out as it is
+     * @param current message as read from the engine
+     * @return message the update may change
+     */
+    protected Message copyForUpdate(Message current) {
+        return current;
+    }
+
+    /**
+     * called after a change outside of the update locks, engines wait here until the change is durable
+     */
+    protected void afterChange() {
+    }
+
+    @Override
+    public Message findById(String msgId) {
+        return read(keyOf(msgId));
+    }
+
+    @Override
+    public void save(String msgId, Message message) {
+        synchronized (lockFor(msgId)) {
+            Message previous = write(keyOf(msgId), message);
+            if (previous != null) {
+                index.remove(previous);
+            }
+            index.add(message);
+            version.incrementAndGet();
+        }
+        afterChange();
+    }
+
+    @Override
+    public boolean saveIfAbsent(String msgId, Message message) {
+        synchronized (lockFor(msgId)) {
+            if (!insert(keyOf(msgId), message)) {
+                return false;
+            }
+            index.add(message);
+            version.incrementAndGet();
+        }
+        afterChange();
+        return true;
+    }
+
+    @Override
+    public boolean[] saveAllIfAbsent(List<Message> messages) {
+        List<K> keys = messages.stream().map(message -> keyOf(message.getMsgId())).toList();
+        // The locks are taken in stripe order, so two batches sharing stripes cannot wait for each other
+        int[] stripes = messages.stream().mapToInt(message -> stripeOf(message.getMsgId())).distinct().sorted().toArray();
+        boolean[] stored = withLocks(stripes, 0, () -> {
+            boolean[] inserted = insertAll(keys, messages);
+            boolean changed = false;
+            for (int i = 0; i < inserted.length; i++) {
+                if (inserted[i]) {
+                    index.add(messages.get(i));
+                    changed = true;
+                }
+            }
+            if (changed) {
+                version.incrementAndGet();
+            }
+            return inserted;
+        });
+        afterChange();
+        return stored;
+    }
+
+    @Override
+    public Message update(String msgId, UnaryOperator<Message> change) {
+        Message changed;
+        K key = keyOf(msgId);
+        synchronized (lockFor(msgId)) {
+            Message current = read(key);
+            if (current == null) {
+                return null;
+            }
+            // Copy on write: the stored message is never changed in place, readers keep a consistent snapshot
+            // without taking the lock and the new version replaces it as a whole
+            String oldStatus = current.getStatus();
+            long oldChanged = current.getChanged();
+            changed = change.apply(copyForUpdate(current));
+            if (changed == null) {
+                return null;
+            }
+            write(key, changed);
+            index.update(changed, oldStatus, oldChanged);
+            version.incrementAndGet();
+        }
+        afterChange();
+        return changed;
+    }
+
+    @Override
+    public void delete(String msgId) {
+        synchronized (lockFor(msgId)) {
+            Message removed = erase(keyOf(msgId));
+            if (removed == null) {
+                return;
+            }
+            index.remove(removed);
+            version.incrementAndGet();
+        }
+        afterChange();
+    }
+
+    @Override
+    public Message removeIf(String msgId, Predicate<Message> condition) {
+        Message removed;
+        K key = keyOf(msgId);
+        synchronized (lockFor(msgId)) {
+            Message current = read(key);
+            if (current == null || !condition.test(current)) {
+                return null;
+            }
+            removed = erase(key);
+            index.remove(removed);
+            version.incrementAndGet();
+        }
+        afterChange();
+        return removed;
+    }
+
+    @Override
+    public boolean existsById(String msgId) {
+        return read(keyOf(msgId)) != null;
+    }
+
+    @Override
+    public Set<String> findIdsByStatus(String status) {
+        return index.findByStatus(status);
+    }
+
+    @Override
+    public Set<String> findIdsByOrigin(String origin) {
+        return index.findByOrigin(origin);
+    }
+
+    @Override
+    public NavigableSet<MessageIndex.ChangeKey> findChangedBetween(long from, long to) {
+        return index.findChangedBetween(from, to);
+    }
+
+    @Override
+    public NavigableSet<MessageIndex.ChangeKey> findCreatedBetween(long from, long to) {
+        return index.findCreatedBetween(from, to);
+    }
+
+    @Override
+    public NavigableSet<MessageIndex.ChangeKey> findChangedFrom(MessageIndex.ChangeKey from, boolean inclusive) {
+        return index.findChangedFrom(from, inclusive);
+    }
+
+    @Override
+    public NavigableSet<MessageIndex.ChangeKey> findAllByChanged() {
+        return index.findAllByChanged();
+    }
+
+    @Override
+    public Map<String, Long> getCountsByStatus() {
+        return index.getCountsByStatus();
+    }
+
+    @Override
+    public Map<String, Long> getCountsByOrigin() {
+        return index.getCountsByOrigin();
+    }
+
+    @Override
+    public long getVersion() {
+        return version.get();
+    }
+
+    @Override
+    public void clear() {
+        eraseAll();
+        index.clear();
+        version.incrementAndGet();
+        afterChange();
+    }
+
+    /**
+     * @return lock serializing the changes of a message, engines take it to move a message internally
+     */
+    protected Object lockFor(String msgId) {
+        return locks[stripeOf(msgId)];
+    }
+
+    private static int stripeOf(String msgId) {
+        return (msgId.hashCode() & Integer.MAX_VALUE) % LOCK_STRIPES;
+    }
+
+    /**
+     * runs an action holding the locks of the given stripes, taken one inside the other
+     */
+    private <T> T withLocks(int[] stripes, int next, Supplier<T> action) {
+        if (next == stripes.length) {
+            return action.get();
+        }
+        synchronized (locks[stripes[next]]) {
+            return withLocks(stripes, next + 1, action);
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.vs.starnet.star.repository;
+
+import com.vs.starnet.star.model.Message;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * keeps the messages on the heap like {@link HeapMessageStore} and writes every change ahead to a {@link WriteAheadLog}.
+ * the log is replayed when the store is opened, so the messages survive a restart or crash of the star.
+ * a change is appended to the log before it is applied, a change that cannot be logged is not applied at all.
+ * {@link #compactStorage} checkpoints the messages and deletes the log segments before the checkpoint
+ */
+public class LogBackedMessageStore extends HeapMessageStore {
+    static final Logger LOGGER = LogManager.getRootLogger();
+    private static final byte RECORD_PUT = 1; // Payload is the encoded message, written on create and change
+    private static final byte RECORD_REMOVE = 2; // Payload is the msg-id
+    private static final byte RECORD_CLEAR = 3; // No payload
+
+    private final WriteAheadLog log;
+    // Changes hold the read lock from the append until they are applied, a checkpoint starts under the write lock
+    private final ReentrantReadWriteLock checkpointLock = new ReentrantReadWriteLock();
+    // Log position of the last change of the calling thread, waited for after the update lock is released
+    private final ThreadLocal<Long> pendingPosition = new ThreadLocal<>();
+
+    /**
+     * opens the log and restores the messages written to it before
+     * @param logDirectory directory of the log segments
+     * @param segmentSize bytes per log segment
+     * @param syncPolicy when changes are forced to the disk
+     * @param groupCommitMillis length of a group commit window
+     */
+    public LogBackedMessageStore(Path logDirectory, int segmentSize, WriteAheadLog.SyncPolicy syncPolicy, long groupCommitMillis) {
+        log = new WriteAheadLog(logDirectory, segmentSize, syncPolicy, groupCommitMillis);
+        long start = System.nanoTime();
+        long records = log.replay(this::apply);
+
+        // The indexes are built once after the replay instead of following every record
+        messages.values().forEach(index::add);
+        LOGGER.log(Level.getLevel("STAR_INFO"), "Message log {} replayed in {} ms: {} records, {} messages.",
+                logDirectory, (System.nanoTime() - start) / 1_000_000, records, messages.size());
+    }
+
+    @Override
+    protected boolean insert(String msgId, Message message) {
+        // Runs under the update lock of the msg-id, the id cannot be taken between the check and the insert
+        if (messages.containsKey(msgId)) {
+            return false;
+        }
+        checkpointLock.readLock().lock();
+        try {
+            append(RECORD_PUT, MessageCodec.encode(message));
+            return super.insert(msgId, message);
+        } finally {
+            checkpointLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    protected boolean[] insertAll(List<String> msgIds, List<Message> batch) {
+        // Runs under the update locks of all msg-ids, the whole batch is appended as one group
+        boolean[] stored = new boolean[batch.size()];
+        Set<String> batchIds = new HashSet<>();
+        List<byte[]> payloads = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            if (!messages.containsKey(msgIds.get(i)) && batchIds.add(msgIds.get(i))) {
+                stored[i] = true;
+                payloads.add(MessageCodec.encode(batch.get(i)));
+            }
+        }
+        if (payloads.isEmpty()) {
+            return stored;
+        }
+        checkpointLock.readLock().lock();
+        try {
+            pendingPosition.set(log.appendAll(RECORD_PUT, payloads));
+            for (int i = 0; i < batch.size(); i++) {
+                if (stored[i]) {
+                    super.insert(msgIds.get(i), batch.get(i));
+                }
+            }
+        } finally {
+            checkpointLock.readLock().unlock();
+        }
+        return stored;
+    }
+
+    @Override
+    protected Message write(String msgId, Message message) {
+        checkpointLock.readLock().lock();
+        try {
+            append(RECORD_PUT, MessageCodec.encode(message));
+            return super.write(msgId, message);
+        } finally {
+            checkpointLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    protected Message erase(String msgId) {
+        if (!messages.containsKey(msgId)) {
+            return null;
+        }
+        checkpointLock.readLock().lock();
+        try {
+            append(RECORD_REMOVE, msgId.getBytes(StandardCharsets.UTF_8));
+            return super.erase(msgId);
+        } finally {
+            checkpointLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    protected void eraseAll() {
+        checkpointLock.readLock().lock();
+        try {
+            append(RECORD_CLEAR, new byte[0]);
+            super.eraseAll();
+        } finally {
+            checkpointLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * writes all messages as a checkpoint of the log and deletes the segments before it,
+     * once the log spans more than one segment
+     * @return bytes of the deleted log files
+     */
+    @Override
+    public synchronized long compactStorage() {
+        if (!log.hasClosedSegments()) {
+            return 0;
+        }
+        return checkpoint();
+    }
+
+    /**
+     * writes all messages as a checkpoint of the log and deletes the segments before it
+     * @return bytes of the deleted log files
+     */
+    public synchronized long checkpoint() {
+        int firstSegment;
+        checkpointLock.writeLock().lock();
+        try {
+            // No change is between its append and its apply here, so the map holds every record logged so far
+            firstSegment = log.startCheckpoint();
+        } finally {
+            checkpointLock.writeLock().unlock();
+        }
+        // Changes made while the map is written are logged behind the checkpoint and replayed over it
+        return log.writeCheckpoint(firstSegment,
+                writer -> messages.values().forEach(message -> writer.accept(RECORD_PUT, MessageCodec.encode(message))));
+    }
+
+    @Override
+    protected void afterChange() {
+        Long position = pendingPosition.get();
+        if (position != null) {
+            pendingPosition.remove();
+            log.awaitDurable(position);
+        }
+    }
+
+    @Override
+    public boolean isDurable() {
+        return true;
+    }
+
+    @Override
+    public void close() {
+        log.close();
+    }
+
+    private void append(byte type, byte[] payload) {
+        pendingPosition.set(log.append(type, payload));
+    }
+
+    /**
+     * applies a record of the log to the map during the replay
+     */
+    private void apply(byte type, ByteBuffer payload) {
+        switch (type) {
+            case RECORD_PUT -> {
+                Message message = MessageCodec.decode(payload);
+                messages.put(message.getMsgId(), message);
+            }
+            case RECORD_REMOVE -> messages.remove(StandardCharsets.UTF_8.decode(payload).toString());
+            case RECORD_CLEAR -> messages.clear();
+            default -> LOGGER.warn("Unknown record type {} in message log skipped.", type);
+        }
+    }
+}
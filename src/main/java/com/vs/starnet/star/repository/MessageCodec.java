@@ -0,0 +1,129 @@
+package com.vs.starnet.star.repository;
+
+import com.vs.starnet.star.model.Message;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * compact binary format of a message, shared by the off-heap and the log-backed engine.
+ * layout: format version, then every field in declaration order,
+ * strings as length (-1 for null) plus utf-8 bytes, optional numbers with a presence flag.
+ * fields added later are appended at the end, records of older format versions are still read
+ */
+public final class MessageCodec {
+    private static final byte FORMAT_VERSION = 2; // 2 added "expires"
+
+    private MessageCodec() {
+    }
+
+    /**
+     * @param message message to encode
+     * @return encoded message
+     */
+    public static byte[] encode(Message message) {
+        byte[][] strings = {
+                utf8(message.getStar()), utf8(message.getOrigin()), utf8(message.getSender()),
+                utf8(message.getMsgId()), utf8(message.getVersion()), utf8(message.getSubject()),
+                utf8(message.getMessage()), utf8(message.getStatus()), utf8(message.getFromStar()),
+                utf8(message.getToStar())
+        };
+        int size = 1 + 2 * Long.BYTES + 3 * (1 + Long.BYTES);
+        for (byte[] string : strings) {
+            size += Integer.BYTES + (string == null ? 0 : string.length);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.put(FORMAT_VERSION);
+        putString(buffer, strings[0]);
+        putString(buffer, strings[1]);
+        putString(buffer, strings[2]);
+        putString(buffer, strings[3]);
+        putString(buffer, strings[4]);
+        buffer.putLong(message.getCreated());
+        buffer.putLong(message.getChanged());
+        putString(buffer, strings[5]);
+        putString(buffer, strings[6]);
+        putString(buffer, strings[7]);
+        putString(buffer, strings[8]);
+        putOptionalLong(buffer, message.getReceived());
+        putString(buffer, strings[9]);
+        putOptionalLong(buffer, message.getDelivered());
+        putOptionalLong(buffer, message.getExpires());
+        return buffer.array();
+    }
+
+    /**
+     * @param encoded encoded message
+     * @return decoded message
+     */
+    public static Message decode(byte[] encoded) {
+        return decode(ByteBuffer.wrap(encoded));
+    }
+
+    /**
+     * decodes a message starting at the position of the buffer, the position is moved behind it
+     * @param buffer buffer holding the encoded message
+     * @return decoded message
+     */
+    public static Message decode(ByteBuffer buffer) {
+        byte format = buffer.get();
+        if (format < 1 || format > FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unknown message format " + format);
+        }
+        Message message = Message.builder()
+                .star(getString(buffer))
+                .origin(getString(buffer))
+                .sender(getString(buffer))
+                .msgId(getString(buffer))
+                .version(getString(buffer))
+                .created(buffer.getLong())
+                .changed(buffer.getLong())
+                .subject(getString(buffer))
+                .message(getString(buffer))
+                .status(getString(buffer))
+                .fromStar(getString(buffer))
+                .received(getOptionalLong(buffer))
+                .toStar(getString(buffer))
+                .delivered(getOptionalLong(buffer))
+                .build();
+        if (format >= 2) {
+            message.setExpires(getOptionalLong(buffer));
+        }
+        return message;
+    }
+
+    private static byte[] utf8(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] value) {
+        if (value == null) {
+            buffer.putInt(-1);
+            return;
+        }
+        buffer.putInt(value.length);
+        buffer.put(value);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] value = new byte[length];
+        buffer.get(value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    private static void putOptionalLong(ByteBuffer buffer, Long value) {
+        buffer.put((byte) (value == null ? 0 : 1));
+        buffer.putLong(value == null ? 0 : value);
+    }
+
+    private static Long getOptionalLong(ByteBuffer buffer) {
+        boolean present = buffer.get() != 0;
+        long value = buffer.getLong();
+        return present ? value : null;
+    }
+}
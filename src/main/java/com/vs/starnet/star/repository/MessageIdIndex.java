@@ -0,0 +1,174 @@
+package com.vs.starnet.star.repository;
+
+import java.util.Arrays;
+
+/**
+ * open-addressing hash table from a parsed msg-id to a slot number, kept in primitive arrays.
+ * a msg-id "<n>@<origin>:<star>" is keyed by its number n and the interned id of "<origin>:<star>",
+ * so a lookup hashes two primitives instead of the whole string and an entry needs no node object.
+ * collisions are resolved by linear probing, removals shift the following entries back instead of leaving tombstones.
+ * not thread-safe, {@link #get} may run concurrently with changes as long as the caller validates the result
+ */
+final class MessageIdIndex {
+    static final int NOT_FOUND = -1;
+    private static final int EMPTY = -1; // Slot value of an unused position
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] nonces;
+    private int[] suffixes;
+    private int[] slots;
+    private int size;
+
+    MessageIdIndex() {
+        allocate(MIN_CAPACITY);
+    }
+
+    /**
+     * @param nonce number of the msg-id
+     * @param suffix interned id of the part behind the '@'
+     * @return slot of the msg-id or {@link #NOT_FOUND}
+     */
+    int get(long nonce, int suffix) {
+        // Read once, a concurrent resize must not mix arrays of different sizes
+        long[] nonces = this.nonces;
+        int[] suffixes = this.suffixes;
+        int[] slots = this.slots;
+        if (nonces.length != slots.length || suffixes.length != slots.length) {
+            return NOT_FOUND;
+        }
+        int mask = slots.length - 1;
+        int position = hash(nonce, suffix) & mask;
+        for (int probes = 0; probes < slots.length; probes++) {
+            int slot = slots[position];
+            if (slot == EMPTY) {
+                return NOT_FOUND;
+            }
+            if (nonces[position] == nonce && suffixes[position] == suffix) {
+                return slot;
+            }
+            position = (position + 1) & mask;
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * adds the msg-id or moves it to another slot
+     */
+    void put(long nonce, int suffix, int slot) {
+        if ((size + 1) * 4L > slots.length * 3L) {
+            resize(slots.length * 2);
+        }
+        int mask = slots.length - 1;
+        int position = hash(nonce, suffix) & mask;
+        while (slots[position] != EMPTY) {
+            if (nonces[position] == nonce && suffixes[position] == suffix) {
+                slots[position] = slot;
+                return;
+            }
+            position = (position + 1) & mask;
+        }
+        nonces[position] = nonce;
+        suffixes[position] = suffix;
+        slots[position] = slot;
+        size++;
+    }
+
+    /**
+     * @return slot the msg-id had or {@link #NOT_FOUND}
+     */
+    int remove(long nonce, int suffix) {
+        int mask = slots.length - 1;
+        int position = hash(nonce, suffix) & mask;
+        while (slots[position] != EMPTY) {
+            if (nonces[position] == nonce && suffixes[position] == suffix) {
+                int removed = slots[position];
+                shiftBack(position);
+                size--;
+                return removed;
+            }
+            position = (position + 1) & mask;
+        }
+        return NOT_FOUND;
+    }
+
+    void clear() {
+        allocate(MIN_CAPACITY);
+        size = 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * closes the gap at a removed position by moving back entries whose probe sequence passes it
+     */
+    private void shiftBack(int gap) {
+        int mask = slots.length - 1;
+        int position = gap;
+        while (true) {
+            position = (position + 1) & mask;
+            if (slots[position] == EMPTY) {
+                break;
+            }
+            int home = hash(nonces[position], suffixes[position]) & mask;
+            // The entry may move into the gap unless its home lies cyclically between the gap and its position
+            boolean stays = gap <= position
+                    ? gap < home && home <= position
+                    : gap < home || home <= position;
+            if (!stays) {
+                nonces[gap] = nonces[position];
+                suffixes[gap] = suffixes[position];
+                slots[gap] = slots[position];
+                gap = position;
+            }
+        }
+        slots[gap] = EMPTY;
+    }
+
+    private void resize(int capacity) {
+        long[] oldNonces = nonces;
+        int[] oldSuffixes = suffixes;
+        int[] oldSlots = slots;
+        long[] newNonces = new long[capacity];
+        int[] newSuffixes = new int[capacity];
+        int[] newSlots = new int[capacity];
+        Arrays.fill(newSlots, EMPTY);
+        int mask = capacity - 1;
+        for (int i = 0; i < oldSlots.length; i++) {
+            if (oldSlots[i] != EMPTY) {
+                int position = hash(oldNonces[i], oldSuffixes[i]) & mask;
+                while (newSlots[position] != EMPTY) {
+                    position = (position + 1) & mask;
+                }
+                newNonces[position] = oldNonces[i];
+                newSuffixes[position] = oldSuffixes[i];
+                newSlots[position] = oldSlots[i];
+            }
+        }
+        nonces = newNonces;
+        suffixes = newSuffixes;
+        slots = newSlots;
+    }
+
+    private void allocate(int capacity) {
+        long[] newNonces = new long[capacity];
+        int[] newSuffixes = new int[capacity];
+        int[] newSlots = new int[capacity];
+        Arrays.fill(newSlots, EMPTY);
+        nonces = newNonces;
+        suffixes = newSuffixes;
+        slots = newSlots;
+    }
+
+    private static int hash(long nonce, int suffix) {
+        // Finalizer of murmur3, spreads the sequential numbers over the table
+        long h = nonce * 31 + suffix;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+}
@@ -0,0 +1,180 @@
+package com.vs.starnet.star.repository;
+
+import com.vs.starnet.star.model.Message;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * maintains secondary indexes over the stored messages
+ * by status (active/deleted), by origin, by created time and by changed time
+ * -> list queries and counts are answered without scanning the whole store
+ */
+public class MessageIndex {
+
+    private final ConcurrentHashMap<String, Set<String>> byStatus = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Set<String>> byOrigin = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<ChangeKey> byChanged = new ConcurrentSkipListSet<>();
+    private final ConcurrentSkipListSet<ChangeKey> byCreated = new ConcurrentSkipListSet<>(); // Created time never changes
+
+    /**
+     * key of the changed index, ordered by changed time and msg-id.
+     * the created index uses the same key with the created time
+     * @param changed last modification timestamp
+     * @param msgId MSG-UUID
+     */
+    public record ChangeKey(long changed, String msgId) implements Comparable<ChangeKey> {
+        @Override
+        public int compareTo(ChangeKey other) {
+            int result = Long.compare(changed, other.changed);
+            return result != 0 ? result : msgId.compareTo(other.msgId);
+        }
+    }
+
+    /**
+     * adds a newly stored message to all indexes
+     * @param message stored message
+     */
+    public void add(Message message) {
+        byStatus.computeIfAbsent(message.getStatus(), key -> ConcurrentHashMap.newKeySet()).add(message.getMsgId());
+        byOrigin.computeIfAbsent(message.getOrigin(), key -> ConcurrentHashMap.newKeySet()).add(message.getMsgId());
+        byChanged.add(new ChangeKey(message.getChanged(), message.getMsgId()));
+        byCreated.add(new ChangeKey(message.getCreated(), message.getMsgId()));
+    }
+
+    /**
+     * moves a message to its new status and changed time
+     * @param message message after the change
+     * @param oldStatus status before the change
+     * @param oldChanged changed time before the change
+     */
+    public void update(Message message, String oldStatus, long oldChanged) {
+        if (!oldStatus.equals(message.getStatus())) {
+            Set<String> oldIds = byStatus.get(oldStatus);
+            if (oldIds != null) {
+                oldIds.remove(message.getMsgId());
+            }
+            byStatus.computeIfAbsent(message.getStatus(), key -> ConcurrentHashMap.newKeySet()).add(message.getMsgId());
+        }
+        if (oldChanged != message.getChanged()) {
+            byChanged.remove(new ChangeKey(oldChanged, message.getMsgId()));
+            byChanged.add(new ChangeKey(message.getChanged(), message.getMsgId()));
+        }
+    }
+
+    /**
+     * removes a message from all indexes
+     * @param message removed message
+     */
+    public void remove(Message message) {
+        Set<String> statusIds = byStatus.get(message.getStatus());
+        if (statusIds != null) {
+            statusIds.remove(message.getMsgId());
+        }
+        Set<String> originIds = byOrigin.get(message.getOrigin());
+        if (originIds != null) {
+            originIds.remove(message.getMsgId());
+        }
+        byChanged.remove(new ChangeKey(message.getChanged(), message.getMsgId()));
+        byCreated.remove(new ChangeKey(message.getCreated(), message.getMsgId()));
+    }
+
+    /**
+     * @param status status such as "active" or "deleted"
+     * @return ids of the messages with the given status
+     */
+    public Set<String> findByStatus(String status) {
+        return Collections.unmodifiableSet(byStatus.getOrDefault(status, Set.of()));
+    }
+
+    /**
+     * @param origin COM-UUID or EMAIL including the star suffix
+     * @return ids of the messages from the given origin
+     */
+    public Set<String> findByOrigin(String origin) {
+        return Collections.unmodifiableSet(byOrigin.getOrDefault(origin, Set.of()));
+    }
+
+    /**
+     * range query over the changed time, both bounds inclusive
+     * @param from lowest changed time
+     * @param to highest changed time
+     * @return keys of the matching messages in ascending changed order
+     */
+    public NavigableSet<ChangeKey> findChangedBetween(long from, long to) {
+        if (to == Long.MAX_VALUE) {
+            return Collections.unmodifiableNavigableSet(byChanged.tailSet(new ChangeKey(from, ""), true));
+        }
+        return Collections.unmodifiableNavigableSet(byChanged.subSet(new ChangeKey(from, ""), true, new ChangeKey(to + 1, ""), false));
+    }
+
+    /**
+     * range query over the created time, both bounds inclusive
+     * @param from lowest created time
+     * @param to highest created time
+     * @return keys holding the created time of the matching messages in ascending created order
+     */
+    public NavigableSet<ChangeKey> findCreatedBetween(long from, long to) {
+        if (to == Long.MAX_VALUE) {
+            return Collections.unmodifiableNavigableSet(byCreated.tailSet(new ChangeKey(from, ""), true));
+        }
+        return Collections.unmodifiableNavigableSet(byCreated.subSet(new ChangeKey(from, ""), true, new ChangeKey(to + 1, ""), false));
+    }
+
+    /**
+     * walks the changed index from a given position on
+     * @param from position to start at
+     * @param inclusive true if the position itself belongs to the result
+     * @return keys of the matching messages in ascending changed order
+     */
+    public NavigableSet<ChangeKey> findChangedFrom(ChangeKey from, boolean inclusive) {
+        return Collections.unmodifiableNavigableSet(byChanged.tailSet(from, inclusive));
+    }
+
+    /**
+     * @return keys of all messages in ascending changed order
+     */
+    public NavigableSet<ChangeKey> findAllByChanged() {
+        return Collections.unmodifiableNavigableSet(byChanged);
+    }
+
+    public long countByStatus(String status) {
+        return byStatus.getOrDefault(status, Set.of()).size();
+    }
+
+    public long countByOrigin(String origin) {
+        return byOrigin.getOrDefault(origin, Set.of()).size();
+    }
+
+    /**
+     * @return message count per status
+     */
+    public Map<String, Long> getCountsByStatus() {
+        return counts(byStatus);
+    }
+
+    /**
+     * @return message count per origin
+     */
+    public Map<String, Long> getCountsByOrigin() {
+        return counts(byOrigin);
+    }
+
+    public void clear() {
+        byStatus.clear();
+        byOrigin.clear();
+        byChanged.clear();
+        byCreated.clear();
+    }
+
+    private static Map<String, Long> counts(Map<String, Set<String>> index) {
+        Map<String, Long> counts = new TreeMap<>();
+        index.forEach((key, ids) -> counts.put(key, (long) ids.size()));
+        return counts;
+    }
+}
@@ -0,0 +1,78 @@
+package com.vs.starnet.star.repository;
+
+import com.vs.starnet.star.model.Message;
+
+/**
+ * compact stored form of a message.
+ * repeating identifiers are interned into int ids of an {@link IdentifierTable}, the status is a byte code
+ * and optional timestamps are primitive longs. the msg-id is the key of the store and not kept again.
+ * converted from and to the {@link Message} dto when it enters or leaves the store
+ */
+record MessageRecord(int star, int origin, int sender, int version, int fromStar, int toStar,
+                     byte status, String otherStatus,
+                     long created, long changed, long received, long delivered, long expires,
+                     String subject, String body) {
+
+    private static final long ABSENT = Long.MIN_VALUE; // Optional timestamp not set
+    private static final String[] STATUSES = {null, "active", "deleted"}; // Byte codes of the known statuses
+    private static final byte OTHER_STATUS = -1; // Status outside of the known ones, kept as string
+
+    /**
+     * @param message message to store
+     * @param identifiers table interning the identifiers
+     * @return compact record of the message
+     */
+    static MessageRecord of(Message message, IdentifierTable identifiers) {
+        byte status = statusCode(message.getStatus());
+        return new MessageRecord(
+                identifiers.intern(message.getStar()),
+                identifiers.intern(message.getOrigin()),
+                identifiers.intern(message.getSender()),
+                identifiers.intern(message.getVersion()),
+                identifiers.intern(message.getFromStar()),
+                identifiers.intern(message.getToStar()),
+                status,
+                status == OTHER_STATUS ? message.getStatus() : null,
+                message.getCreated(),
+                message.getChanged(),
+                message.getReceived() == null ? ABSENT : message.getReceived(),
+                message.getDelivered() == null ? ABSENT : message.getDelivered(),
+                message.getExpires() == null ? ABSENT : message.getExpires(),
+                message.getSubject(),
+                message.getMessage());
+    }
+
+    /**
+     * @param msgId key the record is stored under
+     * @param identifiers table the record was interned with
+     * @return new message dto, callers may change it freely
+     */
+    Message toMessage(String msgId, IdentifierTable identifiers) {
+        return Message.builder()
+                .star(identifiers.lookup(star))
+                .origin(identifiers.lookup(origin))
+                .sender(identifiers.lookup(sender))
+                .msgId(msgId)
+                .version(identifiers.lookup(version))
+                .created(created)
+                .changed(changed)
+                .subject(subject)
+                .message(body)
+                .status(status == OTHER_STATUS ? otherStatus : STATUSES[status])
+                .fromStar(identifiers.lookup(fromStar))
+                .received(received == ABSENT ? null : received)
+                .toStar(identifiers.lookup(toStar))
+                .delivered(delivered == ABSENT ? null : delivered)
+                .expires(expires == ABSENT ? null : expires)
+                .build();
+    }
+
+    private static byte statusCode(String status) {
+        for (byte code = 0; code < STATUSES.length; code++) {
+            if (STATUSES[code] == null ? status == null : STATUSES[code].equals(status)) {
+                return code;
+            }
+        }
+        return OTHER_STATUS;
+    }
+}
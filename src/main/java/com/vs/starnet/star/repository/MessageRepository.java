@@ -1,36 +1,179 @@
 package com.vs.starnet.star.repository;
 
 import com.vs.starnet.star.model.Message;
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
 
+import java.nio.file.Path;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
 
 /**
- * manages message objects and enables setting, getting, deleting and searching them
+ * manages message objects and enables setting, getting, deleting and searching them.
+ * the messages are kept by the storage engine selected with the property "star.store.engine":
+ * "heap" (default), "compact" (interned identifiers), "off-heap", "off-heap-body" (headers on the heap, bodies in direct memory)
+ * or "log" (persistent, write-ahead log in "star.store.dir").
+ * the log forces changes to the disk as set by "star.store.sync": "none", "always" or "group" (group commit)
  */
 @Repository
-public class MessageRepository {
+public class MessageRepository implements MessageStore {
+    static final Logger LOGGER = LogManager.getRootLogger();
 
-    private Map<String, Message> messages = new ConcurrentHashMap<>();
+    private final MessageStore engine;
+
+    @Autowired
+    public MessageRepository(@Value("${star.store.engine:heap}") String engineName,
+                             @Value("${star.store.dir:data}") String storeDir,
+                             @Value("${server.port:8080}") int port,
+                             @Value("${star.store.sync:group}") String syncPolicy,
+                             @Value("${star.store.group-commit-ms:5}") long groupCommitMillis,
+                             @Value("${star.store.segment-size:67108864}") int segmentSize) {
+        this(createEngine(engineName, Path.of(storeDir), port,
+                WriteAheadLog.SyncPolicy.valueOf(syncPolicy.toUpperCase()), groupCommitMillis, segmentSize));
+        LOGGER.log(Level.getLevel("STAR_INFO"), "Message store engine: {}", engineName);
+    }
+
+    public MessageRepository(MessageStore engine) {
+        this.engine = engine;
+    }
+
+    /**
+     * @param engineName name of the engine
+     * @param storeDir directory for files of persistent engines
+     * @param port port of the star, keeps the files of stars on the same host apart
+     * @return new engine
+     */
+    static MessageStore createEngine(String engineName, Path storeDir, int port) {
+        return createEngine(engineName, storeDir, port, WriteAheadLog.SyncPolicy.GROUP, 5, 64 * 1024 * 1024);
+    }
+
+    /**
+     * @param engineName name of the engine
+     * @param storeDir directory for files of persistent engines
+     * @param port port of the star, keeps the files of stars on the same host apart
+     * @param syncPolicy when the log forces changes to the disk
+     * @param groupCommitMillis length of a group commit window
+     * @param segmentSize bytes per log segment
+     * @return new engine
+     */
+    static MessageStore createEngine(String engineName, Path storeDir, int port,
+                                     WriteAheadLog.SyncPolicy syncPolicy, long groupCommitMillis, int segmentSize) {
+        return switch (engineName) {
+            case "heap" -> new HeapMessageStore();
+            case "compact" -> new CompactMessageStore();
+            case "off-heap" -> new OffHeapMessageStore();
+            case "off-heap-body" -> new BodyArenaMessageStore();
+            case "log" -> new LogBackedMessageStore(storeDir.resolve("messages-" + port), segmentSize, syncPolicy, groupCommitMillis);
+            default -> throw new IllegalArgumentException("Unknown message store engine: " + engineName);
+        };
+    }
 
     public Message findById(String msgId) {
-        return messages.get(msgId);
+        return engine.findById(msgId);
+    }
+
+    public Message findHeaderById(String msgId) {
+        return engine.findHeaderById(msgId);
     }
 
     public void save(String msgId, Message message) {
-        messages.put(msgId, message);
+        engine.save(msgId, message);
+    }
+
+    public boolean saveIfAbsent(String msgId, Message message) {
+        return engine.saveIfAbsent(msgId, message);
+    }
+
+    public boolean[] saveAllIfAbsent(List<Message> messages) {
+        return engine.saveAllIfAbsent(messages);
+    }
+
+    public Message update(String msgId, UnaryOperator<Message> change) {
+        return engine.update(msgId, change);
     }
 
     public void delete(String msgId) {
-        messages.remove(msgId);
+        engine.delete(msgId);
+    }
+
+    public Message removeIf(String msgId, Predicate<Message> condition) {
+        return engine.removeIf(msgId, condition);
     }
 
     public boolean existsById(String msgId) {
-        return messages.containsKey(msgId);
+        return engine.existsById(msgId);
     }
 
+    @Override
     public Map<String, Message> findAll() {
-        return messages;
+        return engine.findAll();
+    }
+
+    @Override
+    public long count() {
+        return engine.count();
+    }
+
+    public Set<String> findIdsByStatus(String status) {
+        return engine.findIdsByStatus(status);
+    }
+
+    public Set<String> findIdsByOrigin(String origin) {
+        return engine.findIdsByOrigin(origin);
+    }
+
+    public NavigableSet<MessageIndex.ChangeKey> findChangedBetween(long from, long to) {
+        return engine.findChangedBetween(from, to);
+    }
+
+    public long compactStorage() {
+        return engine.compactStorage();
+    }
+
+    public NavigableSet<MessageIndex.ChangeKey> findCreatedBetween(long from, long to) {
+        return engine.findCreatedBetween(from, to);
+    }
+
+    public NavigableSet<MessageIndex.ChangeKey> findChangedFrom(MessageIndex.ChangeKey from, boolean inclusive) {
+        return engine.findChangedFrom(from, inclusive);
+    }
+
+    public NavigableSet<MessageIndex.ChangeKey> findAllByChanged() {
+        return engine.findAllByChanged();
+    }
+
+    public Map<String, Long> getCountsByStatus() {
+        return engine.getCountsByStatus();
+    }
+
+    public Map<String, Long> getCountsByOrigin() {
+        return engine.getCountsByOrigin();
+    }
+
+    public long getVersion() {
+        return engine.getVersion();
+    }
+
+    public void clear() {
+        engine.clear();
+    }
+
+    public boolean isDurable() {
+        return engine.isDurable();
+    }
+
+    @PreDestroy
+    @Override
+    public void close() {
+        engine.close();
     }
 }
@@ -0,0 +1,145 @@
+package com.vs.starnet.star.repository;
+
+import com.vs.starnet.star.model.Message;
+
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * storage engine for messages, extends the crud methods with atomic updates,
+ * index queries by status and origin and range queries over the changed time.
+ * every message path goes through this interface, so engines can be swapped per deployment.
+ * messages handed to or read from the store are not changed afterwards, changes go through {@link #update}
+ */
+public interface MessageStore extends InMemoryCrudRepository<String, Message> {
+
+    /**
+     * stores a message unless a message with the same id exists
+     * @param msgId MSG-UUID
+     * @param message message to store
+     * @return false if the id is taken
+     */
+    boolean saveIfAbsent(String msgId, Message message);
+
+    /**
+     * stores a batch of messages as one change, each unless its id is taken, also by an earlier message of the batch.
+     * other changes of these msg-ids wait until the batch is stored, the version moves once per batch
+     * and a persistent engine waits for the disk once
+     * @param messages messages with their msg-ids
+     * @return per message true if it was stored, false if its id is taken
+     */
+    boolean[] saveAllIfAbsent(List<Message> messages);
+
+    /**
+     * reads a message for list views and status checks which do not need the body.
+     * engines that keep the body apart skip decoding it, the message field may then be null
+     * @param msgId MSG-UUID
+     * @return message or null
+     */
+    default Message findHeaderById(String msgId) {
+        return findById(msgId);
+    }
+
+    /**
+     * changes a stored message atomically, concurrent updates of the same message are serialized.
+     * the stored message is replaced as a whole, readers see either the old or the new version
+     * @param msgId MSG-UUID
+     * @param change gets a copy of the current message and returns the changed one, or null to leave it as it is
+     * @return changed message or null if the message does not exist or was left unchanged
+     */
+    Message update(String msgId, UnaryOperator<Message> change);
+
+    /**
+     * removes a message if it still matches a condition, checked atomically with the removal
+     * @param msgId MSG-UUID
+     * @param condition checked against the stored message
+     * @return removed message or null if it does not exist or did not match
+     */
+    Message removeIf(String msgId, Predicate<Message> condition);
+
+    /**
+     * @param status status such as "active" or "deleted"
+     * @return ids of the messages with the given status
+     */
+    Set<String> findIdsByStatus(String status);
+
+    /**
+     * @param origin COM-UUID or EMAIL including the star suffix
+     * @return ids of the messages from the given origin
+     */
+    Set<String> findIdsByOrigin(String origin);
+
+    /**
+     * range query over the changed time, both bounds inclusive
+     * @param from lowest changed time
+     * @param to highest changed time
+     * @return keys of the matching messages in ascending changed order
+     */
+    NavigableSet<MessageIndex.ChangeKey> findChangedBetween(long from, long to);
+
+    /**
+     * range query over the created time, both bounds inclusive
+     * @param from lowest created time
+     * @param to highest created time
+     * @return keys holding the created time of the matching messages in ascending created order
+     */
+    NavigableSet<MessageIndex.ChangeKey> findCreatedBetween(long from, long to);
+
+    /**
+     * walks the changed index from a given position on
+     * @param from position to start at
+     * @param inclusive true if the position itself belongs to the result
+     * @return keys of the matching messages in ascending changed order
+     */
+    NavigableSet<MessageIndex.ChangeKey> findChangedFrom(MessageIndex.ChangeKey from, boolean inclusive);
+
+    /**
+     * @return keys of all messages in ascending changed order
+     */
+    NavigableSet<MessageIndex.ChangeKey> findAllByChanged();
+
+    /**
+     * @return message count per status
+     */
+    Map<String, Long> getCountsByStatus();
+
+    /**
+     * @return message count per origin
+     */
+    Map<String, Long> getCountsByOrigin();
+
+    /**
+     * @return version of the store, increases monotonically with every change
+     */
+    long getVersion();
+
+    /**
+     * removes all messages
+     */
+    void clear();
+
+    /**
+     * reclaims the space of replaced and removed messages, engines that free it right away have nothing to do
+     * @return bytes reclaimed
+     */
+    default long compactStorage() {
+        return 0;
+    }
+
+    /**
+     * @return true if the engine keeps the messages across a restart by itself
+     */
+    default boolean isDurable() {
+        return false;
+    }
+
+    /**
+     * releases files or memory held by the engine
+     */
+    default void close() {
+    }
+}
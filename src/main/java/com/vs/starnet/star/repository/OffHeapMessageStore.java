@@ -0,0 +1,153 @@
+package com.vs.starnet.star.repository;
+
+import com.vs.starnet.star.model.Message;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * keeps the messages encoded in direct memory chunks outside of the java heap.
+ * the heap only holds the msg-id to location map and the indexes, so large stores cause little gc work.
+ * a changed message is appended as a new record, the space of old records is reclaimed by {@link #compactStorage}
+ */
+public class OffHeapMessageStore extends IndexedMessageStore<String> {
+
+    private static final double MIN_UNUSED_RATIO = 0.5; // Chunks at least half released are compacted
+
+    private final ConcurrentHashMap<String, Long> locations = new ConcurrentHashMap<>(); // Location in the arena
+    private final DirectMemoryArena arena;
+
+    public OffHeapMessageStore() {
+        this(DirectMemoryArena.DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param chunkSize bytes per direct memory chunk of the arena
+     */
+    OffHeapMessageStore(int chunkSize) {
+        this.arena = new DirectMemoryArena(chunkSize);
+    }
+
+    @Override
+    protected String keyOf(String msgId) {
+        return msgId;
+    }
+
+    @Override
+    protected Message read(String msgId) {
+        while (true) {
+            Long location = locations.get(msgId);
+            if (location == null) {
+                return null;
+            }
+            // Only decoded if the record was not moved or replaced while it was read
+            byte[] bytes = arena.read(location);
+            if (bytes != null && location.equals(locations.get(msgId))) {
+                return MessageCodec.decode(bytes);
+            }
+        }
+    }
+
+    @Override
+    protected boolean insert(String msgId, Message message) {
+        if (locations.containsKey(msgId)) {
+            return false;
+        }
+        locations.put(msgId, arena.append(MessageCodec.encode(message)));
+        return true;
+    }
+
+    @Override
+    protected Message write(String msgId, Message message) {
+        Long previous = locations.put(msgId, arena.append(MessageCodec.encode(message)));
+        return previous == null ? null : release(previous);
+    }
+
+    @Override
+    protected Message erase(String msgId) {
+        Long previous = locations.remove(msgId);
+        return previous == null ? null : release(previous);
+    }
+
+    @Override
+    protected void eraseAll() {
+        locations.clear();
+        arena.clear();
+    }
+
+    /**
+     * moves the live records out of the chunks that are mostly unused and frees those chunks
+     */
+    @Override
+    public long compactStorage() {
+        Set<Integer> compactable = arena.findCompactable(MIN_UNUSED_RATIO);
+        if (compactable.isEmpty()) {
+            return 0;
+        }
+        for (String msgId : locations.keySet()) {
+            synchronized (lockFor(msgId)) {
+                Long location = locations.get(msgId);
+                if (location != null && compactable.contains(DirectMemoryArena.chunkOf(location))) {
+                    locations.put(msgId, arena.append(arena.read(location)));
+                    arena.release(location);
+                }
+            }
+        }
+        return arena.free(compactable);
+    }
+
+    @Override
+    public boolean existsById(String msgId) {
+        return locations.containsKey(msgId);
+    }
+
+    @Override
+    public Map<String, Message> findAll() {
+        Map<String, Message> all = new LinkedHashMap<>();
+        for (String msgId : locations.keySet()) {
+            Message message = read(msgId);
+            if (message != null) {
+                all.put(msgId, message);
+            }
+        }
+        return all;
+    }
+
+    @Override
+    public long count() {
+        return locations.size();
+    }
+
+    /**
+     * @return bytes of direct memory taken by records
+     */
+    public long getUsedBytes() {
+        return arena.getUsedBytes();
+    }
+
+    /**
+     * @return bytes of records that were replaced or removed
+     */
+    public long getUnusedBytes() {
+        return arena.getUnusedBytes();
+    }
+
+    /**
+     * @return number of direct memory chunks holding records
+     */
+    public int getChunkCount() {
+        return arena.getChunkCount();
+    }
+
+    private Message release(long location) {
+        Message previous = decodeAt(location);
+        arena.release(location);
+        return previous;
+    }
+
+    private Message decodeAt(long location) {
+        return MessageCodec.decode(arena.read(location));
+    }
+}
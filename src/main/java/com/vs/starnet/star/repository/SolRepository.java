@@ -9,6 +9,7 @@ import org.springframework.stereotype.Repository;
 
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * manages sol objects and enables setting, getting, deleting and searching them
@@ -21,6 +22,8 @@ public class SolRepository implements InMemoryCrudRepository<String, Sol> {
     // Two maps for active and inactive Sols
     private Map<String, Sol> activeSols = new ConcurrentHashMap<>();
     private Map<String, Sol> inactiveSols = new ConcurrentHashMap<>();
+    // Increased on every change of the stars, used as ETag of the star list
+    private final AtomicLong version = new AtomicLong();
 
     public Sol findById(String solStarUuid) {
         return activeSols.get(solStarUuid);
@@ -28,6 +31,7 @@ public class SolRepository implements InMemoryCrudRepository<String, Sol> {
 
     public void save(String solStarUuid, Sol sol) {
         activeSols.put(solStarUuid, sol); // Save the Sol in active map
+        version.incrementAndGet();
         LOGGER.log(Level.getLevel("STAR_INFO"), "Star registered: {}", sol);
         LOGGER.log(Level.getLevel("STAR_DEBUG"), "New star count in active map: {}", activeSols.size());
         LOGGER.log(Level.getLevel("STAR_DEBUG"), "Star list: {}", findAll());
@@ -37,6 +41,7 @@ public class SolRepository implements InMemoryCrudRepository<String, Sol> {
         Sol removedSol = activeSols.remove(solStarUuid);
         LOGGER.log(Level.getLevel("STAR_INFO"), "Star deleted: {}", solStarUuid);
         if (removedSol != null) {
+            version.incrementAndGet();
             LOGGER.log(Level.getLevel("STAR_DEBUG"), "Star deregistered from active: {}", solStarUuid);
             // Optionally move to inactive map upon deletion
             inactiveSols.put(solStarUuid, removedSol);
@@ -44,6 +49,21 @@ public class SolRepository implements InMemoryCrudRepository<String, Sol> {
         }
     }
 
+    /**
+     * adds an inactive star, e.g. one restored from a snapshot, unless the star is already known as inactive
+     * @param solStarUuid STAR-UUID of the star
+     * @param sol inactive star
+     * @return true if the star was added
+     */
+    public boolean saveInactiveIfAbsent(String solStarUuid, Sol sol) {
+        if (inactiveSols.putIfAbsent(solStarUuid, sol) != null) {
+            return false;
+        }
+        version.incrementAndGet();
+        LOGGER.log(Level.getLevel("STAR_DEBUG"), "Inactive star added: {}", solStarUuid);
+        return true;
+    }
+
     public boolean existsById(String solStarUuid) {
         return activeSols.containsKey(solStarUuid);
     }
@@ -57,6 +77,13 @@ public class SolRepository implements InMemoryCrudRepository<String, Sol> {
         return inactiveSols;
     }
 
+    /**
+     * @return version of the stars, increases monotonically with every change
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
     @Override
     public long count() {
         return activeSols.size();
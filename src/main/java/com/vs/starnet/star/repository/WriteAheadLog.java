@@ -0,0 +1,453 @@
+package com.vs.starnet.star.repository;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * append-only log split into memory-mapped segment files of a fixed size.
+ * a record is: length of type and payload, crc32 of type and payload, type, payload.
+ * an unwritten (zero) length marks the end of the data in a segment.
+ * how appends reach the disk is chosen by the {@link SyncPolicy}.
+ * a checkpoint writes the state up to a segment into a snapshot file of the same format
+ * and deletes the segments before, so the log does not grow without bound
+ */
+public class WriteAheadLog implements AutoCloseable {
+    static final Logger LOGGER = LogManager.getRootLogger();
+    private static final int HEADER_SIZE = Integer.BYTES + Integer.BYTES + 1; // length, crc, type
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".wal";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".snap";
+
+    /**
+     * when appended records are forced to the disk
+     */
+    public enum SyncPolicy {
+        NONE, // The operating system writes the pages back, a crash of the machine may lose recent records
+        ALWAYS, // Every append waits for its own fsync
+        GROUP // Appends wait for a flusher that forces all records of a short window with one fsync
+    }
+
+    private final Path directory;
+    private final int segmentSize;
+    private final SyncPolicy syncPolicy;
+    private final long groupCommitNanos;
+
+    private FileChannel currentChannel;
+    private MappedByteBuffer current;
+    private int currentNumber;
+    private int writeOffset;
+    private long appendedPosition; // Position behind the last appended record: segment number << 32 | offset
+    private volatile long durablePosition; // Position up to which all records are on the disk
+    private final Object durableMonitor = new Object();
+    private volatile boolean closed;
+    private Thread flusher;
+    private final AtomicLong syncs = new AtomicLong();
+
+    /**
+     * opens the log in a directory, segments written before are kept for {@link #replay}
+     * @param directory directory of the segment files
+     * @param segmentSize bytes per segment file
+     * @param syncPolicy when records are forced to the disk
+     * @param groupCommitMillis length of a group commit window, only used with {@link SyncPolicy#GROUP}
+     */
+    public WriteAheadLog(Path directory, int segmentSize, SyncPolicy syncPolicy, long groupCommitMillis) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.syncPolicy = syncPolicy;
+        this.groupCommitNanos = groupCommitMillis * 1_000_000;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create log directory " + directory, e);
+        }
+    }
+
+    /**
+     * reads the latest snapshot and all records appended behind it in the order they were appended
+     * and prepares the log for appending behind the last one. a record cut off or damaged by a crash ends its segment
+     * @param consumer gets type and payload of every record
+     * @return number of records read
+     */
+    public synchronized long replay(BiConsumer<Byte, ByteBuffer> consumer) {
+        long[] records = new long[1];
+        BiConsumer<Byte, ByteBuffer> counting = (type, payload) -> {
+            records[0]++;
+            consumer.accept(type, payload);
+        };
+        try {
+            int firstSegment = 1;
+            Path snapshot = findLatest(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+            if (snapshot != null) {
+                // Segments before the snapshot are left over from a checkpoint cut short by a crash
+                firstSegment = fileNumber(snapshot, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+                try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+                    readRecords(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), snapshot, counting);
+                }
+            }
+            int from = firstSegment;
+            List<Path> segments = list(SEGMENT_PREFIX, SEGMENT_SUFFIX).stream()
+                    .filter(segment -> fileNumber(segment, SEGMENT_PREFIX, SEGMENT_SUFFIX) >= from)
+                    .toList();
+            for (Path segment : segments) {
+                try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                    int offset = readRecords(channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size()), segment, counting);
+                    if (segment.equals(segments.get(segments.size() - 1))) {
+                        // Continue in the last segment behind its last complete record
+                        currentChannel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                        current = currentChannel.map(FileChannel.MapMode.READ_WRITE, 0, currentChannel.size());
+                        currentNumber = fileNumber(segment, SEGMENT_PREFIX, SEGMENT_SUFFIX);
+                        writeOffset = offset;
+                        if (writeOffset + Integer.BYTES <= current.capacity()) {
+                            current.putInt(writeOffset, 0);
+                        }
+                    }
+                }
+            }
+            if (current == null) {
+                openSegment(firstSegment, segmentSize);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to replay log " + directory, e);
+        }
+        appendedPosition = position(currentNumber, writeOffset);
+        durablePosition = appendedPosition;
+        startFlusher();
+        return records[0];
+    }
+
+    /**
+     * appends a record, with {@link SyncPolicy#ALWAYS} it is on the disk when the method returns
+     * @param type type of the record
+     * @param payload content of the record
+     * @return position behind the record for {@link #awaitDurable}
+     */
+    public synchronized long append(byte type, byte[] payload) {
+        return appendAll(type, List.of(payload));
+    }
+
+    /**
+     * appends several records as one group, with {@link SyncPolicy#ALWAYS} they are forced to the disk once
+     * @param type type of the records
+     * @param payloads contents of the records
+     * @return position behind the last record for {@link #awaitDurable}
+     */
+    public synchronized long appendAll(byte type, List<byte[]> payloads) {
+        if (current == null) {
+            throw new IllegalStateException("Log " + directory + " is not replayed or already closed");
+        }
+        for (byte[] payload : payloads) {
+            writeRecord(type, payload);
+        }
+        if (syncPolicy == SyncPolicy.ALWAYS) {
+            force(current);
+            durablePosition = appendedPosition;
+        }
+        return appendedPosition;
+    }
+
+    /**
+     * writes a record behind the last one without forcing it to the disk
+     */
+    private void writeRecord(byte type, byte[] payload) {
+        int recordSize = HEADER_SIZE + payload.length;
+        if (writeOffset + recordSize > current.capacity()) {
+            rollSegment(recordSize + Integer.BYTES);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(payload);
+        // The length is written last, a record becomes visible to the replay only when it is complete
+        current.putInt(writeOffset + Integer.BYTES, (int) crc.getValue());
+        current.put(writeOffset + 2 * Integer.BYTES, type);
+        current.put(writeOffset + HEADER_SIZE, payload);
+        if (writeOffset + recordSize + Integer.BYTES <= current.capacity()) {
+            current.putInt(writeOffset + recordSize, 0); // End marker over leftovers of a cut off record
+        }
+        current.putInt(writeOffset, 1 + payload.length);
+        writeOffset += recordSize;
+        appendedPosition = position(currentNumber, writeOffset);
+    }
+
+    /**
+     * waits until a record is on the disk, returns at once unless the group commit is used
+     * @param position position returned by {@link #append}
+     * @return false if the log was closed or the wait interrupted before the record was on the disk
+     */
+    public boolean awaitDurable(long position) {
+        if (syncPolicy != SyncPolicy.GROUP) {
+            return true;
+        }
+        synchronized (durableMonitor) {
+            while (durablePosition < position && !closed) {
+                try {
+                    durableMonitor.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return durablePosition >= position;
+        }
+    }
+
+    /**
+     * first step of a checkpoint: continues in a new segment, records appended from now on are kept by the checkpoint.
+     * the caller makes sure that every record appended so far is part of the state it writes in {@link #writeCheckpoint}
+     * @return first segment not covered by the checkpoint
+     */
+    public synchronized int startCheckpoint() {
+        if (current == null) {
+            throw new IllegalStateException("Log " + directory + " is not replayed or already closed");
+        }
+        rollSegment(0);
+        return currentNumber;
+    }
+
+    /**
+     * second step of a checkpoint: writes the snapshot and deletes the segments and snapshots it replaces
+     * @param firstSegment segment returned by {@link #startCheckpoint}
+     * @param state writes the state as records of type and payload
+     * @return bytes of the deleted files
+     */
+    public long writeCheckpoint(int firstSegment, Consumer<BiConsumer<Byte, byte[]>> state) {
+        Path snapshot = directory.resolve(fileName(SNAPSHOT_PREFIX, firstSegment, SNAPSHOT_SUFFIX));
+        Path temporary = directory.resolve(snapshot.getFileName() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)))) {
+                CRC32 crc = new CRC32();
+                IOException[] failure = new IOException[1];
+                state.accept((type, payload) -> {
+                    crc.reset();
+                    crc.update(type);
+                    crc.update(payload);
+                    try {
+                        out.writeInt(1 + payload.length);
+                        out.writeInt((int) crc.getValue());
+                        out.writeByte(type);
+                        out.write(payload);
+                    } catch (IOException e) {
+                        failure[0] = e;
+                    }
+                });
+                if (failure[0] != null) {
+                    throw failure[0];
+                }
+                out.writeInt(0); // End of the data, like in a segment
+                out.flush();
+                channel.force(true);
+            }
+            // Replaces the previous snapshot only once the new one is complete on the disk
+            Files.move(temporary, snapshot, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+            long deleted = 0;
+            for (Path segment : list(SEGMENT_PREFIX, SEGMENT_SUFFIX)) {
+                if (fileNumber(segment, SEGMENT_PREFIX, SEGMENT_SUFFIX) < firstSegment) {
+                    deleted += Files.size(segment);
+                    Files.delete(segment);
+                }
+            }
+            for (Path older : list(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)) {
+                if (fileNumber(older, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX) < firstSegment) {
+                    deleted += Files.size(older);
+                    Files.delete(older);
+                }
+            }
+            LOGGER.log(Level.getLevel("STAR_DEBUG"), "Log {} checkpointed at segment {}, {} bytes deleted.",
+                    directory, firstSegment, deleted);
+            return deleted;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to checkpoint log " + directory, e);
+        }
+    }
+
+    /**
+     * @return true if records were appended to segments before the current one since the last checkpoint
+     */
+    public synchronized boolean hasClosedSegments() {
+        try {
+            return list(SEGMENT_PREFIX, SEGMENT_SUFFIX).size() > 1;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to list log " + directory, e);
+        }
+    }
+
+    /**
+     * @return number of fsyncs done so far
+     */
+    public long getSyncs() {
+        return syncs.get();
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (current != null && syncPolicy != SyncPolicy.NONE) {
+                force(current);
+                durablePosition = appendedPosition;
+            }
+            try {
+                if (currentChannel != null) {
+                    currentChannel.close();
+                }
+            } catch (IOException e) {
+                LOGGER.error("Failed to close log segment of {}: {}", directory, e.getMessage());
+            }
+            current = null;
+        }
+        synchronized (durableMonitor) {
+            durableMonitor.notifyAll();
+        }
+        if (flusher != null) {
+            LockSupport.unpark(flusher);
+        }
+    }
+
+    /**
+     * forces the records of a window at once and wakes up their writers
+     */
+    private void flushLoop() {
+        while (!closed) {
+            LockSupport.parkNanos(groupCommitNanos);
+            MappedByteBuffer segment;
+            long target;
+            synchronized (this) {
+                segment = current;
+                target = appendedPosition;
+            }
+            if (segment == null || target <= durablePosition) {
+                continue;
+            }
+            // Rolled segments were forced when they were closed, so forcing the current one covers the window
+            force(segment);
+            synchronized (durableMonitor) {
+                durablePosition = target;
+                durableMonitor.notifyAll();
+            }
+        }
+    }
+
+    private void startFlusher() {
+        if (syncPolicy != SyncPolicy.GROUP || flusher != null) {
+            return;
+        }
+        flusher = new Thread(this::flushLoop, "wal-group-commit");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * closes the current segment and continues in a new one
+     */
+    private void rollSegment(int minimumSize) {
+        if (syncPolicy != SyncPolicy.NONE) {
+            force(current);
+        }
+        try {
+            currentChannel.close();
+            openSegment(currentNumber + 1, Math.max(segmentSize, minimumSize));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to roll log segment in " + directory, e);
+        }
+        LOGGER.log(Level.getLevel("STAR_DEBUG"), "Log {} continues in segment {}.", directory, currentNumber);
+    }
+
+    private void openSegment(int number, int size) throws IOException {
+        Path segment = directory.resolve(fileName(SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+        currentChannel = FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        current = currentChannel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        currentNumber = number;
+        writeOffset = 0;
+    }
+
+    /**
+     * forces a segment to the disk. the group commit flusher calls it without the append lock, so appends go on
+     * during a group commit, with {@link SyncPolicy#ALWAYS} and on a segment roll it runs under the append lock
+     */
+    private void force(MappedByteBuffer segment) {
+        segment.force();
+        syncs.incrementAndGet();
+    }
+
+    /**
+     * reads the complete records of a segment or snapshot
+     * @return offset behind the last complete record
+     */
+    private static int readRecords(ByteBuffer buffer, Path file, BiConsumer<Byte, ByteBuffer> consumer) {
+        int offset = 0;
+        CRC32 crc = new CRC32();
+        while (offset + HEADER_SIZE <= buffer.capacity()) {
+            int length = buffer.getInt(offset);
+            if (length <= 0 || offset + 2 * Integer.BYTES + length > buffer.capacity()) {
+                break; // End of the data or a cut off record
+            }
+            int checksum = buffer.getInt(offset + Integer.BYTES);
+            ByteBuffer record = buffer.slice(offset + 2 * Integer.BYTES, length);
+            crc.reset();
+            crc.update(record.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                LOGGER.warn("Damaged record in log file {} at offset {}, rest of the file skipped.", file, offset);
+                break;
+            }
+            byte type = record.get();
+            consumer.accept(type, record.slice());
+            offset += 2 * Integer.BYTES + length;
+        }
+        return offset;
+    }
+
+    private List<Path> list(String prefix, String suffix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().startsWith(prefix)
+                            && file.getFileName().toString().endsWith(suffix))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private Path findLatest(String prefix, String suffix) throws IOException {
+        List<Path> files = list(prefix, suffix);
+        return files.isEmpty() ? null : files.get(files.size() - 1);
+    }
+
+    private static String fileName(String prefix, int number, String suffix) {
+        return String.format("%s%06d%s", prefix, number, suffix);
+    }
+
+    private static int fileNumber(Path file, String prefix, String suffix) {
+        String name = file.getFileName().toString();
+        return Integer.parseInt(name.substring(prefix.length(), name.length() - suffix.length()));
+    }
+
+    private static long position(int segmentNumber, int offset) {
+        return ((long) segmentNumber << 32) | offset;
+    }
+}
@@ -32,6 +32,12 @@ public class ComponentService {
     @Autowired
     private final SolRepository solRepository;
 
+    @Autowired
+    private SnapshotService snapshotService;
+
+    @Autowired
+    private MessageService messageService;
+
     public ComponentService(SolRepository solRepository) {
         this.solRepository = solRepository;
     }
@@ -69,6 +75,11 @@ public class ComponentService {
                     startSolMonitoring();
                 } else {
                     LOGGER.log(Level.getLevel("STAR_INFO"), "No SOL discovered. Promoting to SOL...");
+                    // A recent snapshot brings back the STAR-UUID, so registered components stay valid
+                    SnapshotService.Snapshot snapshot = snapshotService.loadSnapshot();
+                    if (snapshot != null) {
+                        snapshotService.restoreIdentity(snapshot);
+                    }
                     promoteToSol();
                     GalaxyService.discoverGalaxy();
                     solRepository.save(ApplicationState.getSolStarUuid(), Sol.builder()
@@ -78,6 +89,11 @@ public class ComponentService {
                             .comPort(ApplicationState.getPort())
                             .noCom(ApplicationState.getMaxComponents())
                             .status("200").build());
+                    if (snapshot != null) {
+                        snapshotService.restore(snapshot);
+                    }
+                    // Accepted messages whose delivery was cut off by the restart
+                    messageService.resumePendingDeliveries();
                     StarService.startHealthMonitoring();
 
                 }
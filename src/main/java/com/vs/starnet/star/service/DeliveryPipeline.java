@@ -0,0 +1,256 @@
+package com.vs.starnet.star.service;
+
+import com.vs.starnet.star.constants.DeliveryState;
+import com.vs.starnet.star.model.DeliveryStatus;
+import com.vs.starnet.star.model.Message;
+import com.vs.starnet.star.repository.MessageCodec;
+import com.vs.starnet.star.repository.WriteAheadLog;
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * internal pipeline that delivers accepted messages to the other stars
+ * outside of the request thread and keeps track of their delivery state.
+ * accepted deliveries are written to a journal in star.store.dir until they are finished, together with their message,
+ * so they survive a restart even if the message store does not. deliveries still pending after a restart
+ * are submitted again by {@link MessageService#resumePendingDeliveries}
+ */
+@Component
+public class DeliveryPipeline {
+    static final Logger LOGGER = LogManager.getRootLogger();
+    private static final int WORKER_THREADS = 2; // Parallel deliveries
+    private static final int QUEUE_CAPACITY = 10_000; // Deliveries waiting for a worker
+    private static final int MAX_TRACKED_MESSAGES = 10_000; // Delivery states kept for the status endpoint
+    private static final byte RECORD_QUEUED = 1; // Payload is the message encoded by MessageCodec
+    private static final byte RECORD_FINISHED = 2; // Payload is the msg-id
+    private static final int JOURNAL_SEGMENT_SIZE = 1024 * 1024; // Bytes per journal segment
+    private static final int CHECKPOINT_RECORDS = 10_000; // Journal records between two checkpoints
+
+    private final ThreadPoolExecutor workers = new ThreadPoolExecutor(
+            WORKER_THREADS, WORKER_THREADS, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+            runnable -> {
+                Thread thread = new Thread(runnable, "delivery-pipeline");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private final Map<String, DeliveryStatus> statuses = Collections.synchronizedMap(new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, DeliveryStatus> eldest) {
+            return size() > MAX_TRACKED_MESSAGES;
+        }
+    });
+
+    private final WriteAheadLog journal; // Null without a journal
+    private final Map<String, byte[]> pending = new ConcurrentHashMap<>(); // Encoded messages of the accepted and not finished deliveries
+    private final AtomicInteger recordsSinceCheckpoint = new AtomicInteger();
+
+    /**
+     * @param storeDir directory of the delivery journal
+     * @param port port of the star, every star on a host has its own journal
+     * @param journaled false to keep the pending deliveries in memory only
+     */
+    @Autowired
+    public DeliveryPipeline(@Value("${star.store.dir:data}") String storeDir,
+                            @Value("${server.port:8080}") int port,
+                            @Value("${star.delivery.journal:true}") boolean journaled) {
+        this(journaled ? Path.of(storeDir).resolve("deliveries-" + port) : null);
+    }
+
+    /**
+     * @param journalDirectory directory of the delivery journal, null for none
+     */
+    DeliveryPipeline(Path journalDirectory) {
+        if (journalDirectory == null) {
+            journal = null;
+            return;
+        }
+        journal = new WriteAheadLog(journalDirectory, JOURNAL_SEGMENT_SIZE, WriteAheadLog.SyncPolicy.GROUP, 5);
+        journal.replay((type, payload) -> {
+            if (type == RECORD_QUEUED) {
+                byte[] encoded = new byte[payload.remaining()];
+                payload.get(encoded);
+                pending.put(MessageCodec.decode(encoded).getMsgId(), encoded);
+            } else if (type == RECORD_FINISHED) {
+                pending.remove(StandardCharsets.UTF_8.decode(payload).toString());
+            }
+        });
+        if (!pending.isEmpty()) {
+            LOGGER.log(Level.getLevel("STAR_INFO"), "{} deliveries were pending before the restart.", pending.size());
+        }
+    }
+
+    /**
+     * queues the delivery of a message
+     * @param message message to be delivered
+     * @param delivery task forwarding the message to the other stars
+     * @return false if the delivery could not be journaled or the pipeline is full, the caller has to deliver by itself
+     */
+    public boolean submit(Message message, Runnable delivery) {
+        String msgId = message.getMsgId();
+        // Kept in memory before it is journaled, so a checkpoint in between keeps it.
+        // Deliveries resumed after a restart are in the journal already
+        byte[] encoded = MessageCodec.encode(message);
+        if (pending.putIfAbsent(msgId, encoded) == null && !journal(RECORD_QUEUED, encoded)) {
+            LOGGER.warn("Delivery journal not written, message with ID '{}' is delivered synchronously.", msgId);
+            pending.remove(msgId);
+            return false;
+        }
+        DeliveryStatus status = new DeliveryStatus(msgId, DeliveryState.QUEUED, Instant.now().getEpochSecond());
+        statuses.put(msgId, status);
+        try {
+            workers.execute(() -> deliver(status, delivery));
+            LOGGER.log(Level.getLevel("STAR_DEBUG"), "Message with ID '{}' queued for delivery.", msgId);
+            return true;
+        } catch (RejectedExecutionException e) {
+            LOGGER.warn("Delivery pipeline is full, message with ID '{}' is delivered synchronously.", msgId);
+            statuses.remove(msgId);
+            finish(msgId);
+            return false;
+        }
+    }
+
+    /**
+     * @return msg-ids of the accepted deliveries that are not finished, including the ones from before a restart
+     */
+    public Set<String> getPendingIds() {
+        return Set.copyOf(pending.keySet());
+    }
+
+    /**
+     * @return messages of the accepted deliveries that are not finished, as they were accepted
+     */
+    public List<Message> getPendingMessages() {
+        return pending.values().stream().map(MessageCodec::decode).toList();
+    }
+
+    /**
+     * drops a pending delivery that is not needed any more, e.g. because its message was deleted
+     * @param msgId message that was to be delivered
+     */
+    public void finish(String msgId) {
+        // Removed from memory before it is journaled, so a checkpoint in between does not bring it back
+        if (pending.remove(msgId) != null && !journal(RECORD_FINISHED, msgId.getBytes(StandardCharsets.UTF_8))) {
+            // Only delivered once more after a restart, the other stars drop it as known
+            LOGGER.warn("Delivery journal not written for finished message with ID '{}'.", msgId);
+        }
+    }
+
+    /**
+     * records the delivery result for a single star
+     * @param msgId delivered message
+     * @param starUuid star the message was forwarded to
+     * @param delivered true if the star accepted the message
+     */
+    public void recordResult(String msgId, String starUuid, boolean delivered) {
+        DeliveryStatus status = statuses.get(msgId);
+        if (status != null) {
+            status.getStars().put(starUuid, delivered ? "delivered" : "failed");
+            status.setChanged(Instant.now().getEpochSecond());
+        }
+    }
+
+    /**
+     * gets the delivery state of a message
+     * @param msgId identifier of msg
+     * @return delivery state or null if the message is not tracked
+     */
+    public DeliveryStatus getStatus(String msgId) {
+        return statuses.get(msgId);
+    }
+
+    /**
+     * runs a delivery task and derives the final state from the results per star
+     */
+    private void deliver(DeliveryStatus status, Runnable delivery) {
+        updateState(status, DeliveryState.DELIVERING);
+        try {
+            delivery.run();
+        } catch (Exception e) {
+            LOGGER.error("Error delivering message with ID '{}': {}", status.getMsgId(), e.getMessage());
+        }
+
+        finish(status.getMsgId());
+
+        long failed = status.getStars().values().stream().filter("failed"::equals).count();
+        if (failed == 0) {
+            updateState(status, DeliveryState.DELIVERED);
+        } else if (failed < status.getStars().size()) {
+            updateState(status, DeliveryState.PARTIALLY_DELIVERED);
+        } else {
+            updateState(status, DeliveryState.FAILED);
+        }
+        LOGGER.log(Level.getLevel("STAR_DEBUG"), "Delivery of message with ID '{}' finished: {}", status.getMsgId(), status.getState());
+    }
+
+    /**
+     * writes a record to the journal and waits until it is on the disk
+     * @return false if the record could not be written, true if it was or there is no journal
+     */
+    private boolean journal(byte type, byte[] payload) {
+        if (journal == null) {
+            return true;
+        }
+        try {
+            if (!journal.awaitDurable(journal.append(type, payload))) {
+                LOGGER.error("Delivery journal closed before the record was on the disk.");
+                return false;
+            }
+        } catch (IllegalStateException | UncheckedIOException e) {
+            LOGGER.error("Error writing the delivery journal: {}", e.getMessage());
+            return false;
+        }
+        if (recordsSinceCheckpoint.incrementAndGet() >= CHECKPOINT_RECORDS) {
+            recordsSinceCheckpoint.set(0);
+            checkpointJournal();
+        }
+        return true;
+    }
+
+    /**
+     * replaces the journal by the pending deliveries, so it does not grow with every delivered message
+     */
+    private synchronized void checkpointJournal() {
+        int firstSegment = journal.startCheckpoint();
+        journal.writeCheckpoint(firstSegment, writer -> pending.values().forEach(
+                encoded -> writer.accept(RECORD_QUEUED, encoded)));
+    }
+
+    private void updateState(DeliveryStatus status, DeliveryState state) {
+        status.setState(state);
+        status.setChanged(Instant.now().getEpochSecond());
+    }
+
+    /**
+     * stops the workers when the application shuts down
+     */
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdown();
+        if (journal != null) {
+            journal.close();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.vs.starnet.star.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * expires messages when their lifetime is over.
+ * the lifetime comes from the "ttl" of the message or from the configured ttl of its origin,
+ * expiries are kept in a {@link TimingWheel} which is moved forward once per second
+ */
+@Component
+public class ExpiryScheduler {
+    static final Logger LOGGER = LogManager.getRootLogger();
+
+    /**
+     * msg-id and the expiry it was scheduled for
+     */
+    private record Expiry(String msgId, long expires) {
+    }
+
+    private final TimingWheel<Expiry> wheel = new TimingWheel<>(Instant.now().getEpochSecond());
+    private final long defaultTtlSeconds;
+    private final Map<String, Long> originTtlSeconds = new HashMap<>();
+    private volatile BiConsumer<String, Long> handler;
+    private ScheduledExecutorService ticker;
+    private final AtomicLong scheduled = new AtomicLong();
+    private final AtomicLong fired = new AtomicLong();
+
+    /**
+     * @param defaultTtlSeconds lifetime of messages without a ttl of their own, 0 for none
+     * @param originTtls lifetimes per origin as "origin=seconds" separated by commas,
+     *                   the origin is a COM-UUID or EMAIL with or without the star suffix
+     */
+    @Autowired
+    public ExpiryScheduler(@Value("${star.ttl.default-s:0}") long defaultTtlSeconds,
+                           @Value("${star.ttl.origins:}") String originTtls) {
+        this.defaultTtlSeconds = defaultTtlSeconds;
+        for (String entry : originTtls.split(",")) {
+            int separator = entry.lastIndexOf('=');
+            if (separator > 0) {
+                originTtlSeconds.put(entry.substring(0, separator).trim(), Long.parseLong(entry.substring(separator + 1).trim()));
+            }
+        }
+    }
+
+    /**
+     * starts moving the wheel forward once per second
+     */
+    @PostConstruct
+    public void start() {
+        if (defaultTtlSeconds > 0 || !originTtlSeconds.isEmpty()) {
+            LOGGER.log(Level.getLevel("STAR_INFO"), "Message ttl: default {} s, per origin {}", defaultTtlSeconds, originTtlSeconds);
+        }
+        ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "message-expiry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(() -> fireDue(Instant.now().getEpochSecond()), 1, 1, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+        }
+    }
+
+    /**
+     * @param handler gets msg-id and expiry of every message that is due
+     */
+    public void setHandler(BiConsumer<String, Long> handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * @param origin origin of the message including the star suffix
+     * @return configured lifetime in seconds or null if messages of the origin do not expire
+     */
+    public Long getTtlFor(String origin) {
+        Long ttl = originTtlSeconds.get(origin);
+        if (ttl == null && origin != null && origin.contains(":")) {
+            ttl = originTtlSeconds.get(origin.substring(0, origin.indexOf(':')));
+        }
+        if (ttl == null && defaultTtlSeconds > 0) {
+            ttl = defaultTtlSeconds;
+        }
+        return ttl;
+    }
+
+    /**
+     * @param msgId message to expire
+     * @param expires time in seconds the message expires at
+     */
+    public void schedule(String msgId, long expires) {
+        wheel.schedule(expires, new Expiry(msgId, expires));
+        scheduled.incrementAndGet();
+    }
+
+    /**
+     * hands the messages due until now to the handler
+     * @param now current time in seconds
+     */
+    void fireDue(long now) {
+        BiConsumer<String, Long> current = handler;
+        for (Expiry expiry : wheel.advance(now)) {
+            fired.incrementAndGet();
+            if (current == null) {
+                continue;
+            }
+            try {
+                current.accept(expiry.msgId(), expiry.expires());
+            } catch (RuntimeException e) {
+                LOGGER.error("Expiry of message {} failed: {}", expiry.msgId(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @return counts of the scheduled, fired and pending expiries
+     */
+    public Map<String, Long> getStatistics() {
+        Map<String, Long> statistics = new LinkedHashMap<>();
+        statistics.put("scheduled", scheduled.get());
+        statistics.put("fired", fired.get());
+        statistics.put("pending", (long) wheel.size());
+        return statistics;
+    }
+}
@@ -0,0 +1,87 @@
+package com.vs.starnet.star.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vs.starnet.star.model.Message;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * json of a stored message as it is sent to other sols, encoded once per message.
+ * only "star", "to-star" and "delivered" differ between the target sols, they are appended to the shared bytes,
+ * so a payload per sol is a copy of the template instead of a new message that is serialized again
+ */
+final class ForwardingTemplate {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final byte[] STAR_FIELD = ",\"star\":\"".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TO_STAR_FIELD = "\",\"to-star\":\"".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] DELIVERED_FIELD = "\",\"delivered\":".getBytes(StandardCharsets.US_ASCII);
+
+    private final String msgId;
+    private final byte[] shared; // Json object of the shared fields without the closing brace
+
+    private ForwardingTemplate(String msgId, byte[] shared) {
+        this.msgId = msgId;
+        this.shared = shared;
+    }
+
+    /**
+     * @param message stored message
+     * @return template of the message
+     * @throws JsonProcessingException if the message cannot be encoded
+     */
+    static ForwardingTemplate of(Message message) throws JsonProcessingException {
+        Message forwarded = Message.builder()
+                .msgId(message.getMsgId())
+                .version(message.getVersion())
+                .status(message.getStatus())
+                .origin(message.getOrigin())
+                .sender(message.getSender())
+                .subject(message.getSubject())
+                .message(message.getMessage())
+                .created(message.getCreated())
+                .changed(message.getChanged())
+                .expires(message.getExpires())
+                .build();
+        byte[] json = MAPPER.writeValueAsBytes(forwarded);
+        // Always ends with the closing brace, "created" and "changed" are never left out
+        byte[] shared = new byte[json.length - 1];
+        System.arraycopy(json, 0, shared, 0, shared.length);
+        return new ForwardingTemplate(message.getMsgId(), shared);
+    }
+
+    String getMsgId() {
+        return msgId;
+    }
+
+    /**
+     * @param starUuid STAR-UUID of the target sol
+     * @param delivered time of delivery
+     * @return json of the message addressed to the target sol
+     */
+    byte[] forPeer(String starUuid, long delivered) {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(shared.length + 2 * starUuid.length() + 64);
+        writeForPeer(payload, starUuid, delivered);
+        return payload.toByteArray();
+    }
+
+    /**
+     * writes the json of the message addressed to the target sol, e.g. as element of a batch
+     * @param payload payload of the request
+     * @param starUuid STAR-UUID of the target sol
+     * @param delivered time of delivery
+     */
+    void writeForPeer(ByteArrayOutputStream payload, String starUuid, long delivered) {
+        byte[] star = JsonStringEncoder.getInstance().quoteAsUTF8(starUuid);
+        payload.writeBytes(shared);
+        payload.writeBytes(STAR_FIELD);
+        payload.writeBytes(star);
+        payload.writeBytes(TO_STAR_FIELD);
+        payload.writeBytes(star);
+        payload.writeBytes(DELIVERED_FIELD);
+        payload.writeBytes(Long.toString(delivered).getBytes(StandardCharsets.US_ASCII));
+        payload.write('}');
+    }
+}
@@ -126,13 +126,20 @@ public class GalaxyService {
 
     /**
      * gets star details of all stars if done by sol
-     * @return either conflict content or component details in map of all components
+     * @param ifNoneMatch ETag of the list the caller already has, may be null
+     * @return either conflict content, not modified or component details in map of all components
      */
-    public ResponseEntity<Map<String, Object>> getStarDetails() {
+    public ResponseEntity<Map<String, Object>> getStarDetails(String ifNoneMatch) {
         if (ApplicationState.getCurrentRole() != NodeRole.SOL) {
             LOGGER.error("Only SOL can get star details.");
             return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
         }
+        // Nothing changed since the last poll of the caller
+        String eTag = HttpHandler.buildETag(solRepository.getVersion());
+        if (HttpHandler.matchesETag(ifNoneMatch, eTag)) {
+            LOGGER.log(Level.getLevel("STAR_DEBUG"), "Star list not modified: {}", eTag);
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+        }
         // Get all star information
         Map<String, Sol> allStarsMap = solRepository.findAll();
 
@@ -158,7 +165,7 @@ public class GalaxyService {
 
         LOGGER.log(Level.getLevel("STAR_DEBUG"),"Star details: {}", responseMap);
 
-        return ResponseEntity.ok(responseMap);
+        return ResponseEntity.ok().eTag(eTag).body(responseMap);
     }
 
     /**
@@ -0,0 +1,187 @@
+package com.vs.starnet.star.service;
+
+import com.vs.starnet.star.constants.NodeRole;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * keeps a statistics table per peer star (link) of the sol.
+ * updated whenever a message is forwarded to or received from another star
+ * -> slow or failing links between stars can be spotted via the galaxy port
+ */
+@Service
+public class LinkStatsService {
+    static final Logger LOGGER = LogManager.getRootLogger();
+    // Upper bounds of the latency histogram buckets in milliseconds, the last bucket is open
+    private static final long[] BUCKET_BOUNDS_MILLIS = {10, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000, 60000};
+
+    private final ConcurrentHashMap<String, LinkStats> links = new ConcurrentHashMap<>();
+
+    /**
+     * records the result of forwarding a message to a peer star
+     * @param peerStarUuid star the message was forwarded to
+     * @param success true if the peer accepted the message
+     * @param roundTripMillis time the forward request took
+     */
+    public void recordForward(String peerStarUuid, boolean success, long roundTripMillis) {
+        if (peerStarUuid == null) {
+            return;
+        }
+        LinkStats stats = links.computeIfAbsent(peerStarUuid, LinkStats::new);
+        stats.forwarded.increment();
+        stats.forwardLatency.record(roundTripMillis);
+        if (!success) {
+            stats.forwardFailures.increment();
+        }
+        stats.lastActivity = Instant.now();
+    }
+
+    /**
+     * records a message received from a peer star.
+     * timestamps of the protocol are epoch seconds, so the latencies have a resolution of one second
+     * @param peerStarUuid star the message came from (from-star)
+     * @param created creation timestamp at the origin star
+     * @param delivered timestamp the peer handed the message over, may be null
+     * @param received timestamp the message was received here
+     */
+    public void recordReceive(String peerStarUuid, long created, Long delivered, long received) {
+        if (peerStarUuid == null) {
+            return;
+        }
+        LinkStats stats = links.computeIfAbsent(peerStarUuid, LinkStats::new);
+        stats.received.increment();
+        stats.propagationLatency.record(Math.max(0, received - created) * 1000);
+        if (delivered != null) {
+            stats.deliveryLatency.record(Math.max(0, received - delivered) * 1000);
+        }
+        stats.lastActivity = Instant.now();
+    }
+
+    /**
+     * gets the statistics of all links if done by sol
+     * @return either unavailable status or the link statistics table
+     */
+    public ResponseEntity<Map<String, Object>> getLinkStatistics() {
+        if (ApplicationState.getCurrentRole() != NodeRole.SOL) {
+            LOGGER.error("Only SOL can get link statistics.");
+            return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
+        }
+
+        List<Map<String, Object>> linkList = new ArrayList<>();
+        for (LinkStats stats : links.values()) {
+            linkList.add(stats.toMap());
+        }
+
+        Map<String, Object> responseMap = new LinkedHashMap<>();
+        responseMap.put("star", ApplicationState.getStarUuid());
+        responseMap.put("bucket-bounds-ms", BUCKET_BOUNDS_MILLIS);
+        responseMap.put("totalResults", linkList.size());
+        responseMap.put("links", linkList);
+        return ResponseEntity.ok(responseMap);
+    }
+
+    /**
+     * statistics of a single link to a peer star
+     */
+    private static class LinkStats {
+        private final String peerStarUuid;
+        private final Instant firstActivity = Instant.now();
+        private volatile Instant lastActivity = firstActivity;
+        private final LongAdder forwarded = new LongAdder();
+        private final LongAdder forwardFailures = new LongAdder();
+        private final LongAdder received = new LongAdder();
+        private final LatencyHistogram forwardLatency = new LatencyHistogram();
+        private final LatencyHistogram propagationLatency = new LatencyHistogram();
+        private final LatencyHistogram deliveryLatency = new LatencyHistogram();
+
+        private LinkStats(String peerStarUuid) {
+            this.peerStarUuid = peerStarUuid;
+        }
+
+        private Map<String, Object> toMap() {
+            long forwards = forwarded.sum();
+            long failures = forwardFailures.sum();
+            long receives = received.sum();
+            double seconds = Math.max(1, Instant.now().getEpochSecond() - firstActivity.getEpochSecond());
+
+            Map<String, Object> linkDetails = new LinkedHashMap<>();
+            linkDetails.put("star", peerStarUuid);
+            linkDetails.put("forwarded", forwards);
+            linkDetails.put("forward-failures", failures);
+            linkDetails.put("failure-rate", forwards == 0 ? 0.0 : (double) failures / forwards);
+            linkDetails.put("received", receives);
+            linkDetails.put("forward-throughput", forwards / seconds); // messages per second
+            linkDetails.put("receive-throughput", receives / seconds); // messages per second
+            linkDetails.put("last-activity", lastActivity.getEpochSecond());
+            linkDetails.put("forward-latency", forwardLatency.toMap());
+            linkDetails.put("propagation-latency", propagationLatency.toMap());
+            linkDetails.put("delivery-latency", deliveryLatency.toMap());
+            return linkDetails;
+        }
+    }
+
+    /**
+     * lock-free latency histogram with fixed bucket bounds
+     */
+    private static class LatencyHistogram {
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_BOUNDS_MILLIS.length + 1);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+
+        private void record(long millis) {
+            int bucket = 0;
+            while (bucket < BUCKET_BOUNDS_MILLIS.length && millis > BUCKET_BOUNDS_MILLIS[bucket]) {
+                bucket++;
+            }
+            buckets.incrementAndGet(bucket);
+            count.increment();
+            sum.add(millis);
+        }
+
+        private Map<String, Object> toMap() {
+            long samples = count.sum();
+            long[] counts = new long[buckets.length()];
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = buckets.get(i);
+            }
+
+            Map<String, Object> histogram = new LinkedHashMap<>();
+            histogram.put("count", samples);
+            histogram.put("mean-ms", samples == 0 ? 0.0 : (double) sum.sum() / samples);
+            histogram.put("p50-ms", percentile(counts, samples, 0.50));
+            histogram.put("p99-ms", percentile(counts, samples, 0.99));
+            histogram.put("buckets", counts);
+            return histogram;
+        }
+
+        /**
+         * estimates a percentile as the upper bound of the bucket it falls into (-1 for the open bucket)
+         */
+        private static long percentile(long[] counts, long samples, double quantile) {
+            if (samples == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(samples * quantile);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return i < BUCKET_BOUNDS_MILLIS.length ? BUCKET_BOUNDS_MILLIS[i] : -1;
+                }
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,411 @@
+package com.vs.starnet.star.service;
+
+import com.vs.starnet.star.network.HttpHandler;
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * change feed of the message store as server-sent events.
+ * the sol publishes message-created and message-deleted events to all subscribers,
+ * a component relays the feed of its sol over a single upstream subscription
+ * -> clients learn about new messages without polling.
+ * the sol sends a heartbeat every 15 s, an upstream subscription without any line for longer is reconnected
+ */
+@Component
+public class MessageChangeFeed {
+    static final Logger LOGGER = LogManager.getRootLogger();
+    public static final String MESSAGE_CREATED = "message-created";
+    public static final String MESSAGE_DELETED = "message-deleted";
+    public static final String RESYNC = "resync"; // Sent instead of a replay that is too long, the client fetches the list again
+    private static final long HEARTBEAT_MILLIS = 15_000; // Keeps idle connections open and detects gone clients
+    private static final long RECONNECT_MILLIS = 2000; // Wait before the upstream subscription is opened again
+
+    private final List<SseEmitter> subscribers = new CopyOnWriteArrayList<>();
+    private final Set<SseEmitter> joining = ConcurrentHashMap.newKeySet(); // Resuming clients, replay not done yet
+    // Sends the events outside of the request threads, so a slow client does not slow down the store
+    private final ScheduledExecutorService dispatcher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "message-change-feed");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final long upstreamTimeoutMillis;
+    private Thread upstream; // Relay of the sol feed, only used on components
+    private volatile String lastUpstreamEventId; // Resume position after the upstream subscription broke
+    private volatile Stream<String> upstreamLines; // Open upstream subscription, closed by the watchdog
+    private volatile long lastUpstreamRead; // Time of the last line from the sol, heartbeats included
+    private volatile boolean reconnecting; // Set when the upstream subscription is closed to open it again
+    private volatile Comparator<String> eventOrder = (first, second) -> 0; // Order of the event ids
+
+    public MessageChangeFeed() {
+        this(HEARTBEAT_MILLIS, 3 * HEARTBEAT_MILLIS);
+    }
+
+    /**
+     * @param heartbeatMillis interval of the heartbeats and of the upstream checks
+     * @param upstreamTimeoutMillis time without a line from the sol after which the upstream subscription is reconnected
+     */
+    MessageChangeFeed(long heartbeatMillis, long upstreamTimeoutMillis) {
+        this.upstreamTimeoutMillis = upstreamTimeoutMillis;
+        dispatcher.scheduleAtFixedRate(() -> {
+            heartbeat();
+            watchUpstream();
+        }, heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param eventOrder order of the event ids, used to resume the upstream subscription from the oldest position
+     */
+    public void setEventOrder(Comparator<String> eventOrder) {
+        this.eventOrder = eventOrder;
+    }
+
+    /**
+     * registers a new client of the feed
+     * @return emitter the events are sent to
+     */
+    public SseEmitter subscribe() {
+        SseEmitter emitter = new SseEmitter(0L); // No timeout, the subscription lasts until the client goes away
+        emitter.onCompletion(() -> subscribers.remove(emitter));
+        emitter.onError(e -> subscribers.remove(emitter));
+        subscribers.add(emitter);
+        LOGGER.log(Level.getLevel("STAR_DEBUG"), "New change feed subscriber, {} subscribers", subscribers.size());
+        return emitter;
+    }
+
+    /**
+     * registers a new client of the feed on a component, the events come from the feed of the sol.
+     * a client resuming with its last event id gets the missed events from the sol,
+     * the other clients may receive those events twice
+     * @param solFeedUrl resolves the url of the change feed of the current sol, asked again on every reconnect
+     * @param lastEventId id of the last event the client received or null
+     * @return emitter the events are sent to
+     */
+    public SseEmitter subscribeRelayed(Supplier<String> solFeedUrl, String lastEventId) {
+        SseEmitter emitter = subscribe();
+        startUpstream(solFeedUrl, lastEventId);
+        return emitter;
+    }
+
+    /**
+     * registers a client that resumes after missed events. once the response has started, the dispatcher
+     * replays the missed events to the client and only then adds it to the subscribers,
+     * so live events published meanwhile follow the replayed ones
+     * @param replay sends the missed events to the given sink, runs on the dispatcher
+     * @return emitter the events are sent to
+     */
+    public SseEmitter subscribe(Consumer<ReplaySink> replay) {
+        JoiningEmitter emitter = new JoiningEmitter();
+        emitter.onCompletion(() -> leave(emitter));
+        emitter.onError(e -> leave(emitter));
+        joining.add(emitter);
+        emitter.onResponseStart(() -> dispatcher.execute(() -> join(emitter, replay)));
+        return emitter;
+    }
+
+    /**
+     * receives the events replayed to a single client
+     */
+    @FunctionalInterface
+    public interface ReplaySink {
+        /**
+         * @param eventType message-created, message-deleted or resync
+         * @param eventId position in the change feed or null
+         * @param data event payload
+         * @return false if the client went away and the replay can stop
+         */
+        boolean send(String eventType, String eventId, Map<String, Object> data);
+    }
+
+    /**
+     * replays the missed events to a resuming client, then adds it to the subscribers
+     * unless it went away meanwhile
+     */
+    private void join(SseEmitter emitter, Consumer<ReplaySink> replay) {
+        try {
+            replay.accept((eventType, eventId, data) -> {
+                SseEmitter.SseEventBuilder event = SseEmitter.event().name(eventType).data(data, MediaType.APPLICATION_JSON);
+                send(emitter, (eventId == null ? event : event.id(eventId)).build());
+                return joining.contains(emitter);
+            });
+        } catch (RuntimeException e) {
+            LOGGER.warn("Replay of missed changes failed: {}", e.getMessage());
+            joining.remove(emitter);
+            emitter.completeWithError(e);
+            return;
+        }
+        if (joining.remove(emitter)) {
+            subscribers.add(emitter);
+            LOGGER.log(Level.getLevel("STAR_DEBUG"), "Resumed change feed subscriber, {} subscribers", subscribers.size());
+        }
+    }
+
+    private void leave(SseEmitter emitter) {
+        joining.remove(emitter);
+        subscribers.remove(emitter);
+    }
+
+    /**
+     * sends an event to all clients
+     * @param eventType message-created or message-deleted
+     * @param eventId position in the change feed
+     * @param data event payload
+     */
+    public void publish(String eventType, String eventId, Map<String, Object> data) {
+        if (subscribers.isEmpty() && joining.isEmpty()) {
+            return; // A joining client needs the event after its replay, which may have missed it
+        }
+        dispatcher.execute(() -> broadcast(() ->
+                SseEmitter.event().name(eventType).id(eventId).data(data, MediaType.APPLICATION_JSON).build()));
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    private void heartbeat() {
+        broadcast(() -> SseEmitter.event().comment("heartbeat").build());
+    }
+
+    /**
+     * sends an event to every client, the event is built per client because a built event can not be reused
+     */
+    private void broadcast(Supplier<Set<ResponseBodyEmitter.DataWithMediaType>> event) {
+        for (SseEmitter emitter : subscribers) {
+            send(emitter, event.get());
+        }
+    }
+
+    private void send(SseEmitter emitter, Set<ResponseBodyEmitter.DataWithMediaType> event) {
+        try {
+            emitter.send(event);
+        } catch (IOException | IllegalStateException e) {
+            // The client went away
+            LOGGER.log(Level.getLevel("STAR_DEBUG"), "Removing change feed subscriber: {}", e.getMessage());
+            leave(emitter);
+            emitter.completeWithError(e);
+        }
+    }
+
+    /**
+     * emitter of a resuming client, starts the replay once spring writes the response headers,
+     * so the replayed events are not buffered in the emitter before the response exists
+     */
+    static final class JoiningEmitter extends SseEmitter {
+        private volatile Runnable responseStart = () -> { };
+
+        JoiningEmitter() {
+            super(0L); // No timeout, the subscription lasts until the client goes away
+        }
+
+        void onResponseStart(Runnable responseStart) {
+            this.responseStart = responseStart;
+        }
+
+        @Override
+        protected void extendResponse(ServerHttpResponse outputMessage) {
+            super.extendResponse(outputMessage);
+            responseStart.run();
+        }
+    }
+
+    /**
+     * opens the upstream subscription to the sol unless it is running already,
+     * a running one is opened again if the client has to resume from an older position
+     */
+    private synchronized void startUpstream(Supplier<String> solFeedUrl, String lastEventId) {
+        if (upstream == null) {
+            lastUpstreamEventId = lastEventId;
+            upstream = new Thread(() -> relay(solFeedUrl), "message-change-relay");
+            upstream.setDaemon(true);
+            upstream.start();
+            return;
+        }
+        String current = lastUpstreamEventId;
+        if (lastEventId != null && (current == null || eventOrder.compare(lastEventId, current) < 0)) {
+            lastUpstreamEventId = lastEventId;
+            reconnectUpstream();
+        }
+    }
+
+    /**
+     * relays the feed of the sol as long as there are local subscribers, reconnects after errors
+     */
+    private void relay(Supplier<String> solFeedUrl) {
+        while (!stopUpstreamIfIdle()) {
+            String lastEventId = lastUpstreamEventId;
+            Map<String, String> headers = lastEventId == null ? Map.of() : Map.of("Last-Event-ID", lastEventId);
+            try {
+                // Resolved on every attempt, another star may have become sol meanwhile
+                String url = solFeedUrl.get();
+                LOGGER.log(Level.getLevel("STAR_INFO"), "Subscribing to change feed of SOL: {}", url);
+                HttpResponse<Stream<String>> response = HttpHandler.sendGetRequestForLines(url, headers);
+                try (Stream<String> lines = response.body()) {
+                    if (response.statusCode() == 200) {
+                        lastUpstreamRead = System.currentTimeMillis();
+                        upstreamLines = lines;
+                        relayEvents(lines.iterator());
+                    } else {
+                        LOGGER.warn("SOL refused the change feed subscription: Status {}", response.statusCode());
+                    }
+                } finally {
+                    upstreamLines = null;
+                }
+            } catch (Exception e) {
+                LOGGER.warn("Change feed subscription to SOL broke: {}", e.getMessage());
+            }
+            if (acknowledgeReconnect()) {
+                // Closed by the watchdog or for a resuming client, opened again right away
+                continue;
+            }
+            if (subscribers.isEmpty()) {
+                continue; // Closed on purpose, no need to wait
+            }
+            try {
+                Thread.sleep(RECONNECT_MILLIS);
+            } catch (InterruptedException e) {
+                if (acknowledgeReconnect()) {
+                    continue;
+                }
+                Thread.currentThread().interrupt();
+                synchronized (this) {
+                    upstream = null;
+                }
+                return;
+            }
+        }
+        LOGGER.log(Level.getLevel("STAR_INFO"), "Change feed of SOL closed, no subscribers left.");
+    }
+
+    /**
+     * reconnects the upstream subscription if the sol sent nothing, not even a heartbeat, for too long
+     */
+    private void watchUpstream() {
+        if (upstreamLines != null && System.currentTimeMillis() - lastUpstreamRead > upstreamTimeoutMillis) {
+            LOGGER.warn("No heartbeat from SOL for {} ms, change feed subscription is opened again.", upstreamTimeoutMillis);
+            reconnectUpstream();
+        }
+    }
+
+    /**
+     * closes the open upstream subscription, the relay opens it again from the last event id
+     */
+    private synchronized void reconnectUpstream() {
+        Stream<String> lines = upstreamLines;
+        if (upstream == null || lines == null) {
+            return; // Not connected, the next attempt uses the current position anyway
+        }
+        reconnecting = true;
+        lines.close();
+        // A read blocked on a dead connection only returns when it is interrupted
+        upstream.interrupt();
+    }
+
+    /**
+     * clears a reconnect request together with the interrupt that came with it, under the lock of
+     * {@link #reconnectUpstream}, so the interrupt cannot land on the next attempt instead
+     * @return true if the upstream subscription was closed to be opened again
+     */
+    private synchronized boolean acknowledgeReconnect() {
+        if (!reconnecting) {
+            return false;
+        }
+        reconnecting = false;
+        Thread.interrupted();
+        return true;
+    }
+
+    /**
+     * ends the relay if nobody listens anymore, checked under the same lock as the start
+     * so a client subscribing at the same time is not left without upstream
+     */
+    private synchronized boolean stopUpstreamIfIdle() {
+        if (subscribers.isEmpty()) {
+            upstream = null;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * parses the event stream of the sol and passes every event on to the local subscribers
+     */
+    private void relayEvents(Iterator<String> lines) {
+        String eventType = null;
+        String eventId = null;
+        StringBuilder data = new StringBuilder();
+        while (lines.hasNext()) {
+            String line = lines.next();
+            lastUpstreamRead = System.currentTimeMillis();
+            if (line.isEmpty()) {
+                // End of an event, heartbeats of the sol end up here too
+                if (!data.isEmpty()) {
+                    String type = eventType;
+                    String id = eventId;
+                    String payload = data.toString();
+                    if (id != null) {
+                        lastUpstreamEventId = id;
+                    }
+                    dispatcher.execute(() -> broadcast(() -> SseEmitter.event().name(type).id(id).data(payload).build()));
+                }
+                if (subscribers.isEmpty()) {
+                    return; // Nobody listens anymore, close the upstream subscription
+                }
+                eventType = null;
+                eventId = null;
+                data.setLength(0);
+                continue;
+            }
+            if (line.startsWith(":")) {
+                continue; // Comment
+            }
+
+            int colon = line.indexOf(':');
+            String field = colon < 0 ? line : line.substring(0, colon);
+            String value = colon < 0 ? "" : line.substring(colon + 1);
+            if (value.startsWith(" ")) {
+                value = value.substring(1);
+            }
+            switch (field) {
+                case "event" -> eventType = value;
+                case "id" -> eventId = value;
+                case "data" -> data.append(data.isEmpty() ? "" : "\n").append(value);
+                default -> { } // Unknown fields are ignored as required by the event stream format
+            }
+        }
+    }
+
+    /**
+     * closes all subscriptions when the application shuts down
+     */
+    @PreDestroy
+    public void shutdown() {
+        dispatcher.shutdownNow();
+        subscribers.forEach(SseEmitter::complete);
+        subscribers.clear();
+        joining.forEach(SseEmitter::complete);
+        joining.clear();
+    }
+}
@@ -0,0 +1,157 @@
+package com.vs.starnet.star.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.vs.starnet.star.model.Message;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * caches the json of a message as it appears in responses, per view ("id", "header" and "full").
+ * a fragment is rendered once and then copied into every response as raw utf-8 bytes
+ * until the message changes, which shows in its changed time or status
+ */
+@Component
+public class MessageFragmentCache {
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final List<String> VIEWS = List.of("id", "header", "full");
+
+    /**
+     * rendered views of one version of a message, rendered on first use
+     */
+    private record Fragments(long changed, String status, AtomicReferenceArray<SerializableString> views) {
+        boolean isOf(Message message) {
+            return changed == message.getChanged() && status.equals(message.getStatus());
+        }
+    }
+
+    private final ConcurrentHashMap<String, Fragments> fragments = new ConcurrentHashMap<>();
+    private final int capacity;
+
+    // Counters for the hit rate
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param capacity maximum number of cached messages, 0 turns the cache off
+     */
+    @Autowired
+    public MessageFragmentCache(@Value("${star.cache.fragments:10000}") int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * @param message stored message, with its body for the full view
+     * @param view "id", "header" or "full"
+     * @return json object of the message in the view
+     */
+    public SerializableString get(Message message, String view) {
+        int viewIndex = VIEWS.indexOf(view);
+        if (capacity <= 0 || viewIndex < 0 || message.getStatus() == null) {
+            misses.increment();
+            return render(message, view);
+        }
+        Fragments cached = fragments.get(message.getMsgId());
+        if (cached == null || !cached.isOf(message)) {
+            // First use or the message changed since it was rendered
+            cached = new Fragments(message.getChanged(), message.getStatus(), new AtomicReferenceArray<>(VIEWS.size()));
+            fragments.put(message.getMsgId(), cached);
+            evictOverCapacity();
+        }
+        SerializableString fragment = cached.views().get(viewIndex);
+        if (fragment != null) {
+            hits.increment();
+            return fragment;
+        }
+        misses.increment();
+        fragment = render(message, view);
+        cached.views().set(viewIndex, fragment);
+        return fragment;
+    }
+
+    /**
+     * @param msgId message that changed or was removed
+     */
+    public void invalidate(String msgId) {
+        fragments.remove(msgId);
+    }
+
+    /**
+     * @return number of cached messages and the hits and misses since the start
+     */
+    public Map<String, Long> getStatistics() {
+        Map<String, Long> statistics = new LinkedHashMap<>();
+        statistics.put("messages", (long) fragments.size());
+        statistics.put("hits", hits.sum());
+        statistics.put("misses", misses.sum());
+        return statistics;
+    }
+
+    /**
+     * writes a message as list entry of a response
+     * @param generator generator of the response
+     * @param message message to write
+     * @param view "id", "header" or "full" (header and body)
+     * @throws IOException if the client went away
+     */
+    public static void writeEntry(JsonGenerator generator, Message message, String view) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("msg-id", message.getMsgId());
+        generator.writeStringField("status", message.getStatus());
+
+        if ("header".equals(view) || "full".equals(view)) {
+            if (!"deleted".equalsIgnoreCase(message.getStatus())) {
+                generator.writeStringField("version", message.getVersion());
+                generator.writeStringField("origin", message.getOrigin());
+                generator.writeNumberField("created", message.getCreated());
+                generator.writeNumberField("changed", message.getChanged());
+                generator.writeStringField("subject", message.getSubject());
+                if (message.getExpires() != null) {
+                    generator.writeNumberField("expires", message.getExpires());
+                }
+                if ("full".equals(view)) {
+                    generator.writeStringField("message", message.getMessage());
+                }
+            }
+        }
+        generator.writeEndObject();
+    }
+
+    private static SerializableString render(Message message, String view) {
+        StringWriter json = new StringWriter();
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(json)) {
+            writeEntry(generator, message, view);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        SerializedString fragment = new SerializedString(json.toString());
+        // Encoded once here, responses copy the cached bytes
+        fragment.asUnquotedUTF8();
+        return fragment;
+    }
+
+    /**
+     * drops arbitrary messages once the cache is over its capacity, they are rendered again on their next use
+     */
+    private void evictOverCapacity() {
+        Iterator<String> msgIds = fragments.keySet().iterator();
+        while (fragments.size() > capacity && msgIds.hasNext()) {
+            msgIds.next();
+            msgIds.remove();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.vs.starnet.star.service;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * hands out the numeric part of msg-ids ("<n>@<origin>:<star>") without locks and without repeating after a restart.
+ * n is the node epoch (seconds between a fixed base and the start of the star) in the upper 32 bits
+ * and a sequence in the lower 32 bits. the sequence is split over striped counters picked by thread,
+ * the lowest bits of a number name its stripe, so threads on different cores never share a counter
+ */
+@Component
+public class MessageIdGenerator {
+    static final Logger LOGGER = LogManager.getRootLogger();
+    private static final long EPOCH_BASE_SECONDS = Instant.parse("2024-01-01T00:00:00Z").getEpochSecond();
+    private static final int STRIPE_BITS = 4;
+    private static final int STRIPES = 1 << STRIPE_BITS; // Step of every counter, keeps the stripe bits apart
+    private static final int PADDING = 8; // Longs per counter, one cache line, so the counters do not share one
+
+    private final AtomicLongArray counters = new AtomicLongArray(STRIPES * PADDING); // Next number of every stripe
+
+    public MessageIdGenerator() {
+        this(System.currentTimeMillis());
+    }
+
+    /**
+     * @param startMillis start time of the star, the epoch is taken from it
+     */
+    MessageIdGenerator(long startMillis) {
+        startEpoch(startMillis / 1000 - EPOCH_BASE_SECONDS);
+    }
+
+    /**
+     * @return number for a new msg-id
+     */
+    public long nextNonce() {
+        return counters.getAndAdd(stripe(), STRIPES);
+    }
+
+    /**
+     * reserves numbers for several msg-ids with a single atomic step
+     * @param count number of msg-ids
+     * @return distinct numbers for the msg-ids
+     */
+    public long[] nextNonces(int count) {
+        long first = counters.getAndAdd(stripe(), (long) count * STRIPES);
+        long[] nonces = new long[count];
+        for (int i = 0; i < count; i++) {
+            nonces[i] = first + (long) i * STRIPES;
+        }
+        return nonces;
+    }
+
+    /**
+     * moves to a later epoch if numbers of it were handed out before, e.g. by a run restored from the store
+     * @param highestNonce highest number seen in a stored msg-id
+     */
+    public void advancePast(long highestNonce) {
+        long epoch = (highestNonce >>> 32) + 1;
+        if (epoch > getEpoch()) {
+            startEpoch(epoch);
+            LOGGER.log(Level.getLevel("STAR_INFO"), "Msg-id epoch moved to {} behind the stored messages.", epoch);
+        }
+    }
+
+    /**
+     * @return epoch numbers are handed out in
+     */
+    public long getEpoch() {
+        long highest = 0;
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            highest = Math.max(highest, counters.get(stripe * PADDING) >>> 32);
+        }
+        return highest;
+    }
+
+    /**
+     * lets every counter continue at the start of an epoch, counters already past it keep going
+     */
+    private void startEpoch(long epoch) {
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            long start = (epoch << 32) | stripe;
+            counters.accumulateAndGet(stripe * PADDING, start, Math::max);
+        }
+    }
+
+    private static int stripe() {
+        return (int) (Thread.currentThread().getId() & (STRIPES - 1)) * PADDING;
+    }
+}
@@ -1,27 +1,45 @@
 package com.vs.starnet.star.service;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.StreamWriteFeature;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vs.starnet.star.constants.DeliveryState;
 import com.vs.starnet.star.constants.NodeRole;
+import com.vs.starnet.star.model.DeliveryStatus;
 import com.vs.starnet.star.model.Message;
 import com.vs.starnet.star.model.Sol;
 import com.vs.starnet.star.network.HttpHandler;
+import com.vs.starnet.star.repository.MessageIndex;
+import com.vs.starnet.star.repository.MessageRepository;
 import com.vs.starnet.star.repository.SolRepository;
-import org.apache.commons.validator.routines.EmailValidator;
+import jakarta.annotation.PostConstruct;
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLEncoder;
 import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Collectors;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 /**
  *  handles message-related operations in the system including crud methods
@@ -30,12 +48,102 @@ import java.util.stream.Collectors;
 public class MessageService {
 
     private static final Logger LOGGER = LogManager.getRootLogger();
-    private static final ConcurrentHashMap<String, Message> messages = new ConcurrentHashMap<>();
-    private static final AtomicInteger nonce = new AtomicInteger(1); // Counter for unique message IDs
+    private static final String PREFER_ASYNC = "respond-async"; // Prefer header value for accept-then-forward
+    private static final int MAX_BATCH_SIZE = 1000; // Messages per batch request
+    private static final int DEFAULT_SEARCH_LIMIT = 20; // Hits of a search without limit
+    static final int MAX_REPLAYED_CHANGES = 1000; // Missed changes sent to a resuming client, more ask it to resync
+    private static final JsonFactory JSON_FACTORY = JsonFactory.builder()
+            .disable(StreamWriteFeature.AUTO_CLOSE_TARGET) // The servlet container owns the output stream
+            .build();
 
     @Autowired
     private SolRepository solRepository;
 
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private SeenMessageFilter seenMessageFilter;
+
+    @Autowired
+    private LinkStatsService linkStatsService;
+
+    @Autowired
+    private DeliveryPipeline deliveryPipeline;
+
+    @Autowired
+    private MessageChangeFeed changeFeed;
+
+    @Autowired
+    private MessageIdGenerator msgIdGenerator;
+
+    @Autowired
+    private TombstoneCompactor tombstoneCompactor;
+
+    @Autowired
+    private ExpiryScheduler expiryScheduler;
+
+    @Autowired
+    private SubjectIndex subjectIndex;
+
+    @Autowired
+    private MessageFragmentCache fragmentCache;
+
+    @Autowired
+    private OriginClassifier originClassifier;
+
+    /**
+     * picks up the messages kept by a persistent store: continues the msg-ids behind them,
+     * schedules their expiry and indexes their subjects
+     */
+    @PostConstruct
+    public void restoreStoredState() {
+        restoreNonce();
+        expiryScheduler.setHandler(this::expireMessage);
+        changeFeed.setEventOrder(Comparator.comparing(MessageService::decodeCursor,
+                Comparator.nullsFirst(Comparator.naturalOrder())));
+        messageRepository.findAll().values().forEach(this::restoreMessage);
+    }
+
+    /**
+     * submits the deliveries that were accepted but not finished before a restart again,
+     * once the sol knows the other stars. a message lost with a store that is not durable
+     * is stored again as it was accepted, deleted messages are dropped from the pending deliveries
+     */
+    public void resumePendingDeliveries() {
+        for (Message accepted : deliveryPipeline.getPendingMessages()) {
+            String msgId = accepted.getMsgId();
+            if (!messageRepository.existsById(msgId) && !tombstoneCompactor.wasCompacted(msgId)
+                    && messageRepository.saveIfAbsent(msgId, accepted)) {
+                LOGGER.log(Level.getLevel("STAR_INFO"), "Message with ID '{}' restored from the delivery journal.", msgId);
+                seenMessageFilter.markSeen(msgId);
+                restoreMessage(accepted);
+                publishChange(MessageChangeFeed.MESSAGE_CREATED, accepted);
+            }
+            Message message = messageRepository.findById(msgId);
+            if (message == null || "deleted".equals(message.getStatus())) {
+                deliveryPipeline.finish(msgId);
+            } else if (!deliveryPipeline.submit(message, () -> forwardToStars(message))) {
+                forwardToStars(message);
+            }
+        }
+    }
+
+    /**
+     * moves the msg-id generator behind the messages restored by a persistent store or a snapshot,
+     * so new msg-ids do not collide with the ones written before a restart even if the clock went back
+     */
+    public void restoreNonce() {
+        long highest = -1;
+        for (String msgId : messageRepository.findAll().keySet()) {
+            // Msg-ids not generated by a star of this galaxy give -1, they are no part of the counter
+            highest = Math.max(highest, Message.parseNonce(msgId));
+        }
+        if (highest >= 0) {
+            msgIdGenerator.advancePast(highest);
+        }
+    }
+
     /**
      * Creates or forwards a message.
      *
@@ -49,16 +157,21 @@ public class MessageService {
         }
         LOGGER.log(Level.getLevel("STAR_DEBUG"), "Received message: {}", message);
 
+        // Drop duplicate and looping deliveries before validating, storing and forwarding them again
+        if (isDuplicate(message.getMsgId())) {
+            LOGGER.warn("Message with ID {} already exists.", message.getMsgId());
+            return new ResponseEntity<>(Map.of("", ""), HttpStatus.CONFLICT);
+        }
+
         // Validate the STAR-UUID
         if (!ApplicationState.getSolStarUuid().equals(message.getStar())) {
             LOGGER.warn("STAR-UUID mismatch: Received {}, expected {}", message.getStar(), ApplicationState.getSolStarUuid());
             return new ResponseEntity<>(Map.of("", ""), HttpStatus.UNAUTHORIZED);
         }
 
-        // Validate the "origin" field
-        if (message.getOrigin() == null ||
-                message.getOrigin().isEmpty() ||
-                (!isComUuid(message.getOrigin()) && !isEmailAddress(message.getOrigin()))) {
+        // Validate the "origin" field, v1 origins have no star suffix
+        OriginClassifier.Origin origin = originClassifier.classify(message.getOrigin());
+        if (!origin.isValid() || origin.star() != null) {
             LOGGER.warn("Message origin is empty or invalid.");
             return new ResponseEntity<>(Map.of("", ""), HttpStatus.PRECONDITION_FAILED);
         }
@@ -83,12 +196,6 @@ public class MessageService {
         String cleanedSubject = message.getSubject().replace("\r", "").split("\n")[0];
         message.setSubject(cleanedSubject);
 
-        // Check for duplicate messages
-        if (messages.containsKey(message.getMsgId())) {
-            LOGGER.warn("Message with ID {} already exists.", message.getMsgId());
-            return new ResponseEntity<>(Map.of("", ""), HttpStatus.CONFLICT);
-        }
-
         if (ApplicationState.getCurrentRole() == NodeRole.SOL) {
             return processMessageAsSol(message);
         } else if (ApplicationState.getCurrentRole() == NodeRole.COMPONENT) {
@@ -107,6 +214,17 @@ public class MessageService {
      * @return either message or failure msg
      */
     private ResponseEntity<Map<String, String>> forwardMessageToSol(Message message, Sol sol) {
+        return forwardMessageToSol(message, sol, false);
+    }
+
+    /**
+     * forwards a message to a given sol or to the system's sol
+     * @param message content
+     * @param sol specified sol
+     * @param async true to ask the sol to accept the message and deliver it in the background
+     * @return either message or failure msg
+     */
+    private ResponseEntity<Map<String, String>> forwardMessageToSol(Message message, Sol sol, boolean async) {
         String endpointUrl;
         // If messages is from component
         if(sol==null){
@@ -119,20 +237,10 @@ public class MessageService {
             String jsonMessage = HttpHandler.buildMessagePayload(message);
             LOGGER.log(Level.getLevel("STAR_DEBUG"), "Forwarding message payload to SOL: {}", jsonMessage);
 
-            HttpResponse<String> response = HttpHandler.sendPostRequest(endpointUrl, jsonMessage, "application/json");
-
-            if (response.statusCode() != 200) {
-                LOGGER.error("SOL returned error: Status {}, Body '{}'.", response.statusCode(), response.body());
-                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                        .body(Map.of("error", "Failed to forward message to SOL"));
-            }
-
-            // Parse SOL response for msg-id
-            ObjectMapper objectMapper = new ObjectMapper();
-            JsonNode jsonResponse = objectMapper.readTree(response.body());
-            String msgId = jsonResponse.get("msg-id").asText();
-            LOGGER.log(Level.getLevel("STAR_DEBUG"), "Message received from SOL has ID '{}'.", msgId);
-            return ResponseEntity.ok(Map.of("msg-id", msgId));
+            HttpResponse<String> response = async
+                    ? HttpHandler.sendPostRequest(endpointUrl, jsonMessage, "application/json", Map.of("Prefer", PREFER_ASYNC))
+                    : HttpHandler.sendPostRequest(endpointUrl, jsonMessage, "application/json");
+            return toForwardResult(response);
         } catch (Exception e) {
             LOGGER.error("Error forwarding message to SOL: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -140,28 +248,75 @@ public class MessageService {
         }
     }
 
+    /**
+     * forwards a stored message to another sol, the payload is copied from the template of the message
+     * @param template encoded message
+     * @param sol target sol
+     * @param currentTime time of delivery
+     * @return either message or failure msg
+     */
+    private ResponseEntity<Map<String, String>> forwardMessageToSol(ForwardingTemplate template, Sol sol, long currentTime) {
+        String endpointUrl = "http://" + sol.getComIp() + ":" + sol.getComPort() + "/vs/v2/messages";
+        try {
+            HttpResponse<String> response = HttpHandler.sendPostRequest(endpointUrl,
+                    template.forPeer(sol.getSolStarUuid(), currentTime), "application/json");
+            return toForwardResult(response);
+        } catch (Exception e) {
+            LOGGER.error("Error forwarding message {} to SOL {}: {}", template.getMsgId(), sol.getSolStarUuid(), e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Unexpected error while forwarding message"));
+        }
+    }
+
+    /**
+     * @param response response of the sol to a forwarded message
+     * @return msg-id assigned by the sol or failure msg
+     */
+    private static ResponseEntity<Map<String, String>> toForwardResult(HttpResponse<String> response) throws IOException {
+        if (response.statusCode() != 200 && response.statusCode() != 202) {
+            LOGGER.error("SOL returned error: Status {}, Body '{}'.", response.statusCode(), response.body());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Failed to forward message to SOL"));
+        }
+
+        // Parse SOL response for msg-id
+        ObjectMapper objectMapper = new ObjectMapper();
+        JsonNode jsonResponse = objectMapper.readTree(response.body());
+        String msgId = jsonResponse.get("msg-id").asText();
+        LOGGER.log(Level.getLevel("STAR_DEBUG"), "Message received from SOL has ID '{}'.", msgId);
+        return ResponseEntity.status(response.statusCode()).body(Map.of("msg-id", msgId));
+    }
+
     /**
      * get messages grouped by origin counted
+     * @return message count per origin
      */
-    private void getMessageCountsByOrigin() {
-        Map<String, Long> originCounts = messages.values().stream()
-                .collect(Collectors.groupingBy(Message::getOrigin, Collectors.counting()));
-        LOGGER.log(Level.getLevel("STAR_DEBUG"), "Message counts by origin: {}", originCounts);
+    public Map<String, Long> getMessageCountsByOrigin() {
+        return messageRepository.getCountsByOrigin();
     }
 
     /**
-     * prints messages via logger
+     * get messages grouped by status counted
+     * @return message count per status
+     */
+    public Map<String, Long> getMessageCountsByStatus() {
+        return messageRepository.getCountsByStatus();
+    }
+
+    /**
+     * prints messages via logger.
+     * walks the whole store, so it is only offered as diagnostic command and never called while handling messages
      */
     public void printAllMessages() {
         // Check if there are any messages
-        if (messages.isEmpty()) {
+        if (messageRepository.count() == 0) {
             System.out.println("No messages available.");
             return;
         }
 
         // Print all messages
         LOGGER.log(Level.getLevel("STAR_DEBUG"),"Listing all messages:");
-        messages.forEach((msgId, message) -> {
+        messageRepository.findAll().forEach((msgId, message) -> {
             LOGGER.log(Level.getLevel("STAR_DEBUG"), "Message ID: {}", msgId);
             LOGGER.log(Level.getLevel("STAR_DEBUG"), "Message Details: {}", message);
             LOGGER.log(Level.getLevel("STAR_DEBUG"), "--------------");
@@ -175,7 +330,7 @@ public class MessageService {
      */
     private ResponseEntity<Map<String, String>> handleMessageCreationAsSol(Message message) {
         // Generate message ID and set timestamps
-        String msgUuid = nonce.getAndIncrement() + "@" + message.getOrigin();
+        String msgUuid = msgIdGenerator.nextNonce() + "@" + message.getOrigin();
         long currentTime = Instant.now().getEpochSecond();
 
         message.setMsgId(msgUuid);
@@ -184,33 +339,50 @@ public class MessageService {
         message.setStatus("active");
 
         // Store the message
-        messages.put(msgUuid, message);
-        getMessageCountsByOrigin();
+        messageRepository.saveIfAbsent(msgUuid, message);
+        seenMessageFilter.markSeen(msgUuid);
+        subjectIndex.add(msgUuid, message.getSubject());
+        publishChange(MessageChangeFeed.MESSAGE_CREATED, message);
         LOGGER.log(Level.getLevel("STAR_INFO"), "Message with ID '{}' created successfully.", msgUuid);
         return ResponseEntity.ok(Map.of("msg-id", msgUuid));
     }
 
     /**
-     * Checks if the comUuid is within a valid range (1000–9999)
-     * @param comUuid id to check
-     * @return boolean
+     * logs diagnostic statistics of the message handling
      */
-    private boolean isComUuid(String comUuid) {
-        return Integer.parseInt(comUuid) >= 1000 || Integer.parseInt(comUuid) <= 9999;
+    public void logStatistics() {
+        LOGGER.log(Level.getLevel("STAR_INFO"), "Message counts by status: {}", getMessageCountsByStatus());
+        LOGGER.log(Level.getLevel("STAR_INFO"), "Message counts by origin: {}", getMessageCountsByOrigin());
+        LOGGER.log(Level.getLevel("STAR_INFO"), "Seen-message filter: {}", seenMessageFilter.getStatistics());
+        LOGGER.log(Level.getLevel("STAR_INFO"), "Tombstone compaction: {}", tombstoneCompactor.getStatistics());
+        LOGGER.log(Level.getLevel("STAR_INFO"), "Message expiry: {}", expiryScheduler.getStatistics());
+        LOGGER.log(Level.getLevel("STAR_INFO"), "Subject index: {} words", subjectIndex.getTokenCount());
+        LOGGER.log(Level.getLevel("STAR_INFO"), "Message fragment cache: {}", fragmentCache.getStatistics());
+        LOGGER.log(Level.getLevel("STAR_INFO"), "Origin classifier: {} cached email addresses", originClassifier.getCachedEmailCount());
     }
 
     /**
-     * Checks if a given value is a valid email address.
+     * Creates or forwards a v2 message and answers once it is delivered to all stars.
      *
-     * @param address the email address to validate
-     * @return true if the address is valid, false otherwise
+     * @param message The message to process.
+     * @return A ResponseEntity containing the response status and message ID.
+     */
+    public ResponseEntity<Map<String, String>> handleMessageV2(Message message) {
+        return handleMessageV2(message, false);
+    }
+
+    /**
+     * Creates or forwards a v2 message and answers with 202 accepted as soon as the sol stored it.
+     * The delivery to the other stars continues in the delivery pipeline.
+     *
+     * @param message The message to process.
+     * @return A ResponseEntity containing the response status and message ID.
      */
-    private boolean isEmailAddress(String address) {
-        EmailValidator validator = EmailValidator.getInstance();
-        return validator.isValid(address);
+    public ResponseEntity<Map<String, String>> handleMessageV2Async(Message message) {
+        return handleMessageV2(message, true);
     }
 
-    public ResponseEntity<Map<String, String>> handleMessageV2(Message message){
+    private ResponseEntity<Map<String, String>> handleMessageV2(Message message, boolean async) {
         // Validate service readiness
         if (!ApplicationState.getIsReady()) {
             LOGGER.warn("Service unavailable");
@@ -218,27 +390,314 @@ public class MessageService {
         }
         LOGGER.log(Level.getLevel("STAR_DEBUG"), "Received v2 message: {}", message);
 
+        HttpStatus invalid = validateMessageV2(message);
+        if (invalid != null) {
+            return new ResponseEntity<>(Map.of("", ""), invalid);
+        }
+        prepareMessageV2(message);
+
+        if (ApplicationState.getCurrentRole() == NodeRole.SOL) {
+            return processMessageAsSol(message, async);
+        } else if (ApplicationState.getCurrentRole() == NodeRole.COMPONENT) {
+            return forwardMessageToSol(message, null, async);
+        } else {
+            LOGGER.error("Invalid application role '{}'.", ApplicationState.getCurrentRole());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Unexpected application role"));
+        }
+    }
+
+
+    /**
+     * Creates or forwards a batch of v2 messages.
+     * Every entry is validated on its own, the valid ones get their msg-ids in one step,
+     * are stored together and sent to every other sol in a single request.
+     *
+     * @param batch The messages to process.
+     * @return A ResponseEntity containing the result (status and msg-id) per entry in the order of the batch.
+     */
+    public ResponseEntity<Map<String, Object>> handleMessageBatchV2(List<Message> batch) {
+        // Validate service readiness
+        if (!ApplicationState.getIsReady()) {
+            LOGGER.warn("Service unavailable");
+            return new ResponseEntity<>(Map.of("", ""), HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        if (batch == null || batch.isEmpty()) {
+            LOGGER.warn("Message batch is empty.");
+            return new ResponseEntity<>(Map.of("error", "400 empty batch"), HttpStatus.BAD_REQUEST);
+        }
+        if (batch.size() > MAX_BATCH_SIZE) {
+            LOGGER.warn("Message batch of {} messages exceeds the limit of {}.", batch.size(), MAX_BATCH_SIZE);
+            return new ResponseEntity<>(Map.of("error", "413 batch too large"), HttpStatus.PAYLOAD_TOO_LARGE);
+        }
+        LOGGER.log(Level.getLevel("STAR_DEBUG"), "Received v2 message batch of {} messages.", batch.size());
+
+        // Validate the entries independently, invalid ones do not fail the whole batch
+        List<Map<String, Object>> results = new ArrayList<>(Collections.nCopies(batch.size(), null));
+        List<Message> validMessages = new ArrayList<>();
+        List<Integer> validPositions = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            Message message = batch.get(i);
+            HttpStatus invalid = message == null ? HttpStatus.BAD_REQUEST : validateMessageV2(message);
+            if (invalid != null) {
+                results.set(i, batchResult(i, invalid.value(), null));
+                continue;
+            }
+            prepareMessageV2(message);
+            validMessages.add(message);
+            validPositions.add(i);
+        }
+
+        if (!validMessages.isEmpty()) {
+            List<Map<String, Object>> validResults = ApplicationState.getCurrentRole() == NodeRole.SOL
+                    ? processBatchAsSol(validMessages)
+                    : forwardBatchToSol(validMessages);
+            for (int i = 0; i < validResults.size(); i++) {
+                Map<String, Object> result = validResults.get(i);
+                result.put("index", validPositions.get(i));
+                results.set(validPositions.get(i), result);
+            }
+        }
+
+        long stored = results.stream().filter(result -> ((Number) result.get("status")).intValue() / 100 == 2).count();
+        LOGGER.log(Level.getLevel("STAR_INFO"), "v2 Message batch processed: {} of {} messages stored.", stored, batch.size());
+
+        Map<String, Object> responseMap = new LinkedHashMap<>();
+        responseMap.put("totalResults", results.size());
+        responseMap.put("stored", stored);
+        responseMap.put("results", results);
+        return ResponseEntity.ok(responseMap);
+    }
+
+    /**
+     * Handles a batch of valid messages when the current node is a SOL
+     * @param batch valid messages
+     * @return result per message in the order of the batch
+     */
+    private List<Map<String, Object>> processBatchAsSol(List<Message> batch) {
+        long currentTime = Instant.now().getEpochSecond();
+
+        // Reserve the nonces of all messages from components at once
+        long missingIds = batch.stream().filter(message -> message.getMsgId() == null || message.getMsgId().isEmpty()).count();
+        long[] nonces = msgIdGenerator.nextNonces((int) missingIds);
+        int nextNonce = 0;
+
+        for (Message message : batch) {
+            if (message.getMsgId() == null || message.getMsgId().isEmpty()) {
+                message.setMsgId(nonces[nextNonce++] + "@" + message.getOrigin() + ":" + ApplicationState.getSolStarUuid());
+            }
+            stampMessage(message, currentTime);
+        }
+
+        // Stored as one change of the store, a message may be in the batch twice or may have been stored before
+        boolean[] stored = messageRepository.saveAllIfAbsent(batch);
+        List<Map<String, Object>> results = new ArrayList<>(batch.size());
+        List<Message> storedMessages = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            Message message = batch.get(i);
+            if (!stored[i]) {
+                LOGGER.warn("Message with ID {} already exists.", message.getMsgId());
+                results.add(batchResult(i, HttpStatus.CONFLICT.value(), null));
+                continue;
+            }
+            seenMessageFilter.markSeen(message.getMsgId());
+            scheduleExpiry(message);
+            subjectIndex.add(message.getMsgId(), message.getSubject());
+            storedMessages.add(message);
+            results.add(batchResult(i, HttpStatus.OK.value(), message.getMsgId()));
+        }
+
+        if (!storedMessages.isEmpty()) {
+            storedMessages.forEach(message -> publishChange(MessageChangeFeed.MESSAGE_CREATED, message));
+            forwardBatchToStars(storedMessages);
+        }
+        return results;
+    }
+
+    /**
+     * forwards stored messages to all other sols, one request per sol
+     * @param storedMessages messages stored by this sol
+     */
+    private void forwardBatchToStars(List<Message> storedMessages) {
+        long currentTime = Instant.now().getEpochSecond();
+        // Every message is encoded once, the payload of each sol is copied from the templates
+        Map<Message, ForwardingTemplate> templates = new IdentityHashMap<>();
+        for (Message message : storedMessages) {
+            ForwardingTemplate template = buildForwardingTemplate(message);
+            if (template != null) {
+                templates.put(message, template);
+            }
+        }
+        for (Sol sol : solRepository.findAll().values()) {
+            if (sol.getSolStarUuid().equals(ApplicationState.getSolStarUuid())) {
+                continue;
+            }
+            // Skip the messages coming from the target star
+            List<ForwardingTemplate> forwardedMessages = storedMessages.stream()
+                    .filter(message -> !sol.getSolStarUuid().equals(OriginClassifier.starOf(message.getOrigin())))
+                    .map(templates::get)
+                    .filter(Objects::nonNull)
+                    .toList();
+            if (forwardedMessages.isEmpty()) {
+                continue;
+            }
+
+            long forwardStart = System.nanoTime();
+            boolean[] delivered = forwardBatchToPeer(forwardedMessages, sol, currentTime);
+            long roundTripMillis = (System.nanoTime() - forwardStart) / 1_000_000;
+            for (int i = 0; i < forwardedMessages.size(); i++) {
+                linkStatsService.recordForward(sol.getSolStarUuid(), delivered[i], roundTripMillis);
+                deliveryPipeline.recordResult(forwardedMessages.get(i).getMsgId(), sol.getSolStarUuid(), delivered[i]);
+            }
+        }
+    }
+
+    /**
+     * sends a batch to another sol, falls back to single messages if the sol has no batch endpoint
+     * @param forwardedMessages messages addressed to the sol
+     * @param sol target sol
+     * @return delivery result per message
+     */
+    private boolean[] forwardBatchToPeer(List<ForwardingTemplate> forwardedMessages, Sol sol, long currentTime) {
+        boolean[] delivered = new boolean[forwardedMessages.size()];
+        String endpointUrl = "http://" + sol.getComIp() + ":" + sol.getComPort() + "/vs/v2/messages/batch";
+        try {
+            ByteArrayOutputStream payload = new ByteArrayOutputStream();
+            payload.write('[');
+            for (int i = 0; i < forwardedMessages.size(); i++) {
+                if (i > 0) {
+                    payload.write(',');
+                }
+                forwardedMessages.get(i).writeForPeer(payload, sol.getSolStarUuid(), currentTime);
+            }
+            payload.write(']');
+            HttpResponse<String> response = HttpHandler.sendPostRequest(endpointUrl, payload.toByteArray(), "application/json");
+
+            if (response.statusCode() == 200) {
+                JsonNode results = new ObjectMapper().readTree(response.body()).path("results");
+                for (int i = 0; i < delivered.length && i < results.size(); i++) {
+                    delivered[i] = results.get(i).path("status").asInt() / 100 == 2;
+                }
+                return delivered;
+            }
+            if (response.statusCode() != 404 && response.statusCode() != 403 && response.statusCode() != 405) {
+                LOGGER.error("SOL {} returned error for batch: Status {}, Body '{}'.", sol.getSolStarUuid(), response.statusCode(), response.body());
+                return delivered;
+            }
+        } catch (Exception e) {
+            LOGGER.error("Error forwarding message batch to SOL {}: {}", sol.getSolStarUuid(), e.getMessage());
+            return delivered;
+        }
+
+        // The sol does not know batches, deliver the messages one by one
+        LOGGER.log(Level.getLevel("STAR_DEBUG"), "SOL {} does not accept batches, forwarding single messages.", sol.getSolStarUuid());
+        for (int i = 0; i < delivered.length; i++) {
+            delivered[i] = forwardMessageToSol(forwardedMessages.get(i), sol, currentTime).getStatusCode().is2xxSuccessful();
+        }
+        return delivered;
+    }
+
+    /**
+     * Forwards a batch of valid messages from a component to its SOL in one request
+     * @param batch valid messages
+     * @return result per message in the order of the batch
+     */
+    private List<Map<String, Object>> forwardBatchToSol(List<Message> batch) {
+        String endpointUrl = "http://" + ApplicationState.getSolIp().getHostAddress() + ":" + ApplicationState.getSolPort() + "/vs/v2/messages/batch";
+        int failedStatus = HttpStatus.INTERNAL_SERVER_ERROR.value();
+        try {
+            String jsonBatch = new ObjectMapper().writeValueAsString(batch);
+            LOGGER.log(Level.getLevel("STAR_DEBUG"), "Forwarding message batch payload to SOL: {}", jsonBatch);
+            HttpResponse<String> response = HttpHandler.sendPostRequest(endpointUrl, jsonBatch, "application/json");
+
+            if (response.statusCode() == 200) {
+                JsonNode solResults = new ObjectMapper().readTree(response.body()).path("results");
+                List<Map<String, Object>> results = new ArrayList<>(batch.size());
+                for (int i = 0; i < batch.size(); i++) {
+                    JsonNode solResult = solResults.path(i);
+                    results.add(batchResult(i, solResult.path("status").asInt(failedStatus),
+                            solResult.hasNonNull("msg-id") ? solResult.get("msg-id").asText() : null));
+                }
+                return results;
+            }
+            LOGGER.error("SOL returned error for batch: Status {}, Body '{}'.", response.statusCode(), response.body());
+            failedStatus = response.statusCode();
+        } catch (Exception e) {
+            LOGGER.error("Error forwarding message batch to SOL: {}", e.getMessage());
+        }
+
+        List<Map<String, Object>> results = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            results.add(batchResult(i, failedStatus, null));
+        }
+        return results;
+    }
+
+    /**
+     * @return result of a single batch entry
+     */
+    private static Map<String, Object> batchResult(int position, int status, String msgId) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("index", position);
+        result.put("status", status);
+        if (msgId != null) {
+            result.put("msg-id", msgId);
+        }
+        return result;
+    }
+
+    /**
+     * @param msgId msg-id of a delivered message, may be null
+     * @return true if the message passed this sol before, also if its tombstone was compacted meanwhile
+     */
+    private boolean isDuplicate(String msgId) {
+        return tombstoneCompactor.wasCompacted(msgId) || seenMessageFilter.isDuplicate(msgId, messageRepository::existsById);
+    }
+
+    /**
+     * validates a v2 message
+     * @param message message to validate
+     * @return status of the failed check or null if the message is valid
+     */
+    private HttpStatus validateMessageV2(Message message) {
+        // Drop duplicate and looping deliveries before validating, storing and forwarding them again
+        if (isDuplicate(message.getMsgId())) {
+            LOGGER.warn("Message with ID {} already exists.", message.getMsgId());
+            return HttpStatus.CONFLICT;
+        }
+
         // Validate the STAR-UUID
         if (!ApplicationState.getSolStarUuid().equals(message.getStar())) {
             LOGGER.warn("STAR-UUID mismatch: Received {}, expected {}", message.getStar(), ApplicationState.getSolStarUuid());
-            return new ResponseEntity<>(Map.of("", ""), HttpStatus.UNAUTHORIZED);
+            return HttpStatus.UNAUTHORIZED;
         }
 
-        // Validate the "origin" field
-        if (message.getOrigin() == null ||
-                message.getOrigin().isEmpty() ||
-                (!isComUuid(message.getOrigin().split(":")[0]) && !isEmailAddress(message.getOrigin().split(":")[0]))) {
+        // Validate the "origin" field, with or without the star suffix
+        if (!originClassifier.classify(message.getOrigin()).isValid()) {
             LOGGER.warn("Message origin is empty or invalid.");
-            return new ResponseEntity<>(Map.of("", ""), HttpStatus.PRECONDITION_FAILED);
+            return HttpStatus.PRECONDITION_FAILED;
         }
 
         // Validate the "sender" and "subject" fields
         if (message.getSender() == null || message.getSender().isEmpty() ||
                 message.getSubject() == null || message.getSubject().isEmpty()) {
             LOGGER.warn("Message sender or subject is invalid.");
-            return new ResponseEntity<>(Map.of("", ""), HttpStatus.PRECONDITION_FAILED);
+            return HttpStatus.PRECONDITION_FAILED;
         }
 
+        // Validate the optional lifetime
+        if (message.getTtl() != null && message.getTtl() <= 0) {
+            LOGGER.warn("Message ttl {} is not positive.", message.getTtl());
+            return HttpStatus.PRECONDITION_FAILED;
+        }
+        return null;
+    }
+
+    /**
+     * sets sender, version and the cleaned up subject of a valid v2 message
+     * @param message message to prepare
+     */
+    private void prepareMessageV2(Message message) {
         // Set the sender to the current component UUID thus overwrite anything which is set before
         message.setSender(ApplicationState.getComUuid());
         message.setVersion("1");
@@ -246,25 +705,8 @@ public class MessageService {
         // Process and clean up the subject
         String cleanedSubject = message.getSubject().replace("\r", "").split("\n")[0];
         message.setSubject(cleanedSubject);
-
-        // Check for duplicate messages
-        if (messages.containsKey(message.getMsgId())) {
-            LOGGER.warn("Message with ID {} already exists.", message.getMsgId());
-            return new ResponseEntity<>(Map.of("", ""), HttpStatus.CONFLICT);
-        }
-
-        if (ApplicationState.getCurrentRole() == NodeRole.SOL) {
-            return processMessageAsSol(message);
-        } else if (ApplicationState.getCurrentRole() == NodeRole.COMPONENT) {
-            return forwardMessageToSol(message, null);
-        } else {
-            LOGGER.error("Invalid application role '{}'.", ApplicationState.getCurrentRole());
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(Map.of("error", "Unexpected application role"));
-        }
     }
 
-
     /**
      * Adds the current sol's UUID to the origin field.
      * @param origin origin to be updated
@@ -280,61 +722,114 @@ public class MessageService {
      * @return response entity
      */
     private ResponseEntity<Map<String, String>> processMessageAsSol(Message message) {
-        long currentTime = Instant.now().getEpochSecond();
+        return processMessageAsSol(message, false);
+    }
 
+    /**
+     * Handles message creation when the current node is a SOL
+     * @param message msg content
+     * @param async true to answer right after storing and deliver in the delivery pipeline
+     * @return response entity
+     */
+    private ResponseEntity<Map<String, String>> processMessageAsSol(Message message, boolean async) {
         // Generate msgUuid if absent message comes from a component
         if (message.getMsgId() == null || message.getMsgId().isEmpty()) {
             message.setMsgId(generateMsgUuid(message));
         }
+        stampMessage(message, Instant.now().getEpochSecond());
+
+        // Store the message, a concurrent delivery of the same message may have won the race
+        if (!messageRepository.saveIfAbsent(message.getMsgId(), message)) {
+            LOGGER.warn("Message with ID {} already exists.", message.getMsgId());
+            return new ResponseEntity<>(Map.of("", ""), HttpStatus.CONFLICT);
+        }
+        seenMessageFilter.markSeen(message.getMsgId());
+        scheduleExpiry(message);
+        subjectIndex.add(message.getMsgId(), message.getSubject());
+        publishChange(MessageChangeFeed.MESSAGE_CREATED, message);
+
+        // Accept now and send the message to all sols in the background
+        if (async && deliveryPipeline.submit(message, () -> forwardToStars(message))) {
+            LOGGER.log(Level.getLevel("STAR_INFO"), "v2 Message with ID '{}' accepted for delivery.", message.getMsgId());
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(Map.of("msg-id", message.getMsgId()));
+        }
 
+        // Send message to all sols
+        forwardToStars(message);
+
+        LOGGER.log(Level.getLevel("STAR_INFO"), "v2 Message with ID '{}' created successfully.", message.getMsgId());
+        return ResponseEntity.ok(Map.of("msg-id", message.getMsgId()));
+    }
+
+    /**
+     * sets the timestamps and the status of a message before it is stored by the sol
+     * @param message message with msg-id
+     * @param currentTime time of storing
+     */
+    private void stampMessage(Message message, long currentTime) {
         // Check if msgUuid was set by the current server so a component sent the message
-        if(message.getMsgId().split(":")[1].equals(ApplicationState.getSolStarUuid())){
+        if (ApplicationState.getSolStarUuid().equals(OriginClassifier.starOf(message.getMsgId()))) {
             message.setCreated(currentTime);
             // Validate and update the origin field
             message.setOrigin(updateOrigin(message.getOrigin()));
+            // The lifetime of the message or of its origin becomes a fixed expiry that travels with the message
+            Long ttl = message.getTtl() != null ? message.getTtl() : expiryScheduler.getTtlFor(message.getOrigin());
+            message.setExpires(ttl == null ? null : currentTime + ttl);
+            message.setTtl(null);
         } else {
             // If the message was sent by a star then set fromStar and received
-            message.setFromStar(message.getOrigin().split(":")[1]);
+            message.setFromStar(OriginClassifier.starOf(message.getOrigin()));
             message.setReceived(currentTime);
+            linkStatsService.recordReceive(message.getFromStar(), message.getCreated(), message.getDelivered(), currentTime);
         }
 
         message.setChanged(currentTime);
         message.setStatus("active");
+    }
 
-        // Store the message
-        messages.put(message.getMsgId(), message);
-        getMessageCountsByOrigin();
-        printAllMessages();
-
-        // Send message to all sols
+    /**
+     * forwards a stored message to all other sols except its origin star
+     * @param message stored message
+     */
+    private void forwardToStars(Message message) {
+        long currentTime = Instant.now().getEpochSecond();
+        ForwardingTemplate template = null;
         for (Sol sol : solRepository.findAll().values()) {
             // Skip sending the message to the origin star and to the own star
-            if (!sol.getSolStarUuid().equals(ApplicationState.getSolStarUuid()) && !message.getOrigin().split(":")[1].equals(sol.getSolStarUuid())) {
-                Message forwardedMessage = Message.builder()
-                        .msgId(message.getMsgId())
-                        .version(message.getVersion())
-                        .status(message.getStatus())
-                        .origin(message.getOrigin())
-                        .sender(message.getSender())
-                        .subject(message.getSubject())
-                        .message(message.getMessage())
-                        .created(message.getCreated())
-                        .changed(message.getChanged())
-                        .star(sol.getSolStarUuid())
-                        .toStar(sol.getSolStarUuid())
-                        .delivered(currentTime)
-                        .build();
-                forwardMessageToSol(forwardedMessage, sol);
+            if (!sol.getSolStarUuid().equals(ApplicationState.getSolStarUuid()) && !sol.getSolStarUuid().equals(OriginClassifier.starOf(message.getOrigin()))) {
+                // Encoded once for the first sol, the other sols get a copy
+                if (template == null) {
+                    template = buildForwardingTemplate(message);
+                    if (template == null) {
+                        return;
+                    }
+                }
+                long forwardStart = System.nanoTime();
+                ResponseEntity<Map<String, String>> forwardResponse = forwardMessageToSol(template, sol, currentTime);
+                boolean delivered = forwardResponse.getStatusCode().is2xxSuccessful();
+                linkStatsService.recordForward(sol.getSolStarUuid(), delivered, (System.nanoTime() - forwardStart) / 1_000_000);
+                deliveryPipeline.recordResult(message.getMsgId(), sol.getSolStarUuid(), delivered);
             }
         }
+    }
 
-        LOGGER.log(Level.getLevel("STAR_INFO"), "v2 Message with ID '{}' created successfully.", message.getMsgId());
-        return ResponseEntity.ok(Map.of("msg-id", message.getMsgId()));
+    /**
+     * encodes the copy of a stored message that is sent to the other sols
+     * @param message stored message
+     * @return template of the message or null if it cannot be encoded
+     */
+    private static ForwardingTemplate buildForwardingTemplate(Message message) {
+        try {
+            return ForwardingTemplate.of(message);
+        } catch (JsonProcessingException e) {
+            LOGGER.error("Message with ID {} cannot be encoded for forwarding: {}", message.getMsgId(), e.getMessage());
+            return null;
+        }
     }
 
     private String generateMsgUuid(Message message) {
         // Generate a unique message ID in the v2 format
-        return nonce.getAndIncrement() + "@" + message.getOrigin() + ":" + ApplicationState.getSolStarUuid();
+        return msgIdGenerator.nextNonce() + "@" + message.getOrigin() + ":" + ApplicationState.getSolStarUuid();
     }
 
     /**
@@ -379,24 +874,33 @@ public class MessageService {
      * @return response entity with http status
      */
     private ResponseEntity<String> handleDeleteAsSol(String msgId) {
-        Message message = messages.get(msgId);
-
         // Check if the message exists
-        if (message == null) {
+        if (!messageRepository.existsById(msgId)) {
             LOGGER.warn("Message with ID {} does not exist.", msgId);
             return new ResponseEntity<>("404 does not exist", HttpStatus.NOT_FOUND);
         }
 
-        if (messages.get(msgId).getStatus().equals("deleted")) {
+        // Check and update atomically in the store so concurrent deletes update the indexes once
+        long currentTime = Instant.now().getEpochSecond();
+        Message deleted = messageRepository.update(msgId, message -> {
+            if (message.getStatus().equals("deleted")) {
+                return null;
+            }
+            // Update message status and timestamp
+            message.setStatus("deleted");
+            message.setChanged(currentTime);
+            message.setMessage("");
+            return message;
+        });
+        if (deleted == null) {
             LOGGER.warn("Message with ID {} is already deleted.", msgId);
             return new ResponseEntity<>("401 unauthorized", HttpStatus.UNAUTHORIZED);
         }
-
-        // Update message status and timestamp
-        long currentTime = Instant.now().getEpochSecond();
-        message.setStatus("deleted");
-        message.setChanged(currentTime);
-        message.setMessage("");
+        subjectIndex.remove(msgId, deleted.getSubject());
+        fragmentCache.invalidate(msgId);
+        // Not restored from the delivery journal after a restart
+        deliveryPipeline.finish(msgId);
+        publishChange(MessageChangeFeed.MESSAGE_DELETED, deleted);
 
         LOGGER.log(Level.getLevel("STAR_INFO"), "Message with ID '{}' marked as deleted.", msgId);
         return new ResponseEntity<>("200 ok", HttpStatus.OK);
@@ -436,112 +940,340 @@ public class MessageService {
     }
 
     /**
-     * gets msgs in scope and view or forwards this request to a sol before fetching
+     * filters and paging of a message list request
+     * @param scope scope for messages, null for "active"
+     * @param view view for messages, null for "id"
+     * @param limit maximum number of messages in the page, null for no limit
+     * @param cursor opaque cursor returned as "next-cursor" by the previous page, null to start at the beginning
+     * @param since only messages changed at or after this timestamp, null for all
+     * @param origin only messages of this origin, without star suffix it is an origin of this star, null for all
+     * @param createdAfter only messages created after this timestamp, null for all
+     * @param createdBefore only messages created before this timestamp, null for all
+     * @param changedAfter only messages changed after this timestamp, null for all
+     */
+    public record MessageQuery(String scope, String view, Integer limit, String cursor, Long since,
+                               String origin, Long createdAfter, Long createdBefore, Long changedAfter) {
+        /**
+         * @return true if the response is a page with "next-cursor" and "has-more"
+         */
+        boolean isPaged() {
+            return limit != null || cursor != null || since != null || changedAfter != null;
+        }
+
+        /**
+         * @return true if no message can match, e.g. created after the last possible timestamp
+         */
+        boolean isEmptyRange() {
+            return Long.valueOf(Long.MAX_VALUE).equals(createdAfter) || Long.valueOf(Long.MAX_VALUE).equals(changedAfter)
+                    || Long.valueOf(Long.MIN_VALUE).equals(createdBefore);
+        }
+    }
+
+    /**
+     * gets a page of msgs in scope and view or forwards this request to a sol before fetching.
+     * pages are ordered by changed time, so the cursor of the last page can be reused to fetch only later changes
      * @param star requester
-     * @param scope scope for messages
-     * @param view view for messages
-     * @return response entity of either the messages or the error
+     * @param query scope, view, paging and filters of the request
+     * @param ifNoneMatch ETag of a previous response of the caller, null if there is none
+     * @return response entity of either the messages, not modified or the error
      */
-    public ResponseEntity<?> getMessages(String star, String scope, String view) {
-        LOGGER.log(Level.getLevel("STAR_DEBUG"), "Received request to retrieve messages with scope: {}, view: {}", scope, view);
+    public ResponseEntity<?> getMessages(String star, MessageQuery query, String ifNoneMatch) {
+        LOGGER.log(Level.getLevel("STAR_DEBUG"), "Received request to retrieve messages with {}", query);
 
         // Validate the STAR-UUID
         if (!ApplicationState.getSolStarUuid().equals(star)) {
             LOGGER.warn("STAR-UUID mismatch: Received {}, expected {}", star, ApplicationState.getSolStarUuid());
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "401 unauthorized"));
         }
+        if (query.limit() != null && query.limit() < 1) {
+            LOGGER.warn("Invalid limit {}", query.limit());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("error", "400 invalid limit"));
+        }
         if (ApplicationState.getCurrentRole() == NodeRole.SOL) {
-            return fetchMessagesFromLocal(star, scope, view);
+            // Nothing changed since the last poll of the caller, the version is read before the store is walked
+            String eTag = HttpHandler.buildETag(messageRepository.getVersion());
+            if (HttpHandler.matchesETag(ifNoneMatch, eTag)) {
+                LOGGER.log(Level.getLevel("STAR_DEBUG"), "Messages not modified: {}", eTag);
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+            }
+            return fetchMessagesFromLocal(star, query, eTag);
         }
 
-        return forwardRequestToSol(star, scope, view);
+        return forwardRequestToSol(star, query, ifNoneMatch);
 
     }
 
     /**
      * fetches messages locally
      * @param star requester
-     * @param scope scope for messages
-     * @param view view for messages
+     * @param query scope, view, paging and filters of the request
+     * @param eTag ETag of the store version the response is built from
      * @return response entity of the messages
      */
-    private ResponseEntity<?> fetchMessagesFromLocal(String star, String scope, String view) {
+    private ResponseEntity<?> fetchMessagesFromLocal(String star, MessageQuery query, String eTag) {
+        String scope = query.scope();
+        Integer limit = query.limit();
+        String cursor = query.cursor();
         // Logic to retrieve messages locally
-        LOGGER.log(Level.getLevel("STAR_INFO"), "Fetching messages locally with scope={} and view={}", scope, view);
+        LOGGER.log(Level.getLevel("STAR_INFO"), "Fetching messages locally with scope={} and view={}", scope, query.view());
 
         // Determine the default values for scope and view
         String messageScope = (scope == null || scope.isEmpty()) ? "active" : scope;
-        view = (view == null || view.isEmpty()) ? "id" : view;
-
-        // Filter messages based on the scope
-        List<Message> filteredMessages = messages.values().stream()
-                .filter(message -> messageScope.equals("all") || "active".equals(message.getStatus()))
-                .toList();
-
-        // Prepare the response
-        LinkedHashMap<String, Object> response = new LinkedHashMap<>();
-        response.put("star", star);
-        response.put("totalResults", filteredMessages.size());
-        response.put("scope", scope);
-        response.put("view", view);
-
-        // Construct the message list based on the view
-        List<Map<String, Object>> messageList = new ArrayList<>();
-        for (Message message : filteredMessages) {
-            LinkedHashMap<String, Object> messageData = new LinkedHashMap<>();
-            messageData.put("msg-id", message.getMsgId());
-            messageData.put("status", message.getStatus());
-
-            if ("header".equals(view)) {
-                if (!"deleted".equalsIgnoreCase(message.getStatus())) {
-                    messageData.put("version", message.getVersion());
-                    messageData.put("origin", message.getOrigin());
-                    messageData.put("created", message.getCreated());
-                    messageData.put("changed", message.getChanged());
-                    messageData.put("subject", message.getSubject());
+        String view = (query.view() == null || query.view().isEmpty()) ? "id" : query.view();
+        boolean paged = query.isPaged();
+        // Since and changed-after both bound the changed time from below, the later one wins.
+        // The bounds at the ends of the range are caught by isEmptyRange before they could overflow
+        long changedFrom = Math.max(query.since() == null ? Long.MIN_VALUE : query.since(),
+                query.changedAfter() == null || query.isEmptyRange() ? Long.MIN_VALUE : query.changedAfter() + 1);
+        long createdFrom = query.createdAfter() == null || query.isEmptyRange() ? Long.MIN_VALUE : query.createdAfter() + 1;
+        long createdTo = query.createdBefore() == null || query.isEmptyRange() ? Long.MAX_VALUE : query.createdBefore() - 1;
+        String origin = query.origin();
+        String originFilter = origin == null || origin.contains(":") ? origin : updateOrigin(origin);
+
+        // Decode the position of the previous page
+        MessageIndex.ChangeKey after = null;
+        if (cursor != null) {
+            after = decodeCursor(cursor);
+            if (after == null) {
+                LOGGER.warn("Invalid cursor {}", cursor);
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("error", "400 invalid cursor"));
+            }
+        }
+
+        // Look up the messages of the scope in the indexes, lazily so nothing is collected up front.
+        // Only the full view needs the bodies, the other views read the headers
+        Function<String, Message> lookup = "full".equals(view) ? messageRepository::findById : messageRepository::findHeaderById;
+        // Position to continue at, the cursor or the lower bound of the changed time, whichever is later
+        MessageIndex.ChangeKey from = new MessageIndex.ChangeKey(changedFrom, "");
+        boolean inclusive = after == null || after.compareTo(from) < 0;
+        MessageIndex.ChangeKey start = inclusive ? from : after;
+        Stream<Message> candidates;
+        boolean filtered = originFilter != null || query.createdAfter() != null || query.createdBefore() != null;
+        if (query.isEmptyRange()) {
+            candidates = Stream.empty();
+        } else if (filtered) {
+            // Driven by the narrower of the origin and the created index, ordered by change for pages and cursors
+            Collection<String> ids = findFilteredIds(originFilter, createdFrom, createdTo);
+            candidates = orderByChange(ids, lookup, message -> message.getCreated() >= createdFrom && message.getCreated() <= createdTo
+                    && (messageScope.equals("all") || "active".equals(message.getStatus())), start, inclusive, limit).stream();
+        } else if (paged) {
+            // Walk the changed index from the start position, a page stops reading once it is full
+            candidates = messageRepository.findChangedFrom(start, inclusive).stream()
+                    .map(key -> {
+                        // Skip keys of messages that changed during the walk, they show up again at their new position
+                        Message message = lookup.apply(key.msgId());
+                        return message != null && message.getChanged() == key.changed() ? message : null;
+                    });
+        } else if (messageScope.equals("all")) {
+            candidates = messageRepository.findAllByChanged().stream().map(key -> lookup.apply(key.msgId()));
+        } else {
+            candidates = messageRepository.findIdsByStatus("active").stream().map(lookup);
+        }
+        Iterator<Message> matching = candidates
+                .filter(message -> message != null && (messageScope.equals("all") || "active".equals(message.getStatus())))
+                .iterator();
+
+        // Write the response straight to the output stream while walking the index
+        String responseView = view;
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = JSON_FACTORY.createGenerator(outputStream)) {
+                generator.writeStartObject();
+                generator.writeStringField("star", star);
+                generator.writeStringField("scope", scope);
+                generator.writeStringField("view", responseView);
+
+                // Construct the message list based on the view
+                generator.writeArrayFieldStart("messages");
+                int written = 0;
+                Message last = null;
+                while (matching.hasNext() && (limit == null || written < limit)) {
+                    last = matching.next();
+                    generator.writeRawValue(fragmentCache.get(last, responseView));
+                    written++;
                 }
+                generator.writeEndArray();
+
+                // The count is only known once the list is written
+                generator.writeNumberField("totalResults", written);
+                if (paged) {
+                    // The cursor of the last message resumes the walk, also for polling changes later on
+                    generator.writeStringField("next-cursor", last != null
+                            ? encodeCursor(new MessageIndex.ChangeKey(last.getChanged(), last.getMsgId()))
+                            : cursor);
+                    generator.writeBooleanField("has-more", matching.hasNext());
+                }
+                generator.writeEndObject();
+            }
+        };
+
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).eTag(eTag).body(body);
+    }
+
+    /**
+     * msg-ids of an origin and a created range, taken from the narrower of the two indexes.
+     * the size of a created range is only known by walking it, so the walk gives up on the created index
+     * once it passed more keys than the origin has messages, the created time is checked after the lookup then
+     * @param origin origin including the star suffix, null for all
+     * @param createdFrom lowest created time, {@link Long#MIN_VALUE} for no bound
+     * @param createdTo highest created time, {@link Long#MAX_VALUE} for no bound
+     * @return msg-ids that may match, the origin ones match their origin
+     */
+    private Collection<String> findFilteredIds(String origin, long createdFrom, long createdTo) {
+        Set<String> originIds = origin != null ? messageRepository.findIdsByOrigin(origin) : null;
+        if (createdFrom == Long.MIN_VALUE && createdTo == Long.MAX_VALUE) {
+            return originIds;
+        }
+        List<String> ids = new ArrayList<>();
+        int walked = 0;
+        for (MessageIndex.ChangeKey key : messageRepository.findCreatedBetween(createdFrom, createdTo)) {
+            if (originIds == null) {
+                ids.add(key.msgId());
+            } else if (++walked > originIds.size()) {
+                return originIds;
+            } else if (originIds.contains(key.msgId())) {
+                ids.add(key.msgId());
             }
+        }
+        return ids;
+    }
 
-            messageList.add(messageData);
+    /**
+     * looks up the given messages and orders the matching ones behind the start position by their change.
+     * with a limit only the first limit + 1 are kept, one more than the page to tell if there are more
+     * @param ids msg-ids to look up
+     * @param lookup lookup of the view
+     * @param matches filters of the request
+     * @param start position to continue at
+     * @param inclusive true if the position itself belongs to the result
+     * @param limit maximum number of messages in the page, null for no limit
+     * @return matching messages in ascending changed order
+     */
+    private static Collection<Message> orderByChange(Collection<String> ids, Function<String, Message> lookup, Predicate<Message> matches,
+                                                     MessageIndex.ChangeKey start, boolean inclusive, Integer limit) {
+        TreeMap<MessageIndex.ChangeKey, Message> page = new TreeMap<>();
+        for (String msgId : ids) {
+            Message message = lookup.apply(msgId);
+            if (message == null || !matches.test(message)) {
+                continue;
+            }
+            MessageIndex.ChangeKey key = new MessageIndex.ChangeKey(message.getChanged(), msgId);
+            int position = key.compareTo(start);
+            if (position < 0 || (position == 0 && !inclusive)) {
+                continue; // Returned by an earlier page
+            }
+            page.put(key, message);
+            if (limit != null && page.size() > (long) limit + 1) {
+                page.pollLastEntry();
+            }
         }
+        return page.values();
+    }
 
-        response.put("messages", messageList);
+    /**
+     * encodes a position in the changed index as opaque cursor
+     * @param key position of the last returned message
+     * @return url safe cursor
+     */
+    private static String encodeCursor(MessageIndex.ChangeKey key) {
+        String position = key.changed() + ":" + key.msgId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
 
-        return ResponseEntity.ok(response);
+    /**
+     * decodes a cursor created by {@link #encodeCursor(MessageIndex.ChangeKey)}
+     * @param cursor opaque cursor
+     * @return position in the changed index or null if the cursor is invalid
+     */
+    private static MessageIndex.ChangeKey decodeCursor(String cursor) {
+        try {
+            String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = position.indexOf(':');
+            if (separator < 1) {
+                return null;
+            }
+            return new MessageIndex.ChangeKey(Long.parseLong(position.substring(0, separator)), position.substring(separator + 1));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
     }
 
     /**
-     * Sends a message to a sol via an HTTP POST request.
-     * Builds a JSON payload from the Message object.
-     * Sends the payload to the appropriate sol endpoint.
-     * Handles the sol's response, including errors
-     * @param star
-     * @param scope
-     * @param view
-     * @return
+     * passes a message list request on to the sol with the same query parameters
+     * and returns its response as it is, including a 304 for a matching ETag
+     * @param star requester
+     * @param query scope, view, paging and filters of the request
+     * @param ifNoneMatch ETag of a previous response of the caller, null if there is none
+     * @return response entity of the sol
      */
-    private ResponseEntity<?> forwardRequestToSol(String star, String scope, String view) {
+    private ResponseEntity<?> forwardRequestToSol(String star, MessageQuery query, String ifNoneMatch) {
         String solIp = ApplicationState.getSolIp().getHostAddress();
         int solPort = ApplicationState.getSolPort();
-        String endpointUrl = String.format("http://%s:%d/vs/v1/messages?star=%s&scope=%s&view=%s",
-                solIp, solPort, star, scope, view);
+        StringBuilder endpointUrl = new StringBuilder(String.format("http://%s:%d/vs/v1/messages?star=%s&scope=%s&view=%s",
+                solIp, solPort, star, query.scope(), query.view()));
+        if (query.limit() != null) {
+            endpointUrl.append("&limit=").append(query.limit());
+        }
+        if (query.cursor() != null) {
+            endpointUrl.append("&cursor=").append(URLEncoder.encode(query.cursor(), StandardCharsets.UTF_8));
+        }
+        if (query.since() != null) {
+            endpointUrl.append("&since=").append(query.since());
+        }
+        if (query.origin() != null) {
+            endpointUrl.append("&origin=").append(URLEncoder.encode(query.origin(), StandardCharsets.UTF_8));
+        }
+        if (query.createdAfter() != null) {
+            endpointUrl.append("&created-after=").append(query.createdAfter());
+        }
+        if (query.createdBefore() != null) {
+            endpointUrl.append("&created-before=").append(query.createdBefore());
+        }
+        if (query.changedAfter() != null) {
+            endpointUrl.append("&changed-after=").append(query.changedAfter());
+        }
+        return passThroughFromSol(endpointUrl.toString(), ifNoneMatch);
+    }
 
+    /**
+     * sends a get request to the sol and streams its response to the caller
+     * @param endpointUrl url of the sol endpoint including the query
+     * @param ifNoneMatch ETag of a previous response of the caller, null if there is none
+     * @return response entity of the sol or the error
+     */
+    private ResponseEntity<?> passThroughFromSol(String endpointUrl, String ifNoneMatch) {
         try {
             LOGGER.log(Level.getLevel("STAR_INFO"), "Forwarding request to SOL: {}", endpointUrl);
 
             // Forward the request to SOL
-            HttpResponse<String> response = HttpHandler.sendGetRequest(endpointUrl);
+            Map<String, String> headers = ifNoneMatch == null ? Map.of() : Map.of(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+            HttpResponse<InputStream> response = HttpHandler.sendGetRequestForStream(endpointUrl, headers);
+            // Pass the ETag of the SOL on so the caller can poll conditionally
+            ResponseEntity.BodyBuilder builder = ResponseEntity.status(response.statusCode());
+            response.headers().firstValue(HttpHeaders.ETAG).ifPresent(builder::eTag);
+
+            // The caller is up to date
+            if (response.statusCode() == HttpStatus.NOT_MODIFIED.value()) {
+                response.body().close();
+                return builder.build();
+            }
 
-            // Parse and forward the SOL response
+            // Pass the SOL response through without parsing it
             if (response.statusCode() == 200) {
-                ObjectMapper objectMapper = new ObjectMapper();
-                JsonNode jsonResponse = objectMapper.readTree(response.body());
-                return new ResponseEntity<>(objectMapper.convertValue(jsonResponse, Map.class), HttpStatus.OK);
+                StreamingResponseBody body = outputStream -> {
+                    try (InputStream solStream = response.body()) {
+                        solStream.transferTo(outputStream);
+                    }
+                };
+                return builder.contentType(MediaType.APPLICATION_JSON).body(body);
             }
 
             // Handle errors from SOL
-            LOGGER.error("SOL returned error: Status {}, Body '{}'", response.statusCode(), response.body());
-            return ResponseEntity.status(response.statusCode()).body(response.body());
+            String errorBody;
+            try (InputStream solStream = response.body()) {
+                errorBody = new String(solStream.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            LOGGER.error("SOL returned error: Status {}, Body '{}'", response.statusCode(), errorBody);
+            return ResponseEntity.status(response.statusCode()).body(errorBody);
 
         } catch (Exception e) {
             LOGGER.error("Error forwarding request to SOL: {}", e.getMessage());
@@ -598,7 +1330,7 @@ public class MessageService {
         }
 
         // Fetch the message
-        Message message = messages.get(msgId);
+        Message message = messageRepository.findById(msgId);
 
         // If message doesn't exist
         if (message == null) {
@@ -611,38 +1343,26 @@ public class MessageService {
                     .body(response);
         }
 
-        // Prepare response for deleted message
         if ("deleted".equalsIgnoreCase(message.getStatus())) {
             LOGGER.log(Level.getLevel("STAR_INFO"),"Message with ID '{}' is marked as deleted", msgId);
-            LinkedHashMap<String, Object> response = new LinkedHashMap<>();
-            response.put("star", star);
-            response.put("totalResults", 1);
-            LinkedHashMap<String, Object> messageDetails = new LinkedHashMap<>();
-            messageDetails.put("msg-id", message.getMsgId());
-            messageDetails.put("status", message.getStatus());
-            response.put("messages", List.of(messageDetails));
-            return ResponseEntity.ok(response);
+        } else {
+            LOGGER.log(Level.getLevel("STAR_INFO"),"Message with ID '{}' retrieved successfully", msgId);
         }
 
-        // Prepare response for active message
-        LinkedHashMap<String, Object> messageDetails = new LinkedHashMap<>();
-        messageDetails.put("msg-id", message.getMsgId());
-        messageDetails.put("version", message.getVersion());
-        messageDetails.put("status", message.getStatus());
-        messageDetails.put("origin", message.getOrigin());
-        messageDetails.put("created", message.getCreated());
-        messageDetails.put("changed", message.getChanged());
-        messageDetails.put("subject", message.getSubject());
-        messageDetails.put("message", message.getMessage());
-
-        LOGGER.log(Level.getLevel("STAR_INFO"),"Message with ID '{}' retrieved successfully", msgId);
-
-        Map<String, Object> response = new LinkedHashMap<>();
-        response.put("star", star);
-        response.put("totalResults", 1);
-        response.put("messages", List.of(messageDetails));
-
-        return ResponseEntity.ok(response);
+        // The full view of the message, a deleted one only shows its id and status
+        SerializableString fragment = fragmentCache.get(message, "full");
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = JSON_FACTORY.createGenerator(outputStream)) {
+                generator.writeStartObject();
+                generator.writeStringField("star", star);
+                generator.writeNumberField("totalResults", 1);
+                generator.writeArrayFieldStart("messages");
+                generator.writeRawValue(fragment);
+                generator.writeEndArray();
+                generator.writeEndObject();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
     }
 
     /**
@@ -676,4 +1396,245 @@ public class MessageService {
                     .body(Map.of("error", "Failed to forward request to SOL"));
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * searches the subjects of the active messages or forwards this request to the sol
+     * @param star requester
+     * @param query words to search for
+     * @param limit maximum number of hits, null for the default
+     * @return response entity of the ranked messages in the header view or the error
+     */
+    public ResponseEntity<?> searchMessages(String star, String query, Integer limit) {
+        LOGGER.log(Level.getLevel("STAR_DEBUG"), "Received request to search messages for '{}', limit: {}", query, limit);
+
+        // Validate the STAR-UUID
+        if (!ApplicationState.getSolStarUuid().equals(star)) {
+            LOGGER.warn("STAR-UUID mismatch: Received {}, expected {}", star, ApplicationState.getSolStarUuid());
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "401 unauthorized"));
+        }
+        if (query == null || query.isBlank()) {
+            LOGGER.warn("Empty search query");
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("error", "400 empty query"));
+        }
+        if (limit != null && limit < 1) {
+            LOGGER.warn("Invalid limit {}", limit);
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("error", "400 invalid limit"));
+        }
+        int maxHits = limit == null ? DEFAULT_SEARCH_LIMIT : Math.min(limit, MAX_BATCH_SIZE);
+
+        if (ApplicationState.getCurrentRole() != NodeRole.SOL) {
+            String endpointUrl = String.format("http://%s:%d/vs/v1/messages/search?star=%s&q=%s&limit=%d",
+                    ApplicationState.getSolIp().getHostAddress(), ApplicationState.getSolPort(), star,
+                    URLEncoder.encode(query, StandardCharsets.UTF_8), maxHits);
+            return passThroughFromSol(endpointUrl, null);
+        }
+
+        List<SubjectIndex.Hit> hits = subjectIndex.search(query, maxHits);
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = JSON_FACTORY.createGenerator(outputStream)) {
+                generator.writeStartObject();
+                generator.writeStringField("star", star);
+                generator.writeStringField("query", query);
+                generator.writeArrayFieldStart("messages");
+                int written = 0;
+                for (SubjectIndex.Hit hit : hits) {
+                    // Deleted after the search, its index entry is already gone
+                    Message message = messageRepository.findHeaderById(hit.msgId());
+                    if (message != null && "active".equals(message.getStatus())) {
+                        generator.writeRawValue(fragmentCache.get(message, "header"));
+                        written++;
+                    }
+                }
+                generator.writeEndArray();
+                generator.writeNumberField("totalResults", written);
+                generator.writeEndObject();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    /**
+     * subscribes to the change feed of the messages (message-created, message-deleted).
+     * the sol serves the feed itself, a component relays the feed of its sol
+     * @param star star UUID for validation
+     * @param lastEventId id of the last event the client received, the missed changes are replayed first
+     * @return response entity with the event stream or the error
+     */
+    public ResponseEntity<SseEmitter> subscribeToChanges(String star, String lastEventId) {
+        if (!ApplicationState.getIsReady()) {
+            LOGGER.warn("Service unavailable");
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        if (!ApplicationState.getSolStarUuid().equals(star)) {
+            LOGGER.warn("STAR-UUID mismatch: Received {}, expected {}", star, ApplicationState.getSolStarUuid());
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+
+        if (ApplicationState.getCurrentRole() != NodeRole.SOL) {
+            // The sol may change while the relay runs, so its address is looked up on every reconnect
+            return ResponseEntity.ok(changeFeed.subscribeRelayed(() -> String.format("http://%s:%d/vs/v2/messages/stream?star=%s",
+                    ApplicationState.getSolIp().getHostAddress(), ApplicationState.getSolPort(),
+                    ApplicationState.getSolStarUuid()), lastEventId));
+        }
+
+        MessageIndex.ChangeKey after = lastEventId == null ? null : decodeCursor(lastEventId);
+        if (after == null) {
+            return ResponseEntity.ok(changeFeed.subscribe());
+        }
+        // Replayed by the feed once the response has started, a change published meanwhile may arrive twice
+        return ResponseEntity.ok(changeFeed.subscribe(sink -> replayChanges(after, sink)));
+    }
+
+    /**
+     * sends the changes after a position to a resuming client, at most {@link #MAX_REPLAYED_CHANGES}.
+     * a client that missed more gets a resync event instead of the rest and fetches the message list again
+     * @param after last position the client received
+     * @param sink client to send to
+     */
+    void replayChanges(MessageIndex.ChangeKey after, MessageChangeFeed.ReplaySink sink) {
+        int replayed = 0;
+        for (MessageIndex.ChangeKey key : messageRepository.findChangedFrom(after, false)) {
+            Message message = messageRepository.findHeaderById(key.msgId());
+            if (message == null || message.getChanged() != key.changed()) {
+                continue; // Changed again, replayed at its newer position
+            }
+            if (replayed == MAX_REPLAYED_CHANGES) {
+                sink.send(MessageChangeFeed.RESYNC, null, Map.of("replayed", replayed));
+                return;
+            }
+            String eventType = "deleted".equals(message.getStatus())
+                    ? MessageChangeFeed.MESSAGE_DELETED : MessageChangeFeed.MESSAGE_CREATED;
+            if (!sink.send(eventType, encodeCursor(key), toChangeEvent(message))) {
+                return; // The client went away
+            }
+            replayed++;
+        }
+    }
+
+    /**
+     * picks up a message restored from a persistent store or a snapshot
+     * @param message restored message
+     */
+    public void restoreMessage(Message message) {
+        scheduleExpiry(message);
+        if (!"deleted".equals(message.getStatus())) {
+            subjectIndex.add(message.getMsgId(), message.getSubject());
+        }
+    }
+
+    /**
+     * schedules the expiry of a stored message that has one and is not deleted yet
+     * @param message stored message
+     */
+    private void scheduleExpiry(Message message) {
+        if (message.getExpires() != null && !"deleted".equals(message.getStatus())) {
+            expiryScheduler.schedule(message.getMsgId(), message.getExpires());
+        }
+    }
+
+    /**
+     * turns an expired message into a tombstone, like a delete.
+     * peers expire their copy on their own as the expiry is forwarded with the message
+     * @param msgId expired message
+     * @param expires expiry the message was scheduled for
+     */
+    private void expireMessage(String msgId, long expires) {
+        long currentTime = Instant.now().getEpochSecond();
+        Message expired = messageRepository.update(msgId, message -> {
+            // Deleted meanwhile or no longer the expiry that was scheduled
+            if ("deleted".equals(message.getStatus()) || message.getExpires() == null || message.getExpires() != expires) {
+                return null;
+            }
+            message.setStatus("deleted");
+            message.setChanged(currentTime);
+            message.setMessage("");
+            return message;
+        });
+        if (expired != null) {
+            subjectIndex.remove(msgId, expired.getSubject());
+            fragmentCache.invalidate(msgId);
+            deliveryPipeline.finish(msgId);
+            publishChange(MessageChangeFeed.MESSAGE_DELETED, expired);
+            LOGGER.log(Level.getLevel("STAR_INFO"), "Message with ID '{}' expired.", msgId);
+        }
+    }
+
+    /**
+     * publishes a change of the store to the subscribers of the change feed
+     */
+    private void publishChange(String eventType, Message message) {
+        changeFeed.publish(eventType, encodeCursor(new MessageIndex.ChangeKey(message.getChanged(), message.getMsgId())),
+                toChangeEvent(message));
+    }
+
+    /**
+     * @return payload of a change event, the header view of the message
+     */
+    private static Map<String, Object> toChangeEvent(Message message) {
+        Map<String, Object> event = new LinkedHashMap<>();
+        event.put("msg-id", message.getMsgId());
+        event.put("status", message.getStatus());
+        event.put("origin", message.getOrigin());
+        event.put("created", message.getCreated());
+        event.put("changed", message.getChanged());
+        if (!"deleted".equals(message.getStatus())) {
+            event.put("subject", message.getSubject());
+        }
+        return event;
+    }
+
+    /**
+     * gets the delivery state of a message or forwards this request to the sol
+     * @param msgId identifier of msg
+     * @param star requester
+     * @return response entity of the delivery state or the error
+     */
+    public ResponseEntity<?> getDeliveryStatus(String msgId, String star) {
+        LOGGER.log(Level.getLevel("STAR_DEBUG"), "Fetching delivery status of message with ID '{}' for star '{}'", msgId, star);
+
+        // Validate the STAR-UUID
+        if (!ApplicationState.getSolStarUuid().equals(star)) {
+            LOGGER.warn("STAR-UUID mismatch: Received {}, expected {}", star, ApplicationState.getSolStarUuid());
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "401 unauthorized"));
+        }
+
+        if (ApplicationState.getCurrentRole() != NodeRole.SOL) {
+            return forwardDeliveryStatusRequestToSol(msgId, star);
+        }
+
+        DeliveryStatus status = deliveryPipeline.getStatus(msgId);
+        if (status == null) {
+            Message message = messageRepository.findHeaderById(msgId);
+            if (message == null) {
+                LOGGER.warn("Message with ID '{}' not found", msgId);
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "404 does not exist"));
+            }
+            // Not delivered by the pipeline, so either delivered synchronously or received from another star
+            status = new DeliveryStatus(msgId, DeliveryState.STORED, message.getCreated());
+        }
+        return ResponseEntity.ok(status);
+    }
+
+    /**
+     * Forwards the delivery status request to the sol if the current role is not sol.
+     *
+     * @param msgId The message ID to fetch the state for.
+     * @param star  The STAR-UUID of the request.
+     * @return ResponseEntity containing the forwarded response or an error response.
+     */
+    private ResponseEntity<?> forwardDeliveryStatusRequestToSol(String msgId, String star) {
+        String solEndpointUrl = "http://" + ApplicationState.getSolIp().getHostAddress() + ":" + ApplicationState.getSolPort() + "/vs/v2/messages/" + msgId + "/status?star=" + star;
+
+        try {
+            HttpResponse<String> response = HttpHandler.sendGetRequest(solEndpointUrl);
+
+            ObjectMapper objectMapper = new ObjectMapper();
+            JsonNode jsonResponse = objectMapper.readTree(response.body());
+            return ResponseEntity.status(response.statusCode()).body(jsonResponse);
+        } catch (Exception e) {
+            LOGGER.error("Error forwarding request to SOL: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Failed to forward request to SOL"));
+        }
+    }
+}
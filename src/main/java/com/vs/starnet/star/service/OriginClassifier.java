@@ -0,0 +1,112 @@
+package com.vs.starnet.star.service;
+
+import com.vs.starnet.star.constants.OriginType;
+import org.apache.commons.validator.routines.EmailValidator;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * classifies the origin of a message in one pass over its characters, without exceptions and regular expressions.
+ * an origin is a COM-UUID or an EMAIL, optionally followed by ":" and the STAR-UUID of the star it came from.
+ * only addresses that look like an email address are checked by the full validator, its results are cached
+ * as the same senders write again and again
+ */
+@Component
+public class OriginClassifier {
+    private static final int EMAIL_CACHE_CAPACITY = 4096; // Recently validated email addresses
+
+    /**
+     * parsed origin
+     * @param type kind of the origin
+     * @param id COM-UUID or EMAIL without the star suffix
+     * @param star STAR-UUID of the suffix or null if the origin has none
+     */
+    public record Origin(OriginType type, String id, String star) {
+        public boolean isValid() {
+            return type != OriginType.INVALID;
+        }
+    }
+
+    private final EmailValidator emailValidator = EmailValidator.getInstance();
+    private final ConcurrentHashMap<String, Boolean> validEmails = new ConcurrentHashMap<>();
+
+    /**
+     * @param origin origin of a message, may be null
+     * @return classified origin, INVALID for null and empty origins
+     */
+    public Origin classify(String origin) {
+        if (origin == null || origin.isEmpty()) {
+            return new Origin(OriginType.INVALID, origin, null);
+        }
+        int length = origin.length();
+        int separator = -1;
+        int digits = 0;
+        int at = -1;
+        int lastDot = -1;
+        for (int i = 0; i < length; i++) {
+            char c = origin.charAt(i);
+            if (c == ':') {
+                separator = i;
+                break;
+            }
+            if (c >= '0' && c <= '9') {
+                digits++;
+            } else if (c == '@') {
+                at = i;
+            } else if (c == '.') {
+                lastDot = i;
+            }
+        }
+        int idLength = separator < 0 ? length : separator;
+        String id = separator < 0 ? origin : origin.substring(0, separator);
+        String star = separator < 0 ? null : starOf(origin, separator);
+
+        // Four digits without leading zero is the range 1000-9999
+        if (digits == idLength && idLength == 4 && origin.charAt(0) != '0') {
+            return new Origin(OriginType.COM_UUID, id, star);
+        }
+        // Something before the last "@" and a dot inside the domain after it, anything else cannot be an email address
+        if (at > 0 && lastDot > at + 1 && lastDot < idLength - 1 && isEmailAddress(id)) {
+            return new Origin(OriginType.EMAIL, id, star);
+        }
+        return new Origin(OriginType.INVALID, id, star);
+    }
+
+    /**
+     * @param value origin or msg-id with a star suffix
+     * @return STAR-UUID after the first ":" up to the next one, null if there is none
+     */
+    public static String starOf(String value) {
+        int separator = value == null ? -1 : value.indexOf(':');
+        return separator < 0 ? null : starOf(value, separator);
+    }
+
+    private static String starOf(String value, int separator) {
+        int end = value.indexOf(':', separator + 1);
+        return value.substring(separator + 1, end < 0 ? value.length() : end);
+    }
+
+    /**
+     * @return number of cached email addresses
+     */
+    public int getCachedEmailCount() {
+        return validEmails.size();
+    }
+
+    private boolean isEmailAddress(String address) {
+        Boolean valid = validEmails.get(address);
+        if (valid == null) {
+            valid = emailValidator.isValid(address);
+            validEmails.put(address, valid);
+            // Drops arbitrary addresses over the capacity, they are validated again on their next message
+            Iterator<String> addresses = validEmails.keySet().iterator();
+            while (validEmails.size() > EMAIL_CACHE_CAPACITY && addresses.hasNext()) {
+                addresses.next();
+                addresses.remove();
+            }
+        }
+        return valid;
+    }
+}
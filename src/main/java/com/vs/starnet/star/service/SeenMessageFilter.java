@@ -0,0 +1,172 @@
+package com.vs.starnet.star.service;
+
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * remembers msg-ids that already passed through this node
+ * so duplicate and looping deliveries between stars can be dropped
+ * before they are validated, stored and forwarded again.
+ * combines a small exact lru of the most recent ids with two rotating bloom filter generations
+ * -> memory stays bounded no matter how long the sol runs
+ */
+@Component
+public class SeenMessageFilter {
+    private static final int LRU_CAPACITY = 4096; // exact entries for the most recent msg-ids
+    private static final int BLOOM_BITS = 1 << 20; // bits per generation (128 KiB)
+    private static final int BLOOM_HASHES = 4; // probes per msg-id
+    private static final int GENERATION_CAPACITY = 100_000; // insertions before the generations rotate
+
+    private final Map<String, Boolean> recent = Collections.synchronizedMap(new LinkedHashMap<>(LRU_CAPACITY, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > LRU_CAPACITY;
+        }
+    });
+    private volatile AtomicLongArray currentGeneration = new AtomicLongArray(BLOOM_BITS / Long.SIZE);
+    private volatile AtomicLongArray previousGeneration = new AtomicLongArray(BLOOM_BITS / Long.SIZE);
+    private final AtomicInteger currentInsertions = new AtomicInteger(0);
+
+    // Counters for the hit rates
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder recentHits = new LongAdder();
+    private final LongAdder bloomHits = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+
+    /**
+     * checks if a msg-id was already seen.
+     * an lru hit is exact, a bloom filter miss means the id is definitely new.
+     * a bloom filter hit is only a "maybe" and gets confirmed against the store
+     * @param msgId id to check
+     * @param stored lookup in the message store to confirm bloom filter hits
+     * @return true if the message is a duplicate
+     */
+    public boolean isDuplicate(String msgId, Predicate<String> stored) {
+        if (msgId == null || msgId.isEmpty()) {
+            return false;
+        }
+        lookups.increment();
+
+        if (recent.containsKey(msgId)) {
+            recentHits.increment();
+            return true;
+        }
+
+        long hash = hash(msgId);
+        if (!mightContain(currentGeneration, hash) && !mightContain(previousGeneration, hash)) {
+            return false;
+        }
+
+        bloomHits.increment();
+        if (stored.test(msgId)) {
+            recent.put(msgId, Boolean.TRUE);
+            return true;
+        }
+        falsePositives.increment();
+        return false;
+    }
+
+    /**
+     * remembers a msg-id after the message was stored
+     * @param msgId id to remember
+     */
+    public void markSeen(String msgId) {
+        if (msgId == null || msgId.isEmpty()) {
+            return;
+        }
+        recent.put(msgId, Boolean.TRUE);
+        put(currentGeneration, hash(msgId));
+
+        if (currentInsertions.incrementAndGet() >= GENERATION_CAPACITY) {
+            rotate();
+        }
+    }
+
+    /**
+     * gets the current hit rates of the filter
+     * @return map containing counters and rates
+     */
+    public Map<String, Object> getStatistics() {
+        long total = lookups.sum();
+        long duplicates = recentHits.sum() + bloomHits.sum() - falsePositives.sum();
+
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("lookups", total);
+        statistics.put("duplicates", duplicates);
+        statistics.put("lru-hits", recentHits.sum());
+        statistics.put("bloom-hits", bloomHits.sum());
+        statistics.put("bloom-false-positives", falsePositives.sum());
+        statistics.put("hit-rate", total == 0 ? 0.0 : (double) duplicates / total);
+        statistics.put("false-positive-rate", bloomHits.sum() == 0 ? 0.0 : (double) falsePositives.sum() / bloomHits.sum());
+        statistics.put("lru-size", recent.size());
+        return statistics;
+    }
+
+    /**
+     * forgets all msg-ids and resets the counters
+     */
+    public synchronized void clear() {
+        recent.clear();
+        currentGeneration = new AtomicLongArray(BLOOM_BITS / Long.SIZE);
+        previousGeneration = new AtomicLongArray(BLOOM_BITS / Long.SIZE);
+        currentInsertions.set(0);
+        lookups.reset();
+        recentHits.reset();
+        bloomHits.reset();
+        falsePositives.reset();
+    }
+
+    /**
+     * drops the oldest generation and starts a new empty one
+     */
+    private synchronized void rotate() {
+        if (currentInsertions.get() < GENERATION_CAPACITY) {
+            return; // Another thread rotated already
+        }
+        previousGeneration = currentGeneration;
+        currentGeneration = new AtomicLongArray(BLOOM_BITS / Long.SIZE);
+        currentInsertions.set(0);
+    }
+
+    private static boolean mightContain(AtomicLongArray bits, long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < BLOOM_HASHES; i++) {
+            int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % BLOOM_BITS;
+            if ((bits.get(bit >>> 6) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void put(AtomicLongArray bits, long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < BLOOM_HASHES; i++) {
+            int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % BLOOM_BITS;
+            long mask = 1L << bit;
+            bits.accumulateAndGet(bit >>> 6, mask, (current, m) -> current | m);
+        }
+    }
+
+    /**
+     * 64 bit FNV-1a hash of the msg-id, split into two 32 bit hashes for double hashing
+     */
+    private static long hash(String msgId) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : msgId.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,330 @@
+package com.vs.starnet.star.service;
+
+import com.vs.starnet.star.constants.NodeRole;
+import com.vs.starnet.star.model.Component;
+import com.vs.starnet.star.model.Message;
+import com.vs.starnet.star.model.Sol;
+import com.vs.starnet.star.repository.MessageCodec;
+import com.vs.starnet.star.repository.MessageRepository;
+import com.vs.starnet.star.repository.SolRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * writes a point-in-time snapshot of the sol state to a binary file and restores it when the star starts as sol again.
+ * the snapshot holds the identity of the sol (COM-UUID and so the STAR-UUID), the registered components,
+ * the known stars and, unless the message store keeps them by itself, the messages.
+ * registrations then survive a quick restart and the components do not have to register again all at once
+ */
+@Service
+public class SnapshotService {
+    static final Logger LOGGER = LogManager.getRootLogger();
+    private static final int MAGIC = 0x534E4150; // "SNAP"
+    private static final byte FORMAT_VERSION = 1;
+
+    private final SolRepository solRepository;
+    private final MessageRepository messageRepository;
+    private final MessageService messageService;
+    private final Path snapshotFile;
+    private final long intervalMillis;
+    private final long maxAgeMillis;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * state read from a snapshot file
+     */
+    public record Snapshot(long written, String groupId, String ip, int port, String comUuid, String starUuid,
+                           List<Component> components, List<Component> inactiveComponents,
+                           List<Sol> sols, List<Sol> inactiveSols, List<Message> messages) {
+    }
+
+    @Autowired
+    public SnapshotService(SolRepository solRepository, MessageRepository messageRepository, MessageService messageService,
+                           @Value("${star.store.dir:data}") String storeDir,
+                           @Value("${server.port:8080}") int port,
+                           @Value("${star.snapshot.interval-ms:30000}") long intervalMillis,
+                           @Value("${star.snapshot.max-age-ms:300000}") long maxAgeMillis) {
+        this.solRepository = solRepository;
+        this.messageRepository = messageRepository;
+        this.messageService = messageService;
+        this.snapshotFile = Path.of(storeDir).resolve("snapshot-" + port + ".bin");
+        this.intervalMillis = intervalMillis;
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    /**
+     * starts writing snapshots periodically, an interval of 0 or less turns it off
+     */
+    @PostConstruct
+    public void startPeriodicSnapshots() {
+        if (intervalMillis <= 0) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sol-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            if (ApplicationState.getCurrentRole() == NodeRole.SOL && ApplicationState.getIsReady()) {
+                writeSnapshot();
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * writes the current sol state, the file is replaced atomically so a crash never leaves half a snapshot
+     * @return true if the snapshot was written
+     */
+    public synchronized boolean writeSnapshot() {
+        long start = System.nanoTime();
+        Path temporary = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(snapshotFile.toAbsolutePath().getParent());
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                out.writeInt(MAGIC);
+                out.writeByte(FORMAT_VERSION);
+                out.writeLong(System.currentTimeMillis());
+                writeString(out, ApplicationState.getGroupId());
+                writeString(out, ApplicationState.getIp() == null ? null : ApplicationState.getIp().getHostAddress());
+                out.writeInt(ApplicationState.getPort());
+                writeString(out, ApplicationState.getComUuid());
+                writeString(out, ApplicationState.getStarUuid());
+                writeComponents(out, StarService.getComponents());
+                writeComponents(out, StarService.getInactiveComponents());
+                writeSols(out, solRepository.findAll());
+                writeSols(out, solRepository.findAllInactive());
+
+                // A durable store restores its messages by itself
+                boolean withMessages = !messageRepository.isDurable();
+                out.writeBoolean(withMessages);
+                if (withMessages) {
+                    List<Message> messages = new ArrayList<>(messageRepository.findAll().values());
+                    out.writeInt(messages.size());
+                    for (Message message : messages) {
+                        byte[] encoded = MessageCodec.encode(message);
+                        out.writeInt(encoded.length);
+                        out.write(encoded);
+                    }
+                }
+            }
+            Files.move(temporary, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            LOGGER.log(Level.getLevel("STAR_DEBUG"), "Snapshot {} written in {} ms.", snapshotFile, (System.nanoTime() - start) / 1_000_000);
+            return true;
+        } catch (IOException e) {
+            LOGGER.error("Failed to write snapshot {}: {}", snapshotFile, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * reads the snapshot file if it belongs to this star and is recent enough to be trusted
+     * @return snapshot or null if there is none or it is unusable
+     */
+    public Snapshot loadSnapshot() {
+        if (!Files.exists(snapshotFile)) {
+            return null;
+        }
+        Snapshot snapshot;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotFile)))) {
+            if (in.readInt() != MAGIC || in.readByte() != FORMAT_VERSION) {
+                LOGGER.warn("Snapshot {} has an unknown format, ignored.", snapshotFile);
+                return null;
+            }
+            long written = in.readLong();
+            String groupId = readString(in);
+            String ip = readString(in);
+            int port = in.readInt();
+            String comUuid = readString(in);
+            String starUuid = readString(in);
+            List<Component> components = readComponents(in);
+            List<Component> inactiveComponents = readComponents(in);
+            List<Sol> sols = readSols(in);
+            List<Sol> inactiveSols = readSols(in);
+            List<Message> messages = new ArrayList<>();
+            if (in.readBoolean()) {
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    byte[] encoded = new byte[in.readInt()];
+                    in.readFully(encoded);
+                    messages.add(MessageCodec.decode(encoded));
+                }
+            }
+            snapshot = new Snapshot(written, groupId, ip, port, comUuid, starUuid,
+                    components, inactiveComponents, sols, inactiveSols, messages);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Snapshot {} could not be read, ignored: {}", snapshotFile, e.getMessage());
+            return null;
+        }
+
+        // The STAR-UUID is derived from ip, group and COM-UUID, registrations of another address are worthless
+        String currentIp = ApplicationState.getIp() == null ? null : ApplicationState.getIp().getHostAddress();
+        if (!String.valueOf(snapshot.groupId()).equals(String.valueOf(ApplicationState.getGroupId()))
+                || !String.valueOf(snapshot.ip()).equals(String.valueOf(currentIp))
+                || snapshot.port() != ApplicationState.getPort()) {
+            LOGGER.warn("Snapshot {} belongs to another star, ignored.", snapshotFile);
+            return null;
+        }
+        long age = System.currentTimeMillis() - snapshot.written();
+        if (age > maxAgeMillis) {
+            LOGGER.log(Level.getLevel("STAR_INFO"), "Snapshot {} is {} s old, components have given up on this sol, ignored.",
+                    snapshotFile, age / 1000);
+            return null;
+        }
+        return snapshot;
+    }
+
+    /**
+     * takes over the COM-UUID of the snapshot, must happen before the star is initialized as sol
+     * so the same STAR-UUID is generated again
+     * @param snapshot loaded snapshot
+     */
+    public void restoreIdentity(Snapshot snapshot) {
+        ApplicationState.setComUuid(snapshot.comUuid());
+    }
+
+    /**
+     * puts components, stars and messages of the snapshot back, entries created since the start are kept
+     * @param snapshot loaded snapshot
+     */
+    public void restore(Snapshot snapshot) {
+        long start = System.nanoTime();
+        Map<String, Component> components = StarService.getComponents();
+        for (Component component : snapshot.components()) {
+            if ("left".equals(component.getStatus()) || "disconnected".equals(component.getStatus())) {
+                // Told to leave before the snapshot was written, e.g. on EXIT, they register again by themselves
+                StarService.getInactiveComponents().putIfAbsent(component.getComUuid(), component);
+                continue;
+            }
+            // The health monitoring checks them again after its usual timeout
+            component.setLastInteractionTime(new AtomicReference<>(Instant.now()));
+            components.putIfAbsent(component.getComUuid(), component);
+        }
+        for (Component component : snapshot.inactiveComponents()) {
+            StarService.getInactiveComponents().putIfAbsent(component.getComUuid(), component);
+        }
+        for (Sol sol : snapshot.sols()) {
+            if (!solRepository.existsById(sol.getSolStarUuid())) {
+                solRepository.save(sol.getSolStarUuid(), sol);
+            }
+        }
+        for (Sol sol : snapshot.inactiveSols()) {
+            solRepository.saveInactiveIfAbsent(sol.getSolStarUuid(), sol);
+        }
+        for (Message message : snapshot.messages()) {
+            if (messageRepository.saveIfAbsent(message.getMsgId(), message)) {
+                messageService.restoreMessage(message);
+            }
+        }
+        if (!snapshot.messages().isEmpty()) {
+            messageService.restoreNonce();
+        }
+        LOGGER.log(Level.getLevel("STAR_INFO"), "Snapshot restored in {} ms: {} components, {} stars, {} messages.",
+                (System.nanoTime() - start) / 1_000_000, snapshot.components().size(), snapshot.sols().size(), snapshot.messages().size());
+    }
+
+    private static void writeComponents(DataOutputStream out, Map<String, Component> components) throws IOException {
+        List<Component> copy = new ArrayList<>(components.values());
+        out.writeInt(copy.size());
+        for (Component component : copy) {
+            writeString(out, component.getSolStarUuid());
+            writeString(out, component.getSolComUuid());
+            writeString(out, component.getComUuid());
+            writeString(out, component.getComIp());
+            out.writeInt(component.getComPort());
+            writeString(out, component.getStatus());
+            out.writeLong(component.getIntegrationTime() == null ? -1 : component.getIntegrationTime().toEpochMilli());
+        }
+    }
+
+    private static List<Component> readComponents(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        List<Component> components = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Component.ComponentBuilder builder = Component.builder()
+                    .solStarUuid(readString(in))
+                    .solComUuid(readString(in))
+                    .comUuid(readString(in))
+                    .comIp(readString(in))
+                    .comPort(in.readInt())
+                    .status(readString(in));
+            long integrationTime = in.readLong();
+            components.add(builder.integrationTime(integrationTime < 0 ? null : Instant.ofEpochMilli(integrationTime)).build());
+        }
+        return components;
+    }
+
+    private static void writeSols(DataOutputStream out, Map<String, Sol> sols) throws IOException {
+        List<Sol> copy = new ArrayList<>(sols.values());
+        out.writeInt(copy.size());
+        for (Sol sol : copy) {
+            writeString(out, sol.getSolStarUuid());
+            writeString(out, sol.getSolUuid());
+            writeString(out, sol.getComIp());
+            out.writeInt(sol.getComPort());
+            out.writeInt(sol.getNoCom());
+            writeString(out, sol.getStatus());
+            out.writeLong(sol.getDeregistrationTime() == null ? -1 : sol.getDeregistrationTime().toEpochMilli());
+        }
+    }
+
+    private static List<Sol> readSols(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        List<Sol> sols = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Sol sol = Sol.builder()
+                    .solStarUuid(readString(in))
+                    .solUuid(readString(in))
+                    .comIp(readString(in))
+                    .comPort(in.readInt())
+                    .noCom(in.readInt())
+                    .status(readString(in))
+                    .build();
+            long deregistrationTime = in.readLong();
+            sol.setDeregistrationTime(deregistrationTime < 0 ? null : Instant.ofEpochMilli(deregistrationTime));
+            sols.add(sol);
+        }
+        return sols;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
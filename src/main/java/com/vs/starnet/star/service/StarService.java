@@ -4,7 +4,6 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.vs.starnet.star.constants.NodeRole;
 import com.vs.starnet.star.model.Component;
-import com.vs.starnet.star.model.Message;
 import com.vs.starnet.star.network.HttpHandler;
 import jakarta.servlet.http.HttpServletRequest;
 import org.apache.logging.log4j.Level;
@@ -21,7 +20,6 @@ import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
@@ -34,8 +32,6 @@ public class StarService {
     private static final int TIMEOUT_THRESHOLD = 60; // 60 seconds (to trigger GET request)
     private static final ConcurrentHashMap<String, Component> components = new ConcurrentHashMap<>(); // Active components
     private static final ConcurrentHashMap<String, Component> inactiveComponents = new ConcurrentHashMap<>(); // Inactive components
-    private static final ConcurrentHashMap<String, Message> messages = new ConcurrentHashMap<>(); // Stored messages
-    private static final AtomicInteger nonce = new AtomicInteger(1); // Counter for generating MSG-UUID
 
     /**
      * Initialize the service as SOL.
@@ -422,7 +418,14 @@ public class StarService {
                 LOGGER.error("Failed to deregister component {} after multiple attempts.", component.getComUuid());
             }
         }
-        LOGGER.log(Level.getLevel("STAR_INFO"), "All active components have been processed. Shutting down SOL...");
+        LOGGER.log(Level.getLevel("STAR_INFO"), "All active components have been processed.");
+    }
+
+    /**
+     * ends the sol once its components were deregistered
+     */
+    public void exitSol() {
+        LOGGER.log(Level.getLevel("STAR_INFO"), "Shutting down SOL...");
         System.exit(1);
     }
 
@@ -0,0 +1,127 @@
+package com.vs.starnet.star.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * inverted index over the words of the message subjects.
+ * every word points to the msg-ids whose subject contains it, so a search only touches the postings of its words
+ * instead of scanning the whole store. kept up to date when messages are created and deleted
+ */
+@Component
+public class SubjectIndex {
+    private static final int MAX_TOKEN_LENGTH = 64; // Longer words are cut, they are rarely searched for in full
+
+    /**
+     * msg-id found by a search and its relevance
+     * @param msgId MSG-UUID
+     * @param score sum of the weights of the matched words, rarer words weigh more
+     */
+    public record Hit(String msgId, double score) {
+    }
+
+    private final ConcurrentHashMap<String, Set<String>> postings = new ConcurrentHashMap<>();
+    private final AtomicInteger documents = new AtomicInteger();
+
+    /**
+     * @param msgId stored message
+     * @param subject subject of the message, may be null
+     */
+    public void add(String msgId, String subject) {
+        List<String> tokens = tokenize(subject);
+        for (String token : tokens) {
+            // Added inside compute so a concurrent remove cannot drop the posting list in between
+            postings.compute(token, (key, ids) -> {
+                Set<String> postingList = ids == null ? ConcurrentHashMap.newKeySet() : ids;
+                postingList.add(msgId);
+                return postingList;
+            });
+        }
+        if (!tokens.isEmpty()) {
+            documents.incrementAndGet();
+        }
+    }
+
+    /**
+     * @param msgId deleted message
+     * @param subject subject the message was indexed with
+     */
+    public void remove(String msgId, String subject) {
+        List<String> tokens = tokenize(subject);
+        for (String token : tokens) {
+            // Drops the posting list once it is empty so words of deleted messages do not pile up
+            postings.computeIfPresent(token, (key, ids) -> {
+                ids.remove(msgId);
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+        if (!tokens.isEmpty()) {
+            documents.decrementAndGet();
+        }
+    }
+
+    /**
+     * ranks the messages by the words of the query they contain, weighted by the inverse document frequency
+     * @param query words to search for
+     * @param limit maximum number of hits
+     * @return hits with the best score first, equal scores ordered by msg-id
+     */
+    public List<Hit> search(String query, int limit) {
+        int total = Math.max(documents.get(), 1);
+        Map<String, Double> scores = new HashMap<>();
+        for (String token : tokenize(query)) {
+            Set<String> ids = postings.get(token);
+            if (ids == null || ids.isEmpty()) {
+                continue;
+            }
+            double weight = Math.log(1 + (double) total / ids.size());
+            for (String msgId : ids) {
+                scores.merge(msgId, weight, Double::sum);
+            }
+        }
+        List<Hit> hits = new ArrayList<>(scores.size());
+        scores.forEach((msgId, score) -> hits.add(new Hit(msgId, score)));
+        hits.sort(Comparator.comparingDouble(Hit::score).reversed().thenComparing(Hit::msgId));
+        return hits.size() > limit ? hits.subList(0, limit) : hits;
+    }
+
+    /**
+     * @return number of distinct indexed words
+     */
+    public int getTokenCount() {
+        return postings.size();
+    }
+
+    /**
+     * splits a text into lower case words of letters and digits, every word once
+     * @param text text to split, may be null
+     * @return distinct words in the order they appear
+     */
+    static List<String> tokenize(String text) {
+        if (text == null || text.isEmpty()) {
+            return List.of();
+        }
+        Set<String> tokens = new LinkedHashSet<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(text.substring(start, Math.min(i, start + MAX_TOKEN_LENGTH)).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return List.copyOf(tokens);
+    }
+}
@@ -0,0 +1,118 @@
+package com.vs.starnet.star.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * hashed hierarchical timing wheel with one second ticks.
+ * level 0 has a slot per second of the next 64 seconds, every higher level covers 64 times the span of the one below.
+ * scheduling and firing are O(1), entries of a higher level are cascaded down when its slot comes around,
+ * so no periodic scan over all scheduled entries is needed
+ * @param <T> scheduled value
+ */
+public class TimingWheel<T> {
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS; // Slots per level
+    private static final int LEVELS = 4; // 64^4 seconds (about 194 days), later deadlines are cascaded again
+
+    private record Entry<T>(long deadline, T value) {
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private final List<Entry<T>>[][] wheel = new List[LEVELS][SLOTS];
+    private long currentTick;
+    private int size;
+
+    /**
+     * @param startTick current time in seconds
+     */
+    public TimingWheel(long startTick) {
+        this.currentTick = startTick;
+    }
+
+    /**
+     * @param deadline time in seconds the value is due at, a past deadline is due on the next tick
+     * @param value value to return when it is due
+     */
+    public synchronized void schedule(long deadline, T value) {
+        place(new Entry<>(Math.max(deadline, currentTick + 1), value));
+        size++;
+    }
+
+    /**
+     * moves the wheel forward to the given time
+     * @param now current time in seconds
+     * @return values that became due, in the order of their deadlines
+     */
+    public synchronized List<T> advance(long now) {
+        List<T> due = new ArrayList<>();
+        while (currentTick < now) {
+            currentTick++;
+            // Higher levels first, their entries may end up in the level 0 slot of this tick
+            for (int level = LEVELS - 1; level > 0; level--) {
+                if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) == 0) {
+                    cascade(level, due);
+                }
+            }
+            List<Entry<T>> slot = takeSlot(0, (int) (currentTick & (SLOTS - 1)));
+            if (slot != null) {
+                slot.forEach(entry -> due.add(entry.value()));
+                size -= slot.size();
+            }
+        }
+        return due;
+    }
+
+    /**
+     * @return number of scheduled values
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    private void cascade(int level, List<T> due) {
+        List<Entry<T>> slot = takeSlot(level, (int) ((currentTick >>> (SLOT_BITS * level)) & (SLOTS - 1)));
+        if (slot == null) {
+            return;
+        }
+        for (Entry<T> entry : slot) {
+            if (entry.deadline() <= currentTick) {
+                due.add(entry.value());
+                size--;
+            } else {
+                place(entry);
+            }
+        }
+    }
+
+    /**
+     * puts an entry into the lowest level whose span reaches its deadline
+     */
+    private void place(Entry<T> entry) {
+        long delta = entry.deadline() - currentTick;
+        for (int level = 0; level < LEVELS; level++) {
+            if (delta < 1L << (SLOT_BITS * (level + 1))) {
+                addToSlot(level, (int) ((entry.deadline() >>> (SLOT_BITS * level)) & (SLOTS - 1)), entry);
+                return;
+            }
+        }
+        // Beyond the span of the wheel: park it in the last slot of the top level and place it again from there
+        int topShift = SLOT_BITS * (LEVELS - 1);
+        addToSlot(LEVELS - 1, (int) (((currentTick >>> topShift) + SLOTS - 1) & (SLOTS - 1)), entry);
+    }
+
+    private void addToSlot(int level, int index, Entry<T> entry) {
+        List<Entry<T>> slot = wheel[level][index];
+        if (slot == null) {
+            slot = new ArrayList<>();
+            wheel[level][index] = slot;
+        }
+        slot.add(entry);
+    }
+
+    private List<Entry<T>> takeSlot(int level, int index) {
+        List<Entry<T>> slot = wheel[level][index];
+        wheel[level][index] = null;
+        return slot;
+    }
+}
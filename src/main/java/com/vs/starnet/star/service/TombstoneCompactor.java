@@ -0,0 +1,146 @@
+package com.vs.starnet.star.service;
+
+import com.vs.starnet.star.model.Message;
+import com.vs.starnet.star.repository.MessageCodec;
+import com.vs.starnet.star.repository.MessageRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * removes deleted messages (tombstones) from the store once they are older than the retention.
+ * until then a tombstone keeps telling peers and pollers that the message was deleted,
+ * afterwards it only costs memory and slows down scans over all messages
+ */
+@Component
+public class TombstoneCompactor {
+    static final Logger LOGGER = LogManager.getRootLogger();
+
+    private final MessageRepository messageRepository;
+    private final long intervalMillis;
+    private final long retentionSeconds;
+    private final long compactedIdRetentionSeconds;
+    // Msg-ids of removed tombstones and the time of their removal, so late deliveries are not stored again
+    private final ConcurrentHashMap<String, Long> compactedIds = new ConcurrentHashMap<>();
+    private ScheduledExecutorService scheduler;
+
+    // Totals since the start
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong removedTombstones = new AtomicLong();
+    private final AtomicLong reclaimedBytes = new AtomicLong();
+    private final AtomicLong freedStorageBytes = new AtomicLong();
+
+    @Autowired
+    public TombstoneCompactor(MessageRepository messageRepository,
+                              @Value("${star.compaction.interval-ms:60000}") long intervalMillis,
+                              @Value("${star.compaction.tombstone-retention-s:3600}") long retentionSeconds,
+                              @Value("${star.compaction.compacted-id-retention-s:86400}") long compactedIdRetentionSeconds) {
+        this.messageRepository = messageRepository;
+        this.intervalMillis = intervalMillis;
+        this.retentionSeconds = retentionSeconds;
+        this.compactedIdRetentionSeconds = compactedIdRetentionSeconds;
+    }
+
+    /**
+     * @param msgId msg-id of a delivered message, may be null
+     * @return true if the message was deleted and its tombstone removed within the id retention
+     */
+    public boolean wasCompacted(String msgId) {
+        return msgId != null && compactedIds.containsKey(msgId);
+    }
+
+    /**
+     * starts the periodic compaction, an interval of 0 or less turns it off
+     */
+    @PostConstruct
+    public void startPeriodicCompaction() {
+        if (intervalMillis <= 0) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "tombstone-compaction");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                compact(Instant.now().getEpochSecond());
+            } catch (RuntimeException e) {
+                LOGGER.error("Tombstone compaction failed: {}", e.getMessage());
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * removes the tombstones deleted before the retention and keeps their msg-ids,
+     * then frees the storage of replaced and removed messages
+     * @param now current time in seconds, the unit of the changed timestamp
+     * @return number of removed tombstones
+     */
+    public int compact(long now) {
+        long cutoff = now - retentionSeconds;
+        int removed = 0;
+        long bytes = 0;
+        // Copied, the status index changes while the tombstones are removed
+        for (String msgId : List.copyOf(messageRepository.findIdsByStatus("deleted"))) {
+            // Checked again under the lock of the message, it may have changed since the index was read
+            Message tombstone = messageRepository.removeIf(msgId,
+                    message -> "deleted".equals(message.getStatus()) && message.getChanged() < cutoff);
+            if (tombstone != null) {
+                compactedIds.put(msgId, now);
+                removed++;
+                bytes += MessageCodec.encode(tombstone).length;
+            }
+        }
+        long idCutoff = now - compactedIdRetentionSeconds;
+        compactedIds.values().removeIf(removedAt -> removedAt < idCutoff);
+        long freed = messageRepository.compactStorage();
+        freedStorageBytes.addAndGet(freed);
+        runs.incrementAndGet();
+        if (freed > 0) {
+            LOGGER.log(Level.getLevel("STAR_DEBUG"), "Compaction freed {} bytes of message storage.", freed);
+        }
+        if (removed > 0) {
+            removedTombstones.addAndGet(removed);
+            reclaimedBytes.addAndGet(bytes);
+            LOGGER.log(Level.getLevel("STAR_INFO"), "Compaction removed {} tombstones older than {} s, about {} bytes reclaimed.",
+                    removed, retentionSeconds, bytes);
+        }
+        return removed;
+    }
+
+    /**
+     * @return totals of the compaction since the start
+     */
+    public Map<String, Long> getStatistics() {
+        Map<String, Long> statistics = new LinkedHashMap<>();
+        statistics.put("runs", runs.get());
+        statistics.put("removedTombstones", removedTombstones.get());
+        statistics.put("reclaimedBytes", reclaimedBytes.get());
+        statistics.put("compactedIds", (long) compactedIds.size());
+        statistics.put("freedStorageBytes", freedStorageBytes.get());
+        return statistics;
+    }
+}
@@ -4,6 +4,8 @@ import com.vs.starnet.star.constants.NodeRole;
 import com.vs.starnet.star.service.ApplicationState;
 import com.vs.starnet.star.service.ComponentService;
 import com.vs.starnet.star.service.GalaxyService;
+import com.vs.starnet.star.service.MessageService;
+import com.vs.starnet.star.service.SnapshotService;
 import com.vs.starnet.star.service.StarService;
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
@@ -26,11 +28,18 @@ public class CommandListener implements Runnable {
     private final StarService starService;
     @Autowired
     private final GalaxyService galaxyService;
+    @Autowired
+    private final MessageService messageService;
+    @Autowired
+    private final SnapshotService snapshotService;
 
-    public CommandListener(ComponentService componentService, StarService starService, GalaxyService galaxyService) {
+    public CommandListener(ComponentService componentService, StarService starService, GalaxyService galaxyService,
+                           MessageService messageService, SnapshotService snapshotService) {
         this.componentService = componentService;
         this.starService = starService;
         this.galaxyService = galaxyService;
+        this.messageService = messageService;
+        this.snapshotService = snapshotService;
     }
 
     /**
@@ -53,8 +62,14 @@ public class CommandListener implements Runnable {
                         LOGGER.error("Cannot exit the application. The component is not ready.");
                     }
                     break;
+                case "STATS":
+                    messageService.logStatistics();
+                    break;
+                case "MESSAGES":
+                    messageService.printAllMessages();
+                    break;
                 default:
-                    LOGGER.log(Level.getLevel("STAR_INFO"), "Unknown command. Available commands: CRASH, EXIT");
+                    LOGGER.log(Level.getLevel("STAR_INFO"), "Unknown command. Available commands: CRASH, EXIT, STATS, MESSAGES");
             }
         }
     }
@@ -71,6 +86,7 @@ public class CommandListener implements Runnable {
     /**
      * reacts to "EXIT"
      * gentle ending the app by deregistering all components
+     * a sol writes a last snapshot of its state after the components were told to leave
      */
     private void handleExit() {
         LOGGER.log(Level.getLevel("STAR_INFO"), "Exiting the application...");
@@ -79,6 +95,9 @@ public class CommandListener implements Runnable {
         } else if (ApplicationState.getCurrentRole() == NodeRole.SOL) {
             galaxyService.unregisterLocalStar();
             starService.deregisterComponents();
+            // Last snapshot, the deregistered components are in it as disconnected and are not restored as active
+            snapshotService.writeSnapshot();
+            starService.exitSol();
         }
     }
 }
@@ -0,0 +1,33 @@
+package com.vs.starnet.star;
+
+import com.vs.starnet.star.model.Message;
+
+/**
+ * messages shared by the tests of the store and of the services working on it
+ */
+public final class TestMessages {
+
+    private TestMessages() {
+    }
+
+    /**
+     * @param msgId msg-id of the message, created by origin "1234:star-a"
+     * @param status status of the message
+     * @param changed created and changed time
+     * @return message with subject and body derived from the msg-id
+     */
+    public static Message message(String msgId, String status, long changed) {
+        return Message.builder()
+                .star("star-a")
+                .origin("1234:star-a")
+                .sender("1234")
+                .msgId(msgId)
+                .version("1")
+                .created(changed)
+                .changed(changed)
+                .subject("Subject " + msgId)
+                .message("Body of " + msgId)
+                .status(status)
+                .build();
+    }
+}
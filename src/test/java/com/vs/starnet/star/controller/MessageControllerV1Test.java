@@ -118,4 +118,63 @@ public class MessageControllerV1Test {
                 .andExpect(content().string("404 does not exist"));
     }
 
+    /**
+     * Checks that the paging parameters of {@link MessageControllerV1#getMessages} are passed to the service
+     * and that the "next-cursor" of the service is returned to the client.
+     */
+    @Test
+    public void testGetMessages_Paged() throws Exception {
+        when(messageService.getMessages("star-uuid-1",
+                new MessageService.MessageQuery("all", "id", 2, "MTAwOjFAMTIzNA", 100L, null, null, null, null), null))
+                .thenAnswer(invocation -> ResponseEntity.ok(Map.of("totalResults", 2, "next-cursor", "MjAwOjJAMTIzNA", "has-more", true)));
+
+        mockMvc.perform(get("/vs/v1/messages?star=star-uuid-1&scope=all&view=id&limit=2&cursor=MTAwOjFAMTIzNA&since=100"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.next-cursor").value("MjAwOjJAMTIzNA"))
+                .andExpect(jsonPath("$.has-more").value(true));
+    }
+
+    /**
+     * Checks that the origin and time range filters are passed to the service
+     */
+    @Test
+    public void testGetMessages_Filtered() throws Exception {
+        when(messageService.getMessages("star-uuid-1",
+                new MessageService.MessageQuery("all", "header", null, null, null, "1234:star-uuid-1", 100L, 200L, 150L), null))
+                .thenAnswer(invocation -> ResponseEntity.ok(Map.of("totalResults", 1)));
+
+        mockMvc.perform(get("/vs/v1/messages?star=star-uuid-1&scope=all&view=header&origin=1234:star-uuid-1"
+                        + "&created-after=100&created-before=200&changed-after=150"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalResults").value(1));
+    }
+
+    /**
+     * Checks that the search query and limit are passed to the service
+     */
+    @Test
+    public void testSearchMessages() throws Exception {
+        when(messageService.searchMessages("star-uuid-1", "status report", 5))
+                .thenAnswer(invocation -> ResponseEntity.ok(Map.of("totalResults", 1)));
+
+        mockMvc.perform(get("/vs/v1/messages/search?star=star-uuid-1&q=status report&limit=5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalResults").value(1));
+    }
+
+    /**
+     * Checks that the If-None-Match header reaches the service and a 304 is returned without body
+     */
+    @Test
+    public void testGetMessages_NotModified() throws Exception {
+        when(messageService.getMessages("star-uuid-1",
+                new MessageService.MessageQuery(null, null, null, null, null, null, null, null, null), "\"1-5\""))
+                .thenAnswer(invocation -> ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag("\"1-5\"").build());
+
+        mockMvc.perform(get("/vs/v1/messages?star=star-uuid-1").header("If-None-Match", "\"1-5\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"1-5\""))
+                .andExpect(content().string(""));
+    }
+
 }
@@ -7,12 +7,14 @@ import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
 class MessageControllerV2Test {
@@ -77,7 +79,7 @@ class MessageControllerV2Test {
         when(messageService.handleMessageV2(message)).thenReturn(ResponseEntity.ok(responseMap));
 
         // Call the controller method
-        ResponseEntity<Map<String, String>> response = messageController.handleMessage(message);
+        ResponseEntity<Map<String, String>> response = messageController.handleMessage(message, null);
 
         // Verify the results
         assertEquals(200, response.getStatusCode().value());
@@ -87,4 +89,66 @@ class MessageControllerV2Test {
         // Verify that the service method was called exactly once
         verify(messageService, times(1)).handleMessageV2(message);
     }
+
+    /**
+     * Checks that the preference "respond-async" among other preferences passes the message to
+     * {@link MessageService#handleMessageV2Async(Message)} and returns 202 with the msg-id.
+     */
+    @Test
+    void testHandleMessageAsync() {
+        Message message = Message.builder()
+                .star("star-uuid")
+                .origin("1234")
+                .sender("1234")
+                .subject("Test Subject")
+                .build();
+
+        when(messageService.handleMessageV2Async(message))
+                .thenReturn(ResponseEntity.status(HttpStatus.ACCEPTED).body(Map.of("msg-id", "1@1234:star-uuid")));
+
+        ResponseEntity<Map<String, String>> response = messageController.handleMessage(message, "respond-async, wait=10");
+
+        assertEquals(202, response.getStatusCode().value());
+        assertEquals("respond-async", response.getHeaders().getFirst("Preference-Applied"));
+        assertEquals("1@1234:star-uuid", response.getBody().get("msg-id"));
+        verify(messageService, times(1)).handleMessageV2Async(message);
+        verify(messageService, never()).handleMessageV2(any());
+    }
+
+    /**
+     * Checks the parsing of the Prefer header.
+     */
+    @Test
+    void testPrefersRespondAsync() {
+        assertTrue(MessageControllerV2.prefersRespondAsync("respond-async"));
+        assertTrue(MessageControllerV2.prefersRespondAsync("wait=10, Respond-Async"));
+        assertTrue(MessageControllerV2.prefersRespondAsync("respond-async; foo=bar"));
+        assertFalse(MessageControllerV2.prefersRespondAsync("return=minimal"));
+        assertFalse(MessageControllerV2.prefersRespondAsync("respond-asynchronously"));
+        assertFalse(MessageControllerV2.prefersRespondAsync(null));
+    }
+
+    /**
+     * Checks that a batch is passed to {@link MessageService#handleMessageBatchV2(List)} as a whole
+     * and the results per message are returned.
+     */
+    @Test
+    void testHandleMessageBatch() {
+        List<Message> batch = List.of(
+                Message.builder().star("star-uuid").origin("1234").sender("1234").subject("First").build(),
+                Message.builder().star("star-uuid").origin("1234").sender("1234").build());
+        List<Map<String, Object>> results = List.of(
+                Map.of("index", 0, "status", 200, "msg-id", "1@1234:star-uuid"),
+                Map.of("index", 1, "status", 412));
+
+        when(messageService.handleMessageBatchV2(batch))
+                .thenReturn(ResponseEntity.ok(Map.of("totalResults", 2, "stored", 1L, "results", results)));
+
+        ResponseEntity<Map<String, Object>> response = messageController.handleMessageBatch(batch);
+
+        assertEquals(200, response.getStatusCode().value());
+        assertEquals(results, response.getBody().get("results"));
+        verify(messageService, times(1)).handleMessageBatchV2(batch);
+        verify(messageService, never()).handleMessageV2(any());
+    }
 }
@@ -119,4 +119,42 @@ class SecondPortFilterTest {
         verify(response, never()).sendError(anyInt(), anyString());
     }
 
+    @Test
+    void testLinkStatisticsOnSecondaryPort_Allowed() throws IOException, ServletException {
+        when(request.getLocalPort()).thenReturn(ApplicationState.getGalaxyPort()); // secondary port
+        when(request.getMethod()).thenReturn("GET");
+        when(request.getRequestURI()).thenReturn("/vs/v1/star/links");
+
+        filter.doFilter(request, response, chain);
+
+        // Link statistics are served on the galaxy port
+        verify(chain).doFilter(request, response);
+        verify(response, never()).sendError(anyInt(), anyString());
+    }
+
+
+    @Test
+    void testMessageBatchOnPrimaryPort_Allowed() throws IOException, ServletException {
+        when(request.getLocalPort()).thenReturn(ApplicationState.getPort()); // primary port
+        when(request.getRequestURI()).thenReturn("/vs/v2/messages/batch");
+        when(request.getMethod()).thenReturn("POST");
+
+        filter.doFilter(request, response, chain);
+
+        // Components post their batches to the primary port like single messages
+        verify(chain).doFilter(request, response);
+        verify(response, never()).sendError(anyInt(), anyString());
+    }
+
+    @Test
+    void testMessageBatchOnSecondaryPort_Forbidden() throws IOException, ServletException {
+        when(request.getLocalPort()).thenReturn(ApplicationState.getGalaxyPort()); // secondary port
+        when(request.getRequestURI()).thenReturn("/vs/v2/messages/batch");
+        when(request.getMethod()).thenReturn("POST");
+
+        filter.doFilter(request, response, chain);
+
+        verify(response).sendError(eq(HttpServletResponse.SC_FORBIDDEN), anyString());
+        verify(chain, never()).doFilter(request, response);
+    }
 }
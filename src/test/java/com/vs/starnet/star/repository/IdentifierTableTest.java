@@ -0,0 +1,24 @@
+package com.vs.starnet.star.repository;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdentifierTableTest {
+
+    @Test
+    void testFindsIdentifiersInPlace() {
+        IdentifierTable identifiers = new IdentifierTable();
+        // Enough identifiers to grow the hash table a few times
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, identifiers.intern(i + ":star-a"));
+        }
+        assertEquals(1000, identifiers.size());
+        assertEquals(7, identifiers.intern("7:star-a"));
+        assertEquals(7, identifiers.find("42@7:star-a", 3));
+        assertEquals(999, identifiers.find("1@999:star-a", 2));
+        assertEquals(IdentifierTable.NONE, identifiers.find("42@7:star-b", 3));
+        assertEquals(IdentifierTable.NONE, identifiers.find(null));
+        assertEquals("7:star-a", identifiers.lookup(7));
+    }
+}
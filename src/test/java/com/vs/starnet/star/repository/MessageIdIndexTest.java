@@ -0,0 +1,54 @@
+package com.vs.starnet.star.repository;
+
+import com.vs.starnet.star.model.Message;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageIdIndexTest {
+
+    @Test
+    void testMatchesHashMapUnderRandomChanges() {
+        MessageIdIndex index = new MessageIdIndex();
+        Map<String, Integer> expected = new HashMap<>();
+        Random random = new Random(42);
+
+        for (int step = 0; step < 50_000; step++) {
+            long nonce = random.nextInt(2000);
+            int suffix = random.nextInt(3);
+            String key = nonce + "@" + suffix;
+            if (random.nextInt(3) == 0) {
+                Integer removed = expected.remove(key);
+                assertEquals(removed == null ? MessageIdIndex.NOT_FOUND : removed, index.remove(nonce, suffix));
+            } else {
+                expected.put(key, step);
+                index.put(nonce, suffix, step);
+            }
+        }
+
+        assertEquals(expected.size(), index.size());
+        for (long nonce = 0; nonce < 2000; nonce++) {
+            for (int suffix = 0; suffix < 3; suffix++) {
+                Integer slot = expected.get(nonce + "@" + suffix);
+                assertEquals(slot == null ? MessageIdIndex.NOT_FOUND : slot, index.get(nonce, suffix));
+            }
+        }
+    }
+
+    @Test
+    void testParseNonce() {
+        assertEquals(42, Message.parseNonce("42@1234:star-a"));
+        assertEquals(0, Message.parseNonce("0@1234:star-a"));
+        assertEquals(-1, Message.parseNonce("042@1234:star-a"));
+        assertEquals(-1, Message.parseNonce("-4@1234:star-a"));
+        assertEquals(-1, Message.parseNonce("abc"));
+        assertEquals(Long.MAX_VALUE, Message.parseNonce(Long.MAX_VALUE + "@1234:star-a"));
+        assertEquals(-1, Message.parseNonce("9223372036854775808@1234:star-a"));
+        assertEquals(-1, Message.parseNonce("msg-uuid@1234:star-a"));
+        assertEquals(-1, Message.parseNonce("@1234:star-a"));
+    }
+}
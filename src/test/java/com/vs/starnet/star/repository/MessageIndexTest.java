@@ -0,0 +1,90 @@
+package com.vs.starnet.star.repository;
+
+import com.vs.starnet.star.model.Message;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageIndexTest {
+
+    private MessageIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new MessageIndex();
+    }
+
+    private static Message message(String msgId, String origin, long changed) {
+        return Message.builder()
+                .msgId(msgId)
+                .origin(origin)
+                .status("active")
+                .created(changed)
+                .changed(changed)
+                .build();
+    }
+
+    @Test
+    void testAddIndexesByStatusOriginAndChanged() {
+        index.add(message("1@1234:star-a", "1234:star-a", 100));
+        index.add(message("2@1234:star-a", "1234:star-a", 200));
+        index.add(message("1@5678:star-b", "5678:star-b", 150));
+
+        assertEquals(3, index.countByStatus("active"));
+        assertEquals(2, index.countByOrigin("1234:star-a"));
+        assertEquals(List.of("1@1234:star-a", "1@5678:star-b", "2@1234:star-a"),
+                index.findAllByChanged().stream().map(MessageIndex.ChangeKey::msgId).toList());
+        assertEquals(List.of("1@5678:star-b", "2@1234:star-a"),
+                index.findChangedBetween(150, 200).stream().map(MessageIndex.ChangeKey::msgId).toList());
+        // Range results are views of the index, callers cannot change it through them
+        assertThrows(UnsupportedOperationException.class, () -> index.findChangedBetween(150, 200).pollFirst());
+        assertThrows(UnsupportedOperationException.class, () -> index.findChangedBetween(0, Long.MAX_VALUE).clear());
+        assertEquals(3, index.findAllByChanged().size());
+    }
+
+    @Test
+    void testUpdateMovesStatusAndChangedTime() {
+        Message message = message("1@1234:star-a", "1234:star-a", 100);
+        index.add(message);
+
+        message.setStatus("deleted");
+        message.setChanged(300);
+        index.update(message, "active", 100);
+
+        assertEquals(Map.of("deleted", 1L, "active", 0L), index.getCountsByStatus());
+        assertTrue(index.findChangedBetween(0, 299).isEmpty());
+        assertEquals(1, index.findChangedBetween(300, Long.MAX_VALUE).size());
+    }
+
+    @Test
+    void testRemoveDropsMessageFromAllIndexes() {
+        Message message = message("1@1234:star-a", "1234:star-a", 100);
+        index.add(message);
+
+        index.remove(message);
+
+        assertEquals(0, index.countByStatus("active"));
+        assertEquals(0, index.countByOrigin("1234:star-a"));
+        assertTrue(index.findAllByChanged().isEmpty());
+        assertTrue(index.findCreatedBetween(0, Long.MAX_VALUE).isEmpty());
+    }
+
+    @Test
+    void testCreatedRangeStaysWhenChangedTimeMoves() {
+        Message message = message("1@1234:star-a", "1234:star-a", 100);
+        index.add(message);
+        index.add(message("2@1234:star-a", "1234:star-a", 200));
+
+        message.setChanged(300);
+        index.update(message, "active", 100);
+
+        assertEquals(List.of("1@1234:star-a"),
+                index.findCreatedBetween(50, 150).stream().map(MessageIndex.ChangeKey::msgId).toList());
+        assertEquals(List.of("1@1234:star-a", "2@1234:star-a"),
+                index.findCreatedBetween(100, Long.MAX_VALUE).stream().map(MessageIndex.ChangeKey::msgId).toList());
+    }
+}
@@ -0,0 +1,302 @@
+package com.vs.starnet.star.repository;
+
+import com.vs.starnet.star.model.Message;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+
+import static com.vs.starnet.star.TestMessages.message;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * runs the same checks against every storage engine
+ */
+class MessageStoreTest {
+
+    @TempDir
+    Path storeDir;
+
+    private MessageStore store;
+
+    @AfterEach
+    void tearDown() {
+        if (store != null) {
+            store.close();
+        }
+    }
+
+    private MessageStore open(String engineName) {
+        store = MessageRepository.createEngine(engineName, storeDir, 8080);
+        return store;
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"heap", "compact", "off-heap", "off-heap-body", "log"})
+    void testSaveAndFind(String engineName) {
+        MessageStore store = open(engineName);
+
+        assertTrue(store.saveIfAbsent("1@1234:star-a", message("1@1234:star-a", "active", 100)));
+        assertFalse(store.saveIfAbsent("1@1234:star-a", message("1@1234:star-a", "active", 200)));
+
+        Message found = store.findById("1@1234:star-a");
+        assertEquals("Body of 1@1234:star-a", found.getMessage());
+        assertEquals(100, found.getChanged());
+        assertTrue(store.existsById("1@1234:star-a"));
+        assertEquals(1, store.count());
+        assertNull(store.findById("2@1234:star-a"));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"heap", "compact", "off-heap", "off-heap-body", "log"})
+    void testUpdateMovesIndexes(String engineName) {
+        MessageStore store = open(engineName);
+        store.saveIfAbsent("1@1234:star-a", message("1@1234:star-a", "active", 100));
+        long version = store.getVersion();
+
+        Message deleted = store.update("1@1234:star-a", message -> {
+            message.setStatus("deleted");
+            message.setChanged(200);
+            return message;
+        });
+
+        assertEquals("deleted", deleted.getStatus());
+        assertEquals("deleted", store.findById("1@1234:star-a").getStatus());
+        assertEquals(Set.of("1@1234:star-a"), store.findIdsByStatus("deleted"));
+        assertTrue(store.findIdsByStatus("active").isEmpty());
+        assertEquals(List.of(new MessageIndex.ChangeKey(200, "1@1234:star-a")), List.copyOf(store.findChangedBetween(150, 250)));
+        assertTrue(store.getVersion() > version);
+
+        // A change returning null leaves the message as it is
+        assertNull(store.update("1@1234:star-a", message -> null));
+        assertNull(store.update("2@1234:star-a", message -> message));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"heap", "compact", "off-heap", "off-heap-body", "log"})
+    void testUpdateLeavesReadMessageUnchanged(String engineName) {
+        MessageStore store = open(engineName);
+        store.saveIfAbsent("1@1234:star-a", message("1@1234:star-a", "active", 100));
+        Message read = store.findById("1@1234:star-a");
+
+        store.update("1@1234:star-a", message -> {
+            message.setStatus("deleted");
+            message.setChanged(200);
+            message.setMessage("");
+            return message;
+        });
+
+        // A reader holding the previous version still sees it as a whole
+        assertEquals("active", read.getStatus());
+        assertEquals(100, read.getChanged());
+        assertEquals("Body of 1@1234:star-a", read.getMessage());
+        assertEquals("deleted", store.findById("1@1234:star-a").getStatus());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"heap", "compact", "off-heap", "off-heap-body", "log"})
+    void testSaveAllStoresBatchAsOneChange(String engineName) {
+        MessageStore store = open(engineName);
+        store.saveIfAbsent("1@1234:star-a", message("1@1234:star-a", "active", 100));
+        long version = store.getVersion();
+
+        // Taken before and twice in the batch, only the free ids and the first of the twins are stored
+        boolean[] stored = store.saveAllIfAbsent(List.of(
+                message("1@1234:star-a", "active", 200),
+                message("2@1234:star-a", "active", 200),
+                message("3@1234:star-a", "active", 210),
+                message("2@1234:star-a", "active", 220)));
+
+        assertArrayEquals(new boolean[] {false, true, true, false}, stored);
+        assertEquals(version + 1, store.getVersion());
+        assertEquals(3, store.count());
+        assertEquals(100, store.findById("1@1234:star-a").getChanged());
+        assertEquals(200, store.findById("2@1234:star-a").getChanged());
+        assertEquals(3, store.findIdsByOrigin("1234:star-a").size());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"heap", "compact", "off-heap", "off-heap-body", "log"})
+    void testDeleteRemovesFromIndexes(String engineName) {
+        MessageStore store = open(engineName);
+        store.saveIfAbsent("1@1234:star-a", message("1@1234:star-a", "active", 100));
+
+        store.delete("1@1234:star-a");
+
+        assertFalse(store.existsById("1@1234:star-a"));
+        assertEquals(0, store.count());
+        assertTrue(store.findIdsByOrigin("1234:star-a").isEmpty());
+        assertTrue(store.findAllByChanged().isEmpty());
+    }
+
+    @Test
+    void testBodyStaysInArenaForHeaderReads() {
+        BodyArenaMessageStore store = (BodyArenaMessageStore) open("off-heap-body");
+        store.saveIfAbsent("1@1234:star-a", message("1@1234:star-a", "active", 100));
+
+        Message header = store.findHeaderById("1@1234:star-a");
+        assertNull(header.getMessage());
+        assertEquals("Subject 1@1234:star-a", header.getSubject());
+        assertEquals("Body of 1@1234:star-a", store.findById("1@1234:star-a").getMessage());
+
+        // Changing a read copy leaves the stored header alone
+        store.findById("1@1234:star-a").setStatus("deleted");
+        store.findHeaderById("1@1234:star-a").setStatus("deleted");
+        assertEquals("active", store.findHeaderById("1@1234:star-a").getStatus());
+
+        long used = store.getUsedBytes();
+        store.update("1@1234:star-a", message -> {
+            message.setMessage("Changed body");
+            return message;
+        });
+        assertEquals("Changed body", store.findById("1@1234:star-a").getMessage());
+        assertEquals(used, store.getUnusedBytes());
+    }
+
+    @Test
+    void testCompactStoreInternsIdentifiers() {
+        CompactMessageStore store = (CompactMessageStore) open("compact");
+        for (int i = 1; i <= 100; i++) {
+            Message message = message(i + "@1234:star-a", "active", i);
+            message.setReceived((long) i);
+            store.saveIfAbsent(message.getMsgId(), message);
+        }
+        Message odd = message("101@1234:star-a", "pending", 101);
+        store.saveIfAbsent(odd.getMsgId(), odd);
+
+        // star, origin, sender and version are the same for every message
+        assertEquals(4, store.getIdentifierCount());
+        Message found = store.findById("7@1234:star-a");
+        assertEquals("star-a", found.getStar());
+        assertEquals("1234:star-a", found.getOrigin());
+        assertEquals(7L, found.getReceived());
+        assertNull(found.getDelivered());
+        assertNull(found.getFromStar());
+        assertEquals("pending", store.findById("101@1234:star-a").getStatus());
+
+        // Numbers beyond 18 digits are kept in the id index as well
+        String largest = Long.MAX_VALUE + "@1234:star-a";
+        store.saveIfAbsent(largest, message(largest, "active", 102));
+        assertEquals(largest, store.findById(largest).getMsgId());
+        assertTrue(store.findAll().containsKey(largest));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"heap", "compact", "off-heap", "off-heap-body", "log"})
+    void testManyMessagesWithRemovals(String engineName) {
+        MessageStore store = open(engineName);
+        for (int i = 1; i <= 2000; i++) {
+            store.saveIfAbsent(i + "@1234:star-a", message(i + "@1234:star-a", "active", i));
+        }
+        for (int i = 1; i <= 2000; i += 3) {
+            store.delete(i + "@1234:star-a");
+        }
+        // Msg-ids that do not start with a plain number are kept as well
+        store.saveIfAbsent("007@1234:star-a", message("007@1234:star-a", "active", 1));
+        store.saveIfAbsent("x@1234:star-a", message("x@1234:star-a", "active", 1));
+
+        assertEquals(2000 - 667 + 2, store.count());
+        assertNull(store.findById("1@1234:star-a"));
+        assertEquals("Body of 2@1234:star-a", store.findById("2@1234:star-a").getMessage());
+        assertEquals("007@1234:star-a", store.findById("007@1234:star-a").getMsgId());
+        assertNull(store.findById("7@1234:star-b"));
+        assertTrue(store.existsById("x@1234:star-a"));
+        assertEquals(store.count(), store.findAll().size());
+        assertTrue(store.findAll().containsKey("2000@1234:star-a"));
+    }
+
+    @Test
+    void testCompactStorageFreesReplacedRecords() {
+        OffHeapMessageStore offHeap = new OffHeapMessageStore(4096);
+        BodyArenaMessageStore bodyArena = new BodyArenaMessageStore(4096);
+        store = offHeap;
+        for (MessageStore arenaStore : List.<MessageStore>of(offHeap, bodyArena)) {
+            for (int i = 1; i <= 20; i++) {
+                arenaStore.saveIfAbsent(i + "@1234:star-a", message(i + "@1234:star-a", "active", i));
+            }
+            for (int round = 0; round < 50; round++) {
+                for (int i = 1; i <= 20; i++) {
+                    String body = "Body " + round;
+                    arenaStore.update(i + "@1234:star-a", message -> {
+                        message.setMessage(body);
+                        return message;
+                    });
+                }
+                arenaStore.compactStorage();
+            }
+            assertEquals("Body 49", arenaStore.findById("7@1234:star-a").getMessage());
+            assertEquals(20, arenaStore.findAll().size());
+        }
+        // Without compaction 1000 updates would need far more chunks
+        assertTrue(offHeap.getChunkCount() <= 4);
+        assertTrue(bodyArena.getChunkCount() <= 2);
+        bodyArena.close();
+    }
+
+    @Test
+    void testLogIsReplayedOnOpen() {
+        MessageStore first = open("log");
+        first.saveIfAbsent("1@1234:star-a", message("1@1234:star-a", "active", 100));
+        first.saveIfAbsent("2@1234:star-a", message("2@1234:star-a", "active", 110));
+        first.update("1@1234:star-a", message -> {
+            message.setStatus("deleted");
+            message.setChanged(120);
+            return message;
+        });
+        first.delete("2@1234:star-a");
+        first.saveAllIfAbsent(List.of(message("3@1234:star-a", "active", 130), message("4@1234:star-a", "active", 130)));
+        first.close();
+
+        MessageStore reopened = open("log");
+
+        assertEquals(3, reopened.count());
+        assertEquals("deleted", reopened.findById("1@1234:star-a").getStatus());
+        assertTrue(reopened.existsById("4@1234:star-a"));
+        assertEquals(Set.of("1@1234:star-a"), reopened.findIdsByStatus("deleted"));
+        assertFalse(reopened.existsById("2@1234:star-a"));
+    }
+
+    @Test
+    void testLogCheckpointIsReplayedOnOpen() {
+        LogBackedMessageStore first = (LogBackedMessageStore) open("log");
+        first.saveIfAbsent("1@1234:star-a", message("1@1234:star-a", "active", 100));
+        first.saveIfAbsent("2@1234:star-a", message("2@1234:star-a", "active", 110));
+        first.checkpoint();
+        first.delete("2@1234:star-a");
+        first.saveIfAbsent("3@1234:star-a", message("3@1234:star-a", "active", 120));
+        first.close();
+
+        MessageStore reopened = open("log");
+
+        assertEquals(2, reopened.count());
+        assertTrue(reopened.existsById("1@1234:star-a"));
+        assertFalse(reopened.existsById("2@1234:star-a"));
+        assertTrue(reopened.existsById("3@1234:star-a"));
+    }
+
+    @Test
+    void testCodecRoundTrip() {
+        Message message = message("1@1234:star-a", "active", 100);
+        message.setFromStar("star-b");
+        message.setDelivered(90L);
+        message.setExpires(500L);
+
+        Message decoded = MessageCodec.decode(MessageCodec.encode(message));
+
+        assertEquals(message.toString(), decoded.toString());
+        assertNull(decoded.getReceived());
+
+        // Records of format 1, written before "expires" existed, are still read
+        byte[] encoded = MessageCodec.encode(message);
+        byte[] formatOne = java.util.Arrays.copyOf(encoded, encoded.length - (1 + Long.BYTES));
+        formatOne[0] = 1;
+        Message old = MessageCodec.decode(formatOne);
+        assertEquals("Body of 1@1234:star-a", old.getMessage());
+        assertNull(old.getExpires());
+    }
+}
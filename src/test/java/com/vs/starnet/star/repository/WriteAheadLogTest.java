@@ -0,0 +1,131 @@
+package com.vs.starnet.star.repository;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteAheadLogTest {
+
+    @TempDir
+    Path logDir;
+
+    private List<String> replay(WriteAheadLog log) {
+        List<String> records = new ArrayList<>();
+        log.replay((type, payload) -> records.add(type + ":" + StandardCharsets.UTF_8.decode(payload)));
+        return records;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void testRecordsSurviveReopen() {
+        WriteAheadLog log = new WriteAheadLog(logDir, 4096, WriteAheadLog.SyncPolicy.ALWAYS, 5);
+        assertTrue(replay(log).isEmpty());
+        log.append((byte) 1, bytes("first"));
+        log.append((byte) 3, new byte[0]);
+        log.append((byte) 2, bytes("second"));
+        log.close();
+
+        WriteAheadLog reopened = new WriteAheadLog(logDir, 4096, WriteAheadLog.SyncPolicy.ALWAYS, 5);
+        assertEquals(List.of("1:first", "3:", "2:second"), replay(reopened));
+
+        // Appends continue behind the replayed records
+        reopened.append((byte) 1, bytes("third"));
+        reopened.close();
+        assertEquals(List.of("1:first", "3:", "2:second", "1:third"),
+                replay(new WriteAheadLog(logDir, 4096, WriteAheadLog.SyncPolicy.ALWAYS, 5)));
+    }
+
+    @Test
+    void testSegmentsRollOver() throws IOException {
+        WriteAheadLog log = new WriteAheadLog(logDir, 64, WriteAheadLog.SyncPolicy.NONE, 5);
+        replay(log);
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            log.append((byte) 1, bytes("record-" + i));
+            expected.add("1:record-" + i);
+        }
+        // A record larger than a segment gets a segment of its own
+        String large = "x".repeat(200);
+        log.append((byte) 1, bytes(large));
+        expected.add("1:" + large);
+        log.close();
+
+        try (Stream<Path> segments = Files.list(logDir)) {
+            assertTrue(segments.count() > 1);
+        }
+        assertEquals(expected, replay(new WriteAheadLog(logDir, 64, WriteAheadLog.SyncPolicy.NONE, 5)));
+    }
+
+    @Test
+    void testCheckpointDeletesEarlierSegments() throws IOException {
+        WriteAheadLog log = new WriteAheadLog(logDir, 64, WriteAheadLog.SyncPolicy.NONE, 5);
+        replay(log);
+        for (int i = 0; i < 20; i++) {
+            log.append((byte) 1, bytes("record-" + i));
+        }
+        assertTrue(log.hasClosedSegments());
+
+        int firstSegment = log.startCheckpoint();
+        log.append((byte) 2, bytes("after"));
+        assertTrue(log.writeCheckpoint(firstSegment, writer -> writer.accept((byte) 1, bytes("state"))) > 0);
+        log.close();
+
+        try (Stream<Path> files = Files.list(logDir)) {
+            assertEquals(2, files.count()); // The snapshot and the segment behind it
+        }
+        assertEquals(List.of("1:state", "2:after"), replay(new WriteAheadLog(logDir, 64, WriteAheadLog.SyncPolicy.NONE, 5)));
+    }
+
+    @Test
+    void testGroupCommitWaitsForFlush() {
+        WriteAheadLog log = new WriteAheadLog(logDir, 4096, WriteAheadLog.SyncPolicy.GROUP, 1);
+        replay(log);
+
+        long position = log.append((byte) 1, bytes("grouped"));
+        log.awaitDurable(position);
+
+        assertTrue(log.getSyncs() >= 1);
+        log.close();
+    }
+
+    @Test
+    void testDamagedTailIsDropped() throws IOException {
+        WriteAheadLog log = new WriteAheadLog(logDir, 4096, WriteAheadLog.SyncPolicy.ALWAYS, 5);
+        replay(log);
+        log.append((byte) 1, bytes("kept"));
+        log.append((byte) 1, bytes("damaged"));
+        log.close();
+
+        // Flip a payload byte of the second record as a crash in the middle of the write would
+        Path segment;
+        try (Stream<Path> segments = Files.list(logDir)) {
+            segment = segments.findFirst().orElseThrow();
+        }
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            int secondRecord = 2 * Integer.BYTES + 1 + "kept".length();
+            file.seek(secondRecord + 2 * Integer.BYTES + 1);
+            file.write('X');
+        }
+
+        WriteAheadLog reopened = new WriteAheadLog(logDir, 4096, WriteAheadLog.SyncPolicy.ALWAYS, 5);
+        assertEquals(List.of("1:kept"), replay(reopened));
+
+        // The damaged record is overwritten by the next append
+        reopened.append((byte) 1, bytes("after"));
+        reopened.close();
+        assertEquals(List.of("1:kept", "1:after"), replay(new WriteAheadLog(logDir, 4096, WriteAheadLog.SyncPolicy.ALWAYS, 5)));
+    }
+}
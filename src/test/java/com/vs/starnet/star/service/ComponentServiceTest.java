@@ -39,6 +39,8 @@ class ComponentServiceTest {
         // Mock UdpHandler:
         UdpHandler udpHandlerMock = mock(UdpHandler.class);
         ReflectionTestUtils.setField(componentService, "udpHandler", udpHandlerMock);
+        ReflectionTestUtils.setField(componentService, "snapshotService", mock(SnapshotService.class));
+        ReflectionTestUtils.setField(componentService, "messageService", mock(MessageService.class));
     }
 
 
@@ -0,0 +1,74 @@
+package com.vs.starnet.star.service;
+
+import com.vs.starnet.star.constants.DeliveryState;
+import com.vs.starnet.star.model.Message;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.vs.starnet.star.TestMessages.message;
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeliveryPipelineTest {
+
+    @TempDir
+    Path journalDir;
+
+    @Test
+    void testPendingDeliveriesSurviveRestart() throws InterruptedException {
+        DeliveryPipeline pipeline = new DeliveryPipeline(journalDir);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch delivered = new CountDownLatch(1);
+        assertTrue(pipeline.submit(message("1@1234:star-a", "active", 100), delivered::countDown));
+        // Blocks the worker, its delivery is still pending when the pipeline stops
+        assertTrue(pipeline.submit(message("2@1234:star-a", "active", 100), () -> awaitQuietly(release)));
+        assertTrue(delivered.await(5, TimeUnit.SECONDS));
+        waitForState(pipeline, "1@1234:star-a", DeliveryState.DELIVERED);
+        pipeline.shutdown();
+
+        DeliveryPipeline restarted = new DeliveryPipeline(journalDir);
+        assertEquals(Set.of("2@1234:star-a"), restarted.getPendingIds());
+        // The message itself is journaled, a store that lost it gets it back from there
+        Message pending = restarted.getPendingMessages().get(0);
+        assertEquals("2@1234:star-a", pending.getMsgId());
+        assertEquals("Subject 2@1234:star-a", pending.getSubject());
+
+        restarted.finish("2@1234:star-a");
+        restarted.shutdown();
+        release.countDown();
+        DeliveryPipeline reopened = new DeliveryPipeline(journalDir);
+        assertTrue(reopened.getPendingIds().isEmpty());
+        reopened.shutdown();
+    }
+
+    @Test
+    void testUnjournaledDeliveryIsLeftToTheCaller() {
+        DeliveryPipeline pipeline = new DeliveryPipeline(journalDir);
+        pipeline.shutdown();
+
+        // The journal is closed, accepting the message now would lose it on a restart
+        assertFalse(pipeline.submit(message("1@1234:star-a", "active", 100), () -> fail("not queued")));
+        assertTrue(pipeline.getPendingIds().isEmpty());
+        assertNull(pipeline.getStatus("1@1234:star-a"));
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void waitForState(DeliveryPipeline pipeline, String msgId, DeliveryState state) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (pipeline.getStatus(msgId).getState() != state && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(state, pipeline.getStatus(msgId).getState());
+    }
+}
@@ -0,0 +1,78 @@
+package com.vs.starnet.star.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vs.starnet.star.model.Message;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ForwardingTemplateTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static Message storedMessage() {
+        return Message.builder()
+                .star("star-a")
+                .origin("1234:star-a")
+                .sender("1234")
+                .msgId("1@1234:star-a")
+                .version("1")
+                .created(100)
+                .changed(100)
+                .subject("status \"quoted\"")
+                .message("body")
+                .status("active")
+                .fromStar("star-c")
+                .received(90L)
+                .expires(500L)
+                .build();
+    }
+
+    /**
+     * the payload of the template is the json the forwarded message was serialized to before
+     */
+    @Test
+    void testPayloadMatchesSerializedMessage() throws Exception {
+        Message message = storedMessage();
+        Message forwarded = Message.builder()
+                .msgId(message.getMsgId())
+                .version(message.getVersion())
+                .status(message.getStatus())
+                .origin(message.getOrigin())
+                .sender(message.getSender())
+                .subject(message.getSubject())
+                .message(message.getMessage())
+                .created(message.getCreated())
+                .changed(message.getChanged())
+                .star("star-b")
+                .toStar("star-b")
+                .delivered(200L)
+                .expires(message.getExpires())
+                .build();
+
+        byte[] payload = ForwardingTemplate.of(message).forPeer("star-b", 200);
+
+        assertEquals(MAPPER.readTree(MAPPER.writeValueAsBytes(forwarded)), MAPPER.readTree(payload));
+    }
+
+    @Test
+    void testBatchOfPeerPayloadsIsValidJson() throws Exception {
+        ForwardingTemplate template = ForwardingTemplate.of(storedMessage());
+        ByteArrayOutputStream batch = new ByteArrayOutputStream();
+        batch.write('[');
+        template.writeForPeer(batch, "star-b", 200);
+        batch.write(',');
+        template.writeForPeer(batch, "star-\"c\"", 201);
+        batch.write(']');
+
+        JsonNode messages = MAPPER.readTree(batch.toByteArray());
+
+        assertEquals("star-b", messages.get(0).get("to-star").asText());
+        assertEquals("star-\"c\"", messages.get(1).get("star").asText());
+        assertEquals(201, messages.get(1).get("delivered").asLong());
+        assertFalse(messages.get(1).has("from-star"));
+    }
+}
@@ -182,7 +182,7 @@ class GalaxyServiceTest {
         // define mock behavior
         when(solRepository.findAll()).thenReturn(mockStars);
 
-        ResponseEntity<Map<String, Object>> response = galaxyService.getStarDetails();
+        ResponseEntity<Map<String, Object>> response = galaxyService.getStarDetails(null);
 
         assertEquals(200, response.getStatusCode().value());
         assertNotNull(response.getBody());
@@ -201,6 +201,29 @@ class GalaxyServiceTest {
         assertEquals("star2", star2Details.get("star"));
     }
 
+    @Test
+    void testGetStarDetails_NotModified() {
+        when(solRepository.findAll()).thenReturn(new HashMap<>());
+        when(solRepository.getVersion()).thenReturn(3L);
+
+        // First poll gets the list and its ETag
+        ResponseEntity<Map<String, Object>> first = galaxyService.getStarDetails(null);
+        String eTag = first.getHeaders().getETag();
+        assertEquals(200, first.getStatusCode().value());
+        assertNotNull(eTag);
+
+        // Second poll with the same version is answered without a body
+        ResponseEntity<Map<String, Object>> second = galaxyService.getStarDetails(eTag);
+        assertEquals(304, second.getStatusCode().value());
+        assertNull(second.getBody());
+
+        // A change of the stars leads to a new list
+        when(solRepository.getVersion()).thenReturn(4L);
+        ResponseEntity<Map<String, Object>> third = galaxyService.getStarDetails(eTag);
+        assertEquals(200, third.getStatusCode().value());
+        assertNotEquals(eTag, third.getHeaders().getETag());
+    }
+
     @Test
     void testDeregisterStar_Success() {
         Sol sol = Sol.builder()
@@ -0,0 +1,58 @@
+package com.vs.starnet.star.service;
+
+import com.vs.starnet.star.constants.NodeRole;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LinkStatsServiceTest {
+
+    private LinkStatsService linkStatsService;
+
+    @BeforeEach
+    void setUp() {
+        linkStatsService = new LinkStatsService();
+        ApplicationState.setCurrentRole(NodeRole.SOL);
+        ApplicationState.setStarUuid("test-star-uuid");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testForwardAndReceiveAreAggregatedPerPeer() {
+        linkStatsService.recordForward("peer-a", true, 20);
+        linkStatsService.recordForward("peer-a", false, 700);
+        linkStatsService.recordReceive("peer-a", 100, 101L, 102);
+
+        ResponseEntity<Map<String, Object>> response = linkStatsService.getLinkStatistics();
+
+        assertEquals(200, response.getStatusCode().value());
+        assertEquals(1, response.getBody().get("totalResults"));
+
+        Map<String, Object> link = ((List<Map<String, Object>>) response.getBody().get("links")).get(0);
+        assertEquals("peer-a", link.get("star"));
+        assertEquals(2L, link.get("forwarded"));
+        assertEquals(1L, link.get("forward-failures"));
+        assertEquals(0.5, link.get("failure-rate"));
+        assertEquals(1L, link.get("received"));
+
+        // 2 seconds from creation to receipt, 1 second on the last hop
+        Map<String, Object> propagation = (Map<String, Object>) link.get("propagation-latency");
+        assertEquals(2000.0, propagation.get("mean-ms"));
+        Map<String, Object> delivery = (Map<String, Object>) link.get("delivery-latency");
+        assertEquals(1000L, delivery.get("p50-ms"));
+    }
+
+    @Test
+    void testOnlySolProvidesStatistics() {
+        ApplicationState.setCurrentRole(NodeRole.COMPONENT);
+
+        ResponseEntity<Map<String, Object>> response = linkStatsService.getLinkStatistics();
+
+        assertEquals(503, response.getStatusCode().value());
+    }
+}
@@ -0,0 +1,170 @@
+package com.vs.starnet.star.service;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageChangeFeedTest {
+
+    private MessageChangeFeed changeFeed;
+
+    @BeforeEach
+    void setUp() {
+        changeFeed = new MessageChangeFeed();
+    }
+
+    @AfterEach
+    void tearDown() {
+        changeFeed.shutdown();
+    }
+
+    @Test
+    void testSubscribeRegistersClient() {
+        SseEmitter emitter = changeFeed.subscribe();
+
+        assertNotNull(emitter);
+        assertEquals(1, changeFeed.getSubscriberCount());
+    }
+
+    @Test
+    void testPublishWithoutSubscribersIsIgnored() {
+        assertDoesNotThrow(() -> changeFeed.publish(MessageChangeFeed.MESSAGE_CREATED, "MTAwOjFAMTIzNA",
+                Map.of("msg-id", "1@1234")));
+        assertEquals(0, changeFeed.getSubscriberCount());
+    }
+
+    @Test
+    void testResumingClientJoinsAfterItsReplay() throws Exception {
+        CountDownLatch replaying = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> replayThreads = new CopyOnWriteArrayList<>();
+        MessageChangeFeed.JoiningEmitter emitter = (MessageChangeFeed.JoiningEmitter) changeFeed.subscribe(sink -> {
+            replayThreads.add(Thread.currentThread().getName());
+            assertTrue(sink.send(MessageChangeFeed.MESSAGE_CREATED, "MTAwOjFAMTIzNA", Map.of("msg-id", "1@1234")));
+            replaying.countDown();
+            awaitQuietly(release);
+        });
+
+        // Nothing is replayed before the response starts
+        Thread.sleep(50);
+        assertEquals(List.of(), replayThreads);
+
+        emitter.extendResponse(new ServletServerHttpResponse(new MockHttpServletResponse()));
+        assertTrue(replaying.await(5, TimeUnit.SECONDS));
+        // Live events wait for the replay on the dispatcher, the client is not a subscriber yet
+        changeFeed.publish(MessageChangeFeed.MESSAGE_CREATED, "MTAxOjJAMTIzNA", Map.of("msg-id", "2@1234"));
+        assertEquals(0, changeFeed.getSubscriberCount());
+
+        release.countDown();
+        awaitSubscribers(1);
+        assertEquals(List.of("message-change-feed"), replayThreads);
+    }
+
+    @Test
+    void testClientGoneDuringReplayDoesNotJoin() throws Exception {
+        AtomicInteger sent = new AtomicInteger();
+        CountDownLatch replayed = new CountDownLatch(1);
+        MessageChangeFeed.JoiningEmitter emitter = (MessageChangeFeed.JoiningEmitter) changeFeed.subscribe(sink -> {
+            while (sink.send(MessageChangeFeed.MESSAGE_CREATED, null, Map.of())) {
+                sent.incrementAndGet();
+            }
+            replayed.countDown();
+        });
+        emitter.complete();
+
+        emitter.extendResponse(new ServletServerHttpResponse(new MockHttpServletResponse()));
+
+        assertTrue(replayed.await(5, TimeUnit.SECONDS));
+        assertEquals(0, sent.get());
+        assertEquals(0, changeFeed.getSubscriberCount());
+    }
+
+    @Test
+    void testShutdownClosesSubscriptions() {
+        changeFeed.subscribe();
+        changeFeed.subscribe();
+
+        changeFeed.shutdown();
+
+        assertEquals(0, changeFeed.getSubscriberCount());
+    }
+
+    @Test
+    void testSilentUpstreamIsReconnectedAtCurrentSol() throws Exception {
+        changeFeed.shutdown();
+        changeFeed = new MessageChangeFeed(50, 300);
+        // The sol sends one event and then goes silent without closing the connection
+        List<String> requests = new CopyOnWriteArrayList<>();
+        CountDownLatch reconnected = new CountDownLatch(1);
+        HttpServer sol = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        sol.createContext("/", exchange -> {
+            requests.add(exchange.getRequestURI().getPath() + " " + exchange.getRequestHeaders().getFirst("Last-Event-ID"));
+            exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream body = exchange.getResponseBody();
+            body.write("id: event-1\nevent: message-created\ndata: {}\n\n".getBytes(StandardCharsets.UTF_8));
+            body.flush();
+            if (requests.size() > 1) {
+                reconnected.countDown();
+            }
+            sleepQuietly(5000);
+            exchange.close();
+        });
+        sol.setExecutor(Executors.newCachedThreadPool());
+        sol.start();
+        try {
+            AtomicInteger attempts = new AtomicInteger();
+            String base = "http://127.0.0.1:" + sol.getAddress().getPort();
+            changeFeed.subscribeRelayed(() -> base + "/sol-" + attempts.incrementAndGet(), "event-0");
+
+            assertTrue(reconnected.await(5, TimeUnit.SECONDS));
+            // The client position is sent first, the reconnect resumes behind the relayed event at the new url
+            assertEquals("/sol-1 event-0", requests.get(0));
+            assertEquals("/sol-2 event-1", requests.get(1));
+        } finally {
+            changeFeed.shutdown();
+            sol.stop(0);
+        }
+    }
+
+    private void awaitSubscribers(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (changeFeed.getSubscriberCount() != count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, changeFeed.getSubscriberCount());
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.vs.starnet.star.service;
+
+import com.fasterxml.jackson.core.SerializableString;
+import com.vs.starnet.star.model.Message;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageFragmentCacheTest {
+
+    private static Message message(String msgId, long changed) {
+        return Message.builder()
+                .msgId(msgId)
+                .version("1")
+                .origin("1234:star-a")
+                .status("active")
+                .created(100)
+                .changed(changed)
+                .subject("status")
+                .message("body")
+                .build();
+    }
+
+    @Test
+    void testFragmentIsRenderedOncePerView() {
+        MessageFragmentCache cache = new MessageFragmentCache(10);
+        Message message = message("1@1234:star-a", 100);
+
+        SerializableString header = cache.get(message, "header");
+
+        assertSame(header, cache.get(message, "header"));
+        assertEquals("{\"msg-id\":\"1@1234:star-a\",\"status\":\"active\",\"version\":\"1\",\"origin\":\"1234:star-a\","
+                + "\"created\":100,\"changed\":100,\"subject\":\"status\"}", header.getValue());
+        assertEquals("{\"msg-id\":\"1@1234:star-a\",\"status\":\"active\"}", cache.get(message, "id").getValue());
+        assertTrue(cache.get(message, "full").getValue().endsWith(",\"message\":\"body\"}"));
+        assertEquals(1L, cache.getStatistics().get("hits"));
+    }
+
+    @Test
+    void testChangedMessageIsRenderedAgain() {
+        MessageFragmentCache cache = new MessageFragmentCache(10);
+        Message message = message("1@1234:star-a", 100);
+        cache.get(message, "full");
+
+        // Deleted within the same second, only the status moved
+        message.setStatus("deleted");
+        message.setMessage("");
+
+        assertEquals("{\"msg-id\":\"1@1234:star-a\",\"status\":\"deleted\"}", cache.get(message, "full").getValue());
+    }
+
+    @Test
+    void testCacheStaysWithinCapacity() {
+        MessageFragmentCache cache = new MessageFragmentCache(2);
+        for (int i = 0; i < 5; i++) {
+            cache.get(message(i + "@1234:star-a", 100), "id");
+        }
+
+        assertEquals(2L, cache.getStatistics().get("messages"));
+    }
+}
@@ -0,0 +1,63 @@
+package com.vs.starnet.star.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageIdGeneratorTest {
+
+    private static final long START = 1_735_689_600_000L; // 2025-01-01
+
+    @Test
+    void testNoncesAreUniqueAcrossThreads() throws InterruptedException {
+        MessageIdGenerator generator = new MessageIdGenerator(START);
+        Set<Long> nonces = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int thread = 0; thread < 8; thread++) {
+            executor.submit(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    nonces.add(generator.nextNonce());
+                }
+                for (long nonce : generator.nextNonces(100)) {
+                    nonces.add(nonce);
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        assertEquals(8 * 10_100, nonces.size());
+    }
+
+    @Test
+    void testLaterStartDoesNotRepeatNonces() {
+        MessageIdGenerator first = new MessageIdGenerator(START);
+        long highest = 0;
+        for (int i = 0; i < 1000; i++) {
+            highest = Math.max(highest, first.nextNonce());
+        }
+
+        // A restart a second later starts above everything handed out before
+        MessageIdGenerator restarted = new MessageIdGenerator(START + 1000);
+        assertTrue(restarted.nextNonce() > highest);
+    }
+
+    @Test
+    void testAdvancePastStoredNonces() {
+        MessageIdGenerator stored = new MessageIdGenerator(START);
+        long storedNonce = stored.nextNonce();
+
+        // The clock of the restarted star went back, the stored msg-ids still move the epoch on
+        MessageIdGenerator restarted = new MessageIdGenerator(START - 60_000);
+        restarted.advancePast(storedNonce);
+
+        assertEquals(stored.getEpoch() + 1, restarted.getEpoch());
+        assertTrue(restarted.nextNonce() > storedNonce);
+    }
+}
@@ -0,0 +1,301 @@
+package com.vs.starnet.star.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import com.vs.starnet.star.constants.NodeRole;
+import com.vs.starnet.star.model.Message;
+import com.vs.starnet.star.repository.HeapMessageStore;
+import com.vs.starnet.star.repository.MessageIndex;
+import com.vs.starnet.star.repository.MessageRepository;
+import com.vs.starnet.star.repository.SolRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.vs.starnet.star.TestMessages.message;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * runs the message list against a real store and parses the streamed json
+ */
+class MessageServiceTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private MessageService messageService;
+    private MessageRepository messageRepository;
+
+    @BeforeEach
+    void setUp() {
+        ApplicationState.setCurrentRole(NodeRole.SOL);
+        ApplicationState.setSolStarUuid("star-a");
+
+        messageRepository = new MessageRepository(new HeapMessageStore());
+        messageService = new MessageService();
+        ReflectionTestUtils.setField(messageService, "messageRepository", messageRepository);
+        ReflectionTestUtils.setField(messageService, "fragmentCache", new MessageFragmentCache(100));
+        ReflectionTestUtils.setField(messageService, "subjectIndex", new SubjectIndex());
+        ReflectionTestUtils.setField(messageService, "solRepository", mock(SolRepository.class));
+        ReflectionTestUtils.setField(messageService, "seenMessageFilter", mock(SeenMessageFilter.class));
+        ReflectionTestUtils.setField(messageService, "changeFeed", mock(MessageChangeFeed.class));
+        ReflectionTestUtils.setField(messageService, "expiryScheduler", mock(ExpiryScheduler.class));
+        ReflectionTestUtils.setField(messageService, "tombstoneCompactor", mock(TombstoneCompactor.class));
+    }
+
+    @Test
+    void testResumeRestoresMessagesLostWithTheStore(@TempDir Path journalDir) throws Exception {
+        // Accepted with respond-async, the star stops before the delivery is done
+        DeliveryPipeline stopped = new DeliveryPipeline(journalDir);
+        CountDownLatch release = new CountDownLatch(1);
+        assertTrue(stopped.submit(message("1@1234:star-a", "active", 100), () -> awaitQuietly(release)));
+        assertTrue(stopped.submit(message("2@1234:star-a", "active", 100), () -> { }));
+        stopped.shutdown();
+        release.countDown();
+
+        // The heap store starts empty after the restart, the journal still holds the accepted message
+        DeliveryPipeline restarted = new DeliveryPipeline(journalDir);
+        ReflectionTestUtils.setField(messageService, "deliveryPipeline", restarted);
+        messageService.resumePendingDeliveries();
+
+        assertEquals("Subject 1@1234:star-a", messageRepository.findById("1@1234:star-a").getSubject());
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!restarted.getPendingIds().isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(restarted.getPendingIds().isEmpty());
+        restarted.shutdown();
+    }
+
+    @Test
+    void testListIsWrittenBeforeItsCount() throws Exception {
+        messageRepository.saveIfAbsent("1@1234:star-a", message("1@1234:star-a", "active", 100));
+        messageRepository.saveIfAbsent("2@1234:star-a", message("2@1234:star-a", "active", 101));
+
+        JsonNode page = list(new MessageService.MessageQuery(null, null, null, null, null, null, null, null, null));
+
+        List<String> fields = new ArrayList<>();
+        page.fieldNames().forEachRemaining(fields::add);
+        // Unpaged lists have neither cursor nor has-more
+        assertEquals(List.of("star", "scope", "view", "messages", "totalResults"), fields);
+        assertEquals("id", page.get("view").asText());
+        // The default scope is read from the status index, which has no order
+        assertEquals(Set.of("1@1234:star-a", "2@1234:star-a"), Set.copyOf(msgIds(page)));
+    }
+
+    @Test
+    void testViewsProjectTheEntries() throws Exception {
+        messageRepository.saveIfAbsent("1@1234:star-a", message("1@1234:star-a", "active", 100));
+        messageRepository.saveIfAbsent("2@1234:star-a", message("2@1234:star-a", "deleted", 101));
+
+        JsonNode id = list(view("id")).get("messages");
+        assertEquals(Map.of("msg-id", "1@1234:star-a", "status", "active"), MAPPER.convertValue(id.get(0), Map.class));
+
+        JsonNode header = list(view("header")).get("messages");
+        assertEquals("Subject 1@1234:star-a", header.get(0).get("subject").asText());
+        assertEquals("1234:star-a", header.get(0).get("origin").asText());
+        assertEquals(100, header.get(0).get("created").asLong());
+        assertFalse(header.get(0).has("message"));
+
+        JsonNode full = list(view("full")).get("messages");
+        assertEquals("Body of 1@1234:star-a", full.get(0).get("message").asText());
+        // Deleted entries only carry their id and status in every view
+        assertEquals(Map.of("msg-id", "2@1234:star-a", "status", "deleted"), MAPPER.convertValue(header.get(1), Map.class));
+        assertEquals(Map.of("msg-id", "2@1234:star-a", "status", "deleted"), MAPPER.convertValue(full.get(1), Map.class));
+
+        // The default scope leaves the deleted entries out
+        JsonNode active = list(new MessageService.MessageQuery(null, "full", null, null, null, null, null, null, null));
+        assertEquals(List.of("1@1234:star-a"), msgIds(active));
+    }
+
+    @Test
+    void testCursorOfTheLastPagePollsLaterChanges() throws Exception {
+        for (int i = 1; i <= 5; i++) {
+            messageRepository.saveIfAbsent(i + "@1234:star-a", message(i + "@1234:star-a", "active", 100 + i));
+        }
+
+        List<String> walked = new ArrayList<>();
+        String cursor = null;
+        JsonNode page;
+        do {
+            page = list(query(2, cursor, null, null, null));
+            walked.addAll(msgIds(page));
+            cursor = page.get("next-cursor").asText();
+        } while (page.get("has-more").asBoolean());
+        assertEquals(List.of("1@1234:star-a", "2@1234:star-a", "3@1234:star-a", "4@1234:star-a", "5@1234:star-a"), walked);
+
+        // Nothing changed, the cursor stays where it is
+        JsonNode unchanged = list(query(2, cursor, null, null, null));
+        assertEquals(List.of(), msgIds(unchanged));
+        assertEquals(cursor, unchanged.get("next-cursor").asText());
+        assertFalse(unchanged.get("has-more").asBoolean());
+
+        // A deletion moves the message behind the cursor, the poll returns it once
+        messageRepository.save("2@1234:star-a", message("2@1234:star-a", "deleted", 200));
+        JsonNode changed = list(query(2, cursor, null, null, null));
+        assertEquals(List.of("2@1234:star-a"), msgIds(changed));
+        assertEquals("deleted", changed.get("messages").get(0).get("status").asText());
+        assertEquals(List.of(), msgIds(list(query(2, changed.get("next-cursor").asText(), null, null, null))));
+    }
+
+    @Test
+    void testInvalidCursorIsRejected() {
+        for (String cursor : List.of("not base64!", "bm8tc2VwYXJhdG9y", "eDoxQDEyMzQ")) {
+            ResponseEntity<?> response = messageService.getMessages("star-a", query(2, cursor, null, null, null), null);
+
+            assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+            assertEquals(Map.of("error", "400 invalid cursor"), response.getBody());
+        }
+    }
+
+    @Test
+    void testComponentPassesTheSolResponseThrough() throws Exception {
+        // Not valid json on purpose, the component must not parse or rewrite the body of the sol
+        byte[] solBody = "{\"messages\":[{\"msg-id\":\"1@1234:star-a\"}],  \"totalResults\":1 ".getBytes(StandardCharsets.UTF_8);
+        List<String> requests = new CopyOnWriteArrayList<>();
+        HttpServer sol = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        sol.createContext("/", exchange -> {
+            requests.add(exchange.getRequestURI().toString());
+            exchange.getResponseHeaders().add("ETag", "\"7\"");
+            exchange.sendResponseHeaders(200, solBody.length);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(solBody);
+            }
+        });
+        sol.start();
+        try {
+            ApplicationState.setCurrentRole(NodeRole.COMPONENT);
+            ApplicationState.setSolIp(InetAddress.getByName("127.0.0.1"));
+            ApplicationState.setSolPort(sol.getAddress().getPort());
+
+            ResponseEntity<?> response = messageService.getMessages("star-a", query(2, "MTAwOjFAMTIzNDpzdGFyLWE", "1234", 100L, null), null);
+
+            assertEquals(HttpStatus.OK, response.getStatusCode());
+            assertEquals("\"7\"", response.getHeaders().getFirst(HttpHeaders.ETAG));
+            ByteArrayOutputStream passed = new ByteArrayOutputStream();
+            ((StreamingResponseBody) response.getBody()).writeTo(passed);
+            assertArrayEquals(solBody, passed.toByteArray());
+            assertEquals(List.of("/vs/v1/messages?star=star-a&scope=all&view=id&limit=2&cursor=MTAwOjFAMTIzNDpzdGFyLWE"
+                    + "&origin=1234&created-after=100"), requests);
+        } finally {
+            ApplicationState.setCurrentRole(NodeRole.SOL);
+            sol.stop(0);
+        }
+    }
+
+    @Test
+    void testOriginAndCreatedFiltersArePagedByChange() throws Exception {
+        // Created in msg-id order, changed in the opposite order
+        for (int i = 1; i <= 6; i++) {
+            Message message = message(i + "@1234:star-a", "active", 100 + i);
+            message.setChanged(200 - i);
+            if (i % 2 == 0) {
+                message.setOrigin("5678:star-a");
+            }
+            messageRepository.saveIfAbsent(message.getMsgId(), message);
+        }
+
+        JsonNode first = list(query(1, null, "1234", 101L, null));
+        assertEquals(List.of("5@1234:star-a"), msgIds(first));
+        assertTrue(first.get("has-more").asBoolean());
+
+        JsonNode second = list(query(1, first.get("next-cursor").asText(), "1234", 101L, null));
+        assertEquals(List.of("3@1234:star-a"), msgIds(second));
+        assertFalse(second.get("has-more").asBoolean());
+
+        // Created range alone, both bounds exclusive
+        assertEquals(List.of("4@1234:star-a", "3@1234:star-a", "2@1234:star-a"), msgIds(list(query(null, null, null, 101L, 105L))));
+        // Origin alone, the origin of this star is completed with its star suffix
+        assertEquals(List.of("6@1234:star-a", "4@1234:star-a", "2@1234:star-a"), msgIds(list(query(null, null, "5678", null, null))));
+    }
+
+    @Test
+    void testBoundsAtTheEndsOfTheRangeMatchNothing() throws Exception {
+        messageRepository.saveIfAbsent("1@1234:star-a", message("1@1234:star-a", "active", 100));
+
+        assertEquals(List.of(), msgIds(list(query(null, null, null, Long.MAX_VALUE, null))));
+        assertEquals(List.of(), msgIds(list(query(null, null, null, null, Long.MIN_VALUE))));
+        assertEquals(List.of(), msgIds(list(new MessageService.MessageQuery(
+                "all", null, null, null, null, null, null, null, Long.MAX_VALUE))));
+        assertEquals(List.of("1@1234:star-a"), msgIds(list(query(null, null, null, Long.MIN_VALUE, Long.MAX_VALUE))));
+    }
+
+    @Test
+    void testReplayAfterTheClientPosition() {
+        for (int i = 1; i <= 3; i++) {
+            messageRepository.saveIfAbsent(i + "@1234:star-a", message(i + "@1234:star-a", "active", 100 + i));
+        }
+        messageRepository.save("1@1234:star-a", message("1@1234:star-a", "deleted", 104));
+
+        List<String> events = new ArrayList<>();
+        messageService.replayChanges(new MessageIndex.ChangeKey(102, "2@1234:star-a"),
+                (eventType, eventId, data) -> events.add(eventType + " " + data.get("msg-id")));
+
+        assertEquals(List.of("message-created 3@1234:star-a", "message-deleted 1@1234:star-a"), events);
+    }
+
+    @Test
+    void testLongReplayEndsWithResync() {
+        for (int i = 1; i <= MessageService.MAX_REPLAYED_CHANGES + 5; i++) {
+            messageRepository.saveIfAbsent(i + "@1234:star-a", message(i + "@1234:star-a", "active", i));
+        }
+
+        List<String> events = new ArrayList<>();
+        messageService.replayChanges(new MessageIndex.ChangeKey(0, ""), (eventType, eventId, data) -> events.add(eventType));
+
+        assertEquals(MessageService.MAX_REPLAYED_CHANGES + 1, events.size());
+        assertEquals(MessageChangeFeed.MESSAGE_CREATED, events.get(MessageService.MAX_REPLAYED_CHANGES - 1));
+        assertEquals(MessageChangeFeed.RESYNC, events.get(MessageService.MAX_REPLAYED_CHANGES));
+    }
+
+    private static MessageService.MessageQuery query(Integer limit, String cursor, String origin, Long createdAfter, Long createdBefore) {
+        return new MessageService.MessageQuery("all", "id", limit, cursor, null, origin, createdAfter, createdBefore, null);
+    }
+
+    private static MessageService.MessageQuery view(String view) {
+        return new MessageService.MessageQuery("all", view, null, null, null, null, null, null, null);
+    }
+
+    private JsonNode list(MessageService.MessageQuery query) throws Exception {
+        ResponseEntity<?> response = messageService.getMessages("star-a", query, null);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        ((StreamingResponseBody) response.getBody()).writeTo(json);
+        return MAPPER.readTree(json.toByteArray());
+    }
+
+    private static List<String> msgIds(JsonNode page) {
+        List<String> msgIds = new ArrayList<>();
+        page.get("messages").forEach(entry -> msgIds.add(entry.get("msg-id").asText()));
+        assertEquals(msgIds.size(), page.get("totalResults").asInt());
+        return msgIds;
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.vs.starnet.star.service;
+
+import com.vs.starnet.star.constants.OriginType;
+import org.apache.commons.validator.routines.EmailValidator;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OriginClassifierTest {
+
+    private static final Logger LOGGER = LogManager.getRootLogger();
+
+    private final OriginClassifier classifier = new OriginClassifier();
+
+    @Test
+    void testClassifiesComUuidsWithAndWithoutStar() {
+        assertEquals(new OriginClassifier.Origin(OriginType.COM_UUID, "1234", null), classifier.classify("1234"));
+        assertEquals(new OriginClassifier.Origin(OriginType.COM_UUID, "9999", "star-a"), classifier.classify("9999:star-a"));
+        assertEquals(OriginType.INVALID, classifier.classify("0999").type());
+        assertEquals(OriginType.INVALID, classifier.classify("12345").type());
+        assertEquals(OriginType.INVALID, classifier.classify("12a4").type());
+    }
+
+    @Test
+    void testClassifiesEmailAddressesWithAndWithoutStar() {
+        assertEquals(new OriginClassifier.Origin(OriginType.EMAIL, "user@example.org", null), classifier.classify("user@example.org"));
+        assertEquals(new OriginClassifier.Origin(OriginType.EMAIL, "user@example.org", "star-a"), classifier.classify("user@example.org:star-a"));
+        assertEquals(OriginType.INVALID, classifier.classify("user@example").type());
+        assertEquals(OriginType.INVALID, classifier.classify("@example.org").type());
+        assertEquals(OriginType.INVALID, classifier.classify("user@@example.org").type());
+        assertEquals(OriginType.INVALID, classifier.classify("").type());
+        assertEquals(OriginType.INVALID, classifier.classify(null).type());
+    }
+
+    @Test
+    void testStarOfReadsTheFirstSuffix() {
+        assertEquals("star-a", OriginClassifier.starOf("7@1234:star-a"));
+        assertEquals("star-a", OriginClassifier.starOf("user@example.org:star-a:extra"));
+        assertNull(OriginClassifier.starOf("1234"));
+        assertNull(OriginClassifier.starOf(null));
+    }
+
+    @Test
+    void testEmailResultsAreCached() {
+        classifier.classify("user@example.org:star-a");
+        classifier.classify("user@example.org:star-b");
+        classifier.classify("1234:star-a");
+
+        assertEquals(1, classifier.getCachedEmailCount());
+    }
+
+    /**
+     * microbenchmark of the classification against the former check, which parsed the origin as number
+     * and caught the exception before validating it as email address. only logs the timings,
+     * the numbers depend too much on the machine to assert on them.
+     * left out of the default build, run with: mvn test -Dexcluded.groups= -Dgroups=benchmark
+     */
+    @Test
+    @Tag("benchmark")
+    void benchmarkClassification() {
+        String[] origins = {"1234:star-a", "user@example.org:star-a", "other.user@mail.example.com:star-b", "5678:star-b"};
+        int iterations = 50_000;
+        int valid = 0;
+        for (int round = 0; round < 2; round++) { // The first round warms up the jit
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                valid += classifier.classify(origins[i & 3]).isValid() ? 1 : 0;
+            }
+            long classifierNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                valid += formerCheck(origins[i & 3]) ? 1 : 0;
+            }
+            long formerNanos = System.nanoTime() - start;
+            LOGGER.info("Origin classification: {} ns/op, former check: {} ns/op",
+                    classifierNanos / iterations, formerNanos / iterations);
+        }
+        assertEquals(4 * iterations, valid);
+    }
+
+    private static boolean formerCheck(String origin) {
+        String id = origin.split(":")[0];
+        try {
+            Integer.parseInt(id);
+            return true;
+        } catch (NumberFormatException e) {
+            return EmailValidator.getInstance().isValid(id);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.vs.starnet.star.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SeenMessageFilterTest {
+
+    private SeenMessageFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        filter = new SeenMessageFilter();
+    }
+
+    @Test
+    void testUnknownMessageIsNotDuplicate() {
+        assertFalse(filter.isDuplicate("1@1234:star-a", id -> false));
+    }
+
+    @Test
+    void testSeenMessageIsDuplicate() {
+        filter.markSeen("1@1234:star-a");
+
+        // The lru answers without asking the store
+        assertTrue(filter.isDuplicate("1@1234:star-a", id -> fail("store should not be consulted")));
+        assertEquals(1L, filter.getStatistics().get("lru-hits"));
+    }
+
+    @Test
+    void testMissingOrEmptyIdIsNeverDuplicate() {
+        filter.markSeen("");
+
+        assertFalse(filter.isDuplicate(null, id -> true));
+        assertFalse(filter.isDuplicate("", id -> true));
+    }
+
+    @Test
+    void testBloomHitIsConfirmedByStore() {
+        // Push the first id out of the lru so only the bloom filter remembers it
+        Set<String> stored = new HashSet<>();
+        for (int i = 0; i < 5000; i++) {
+            String msgId = i + "@1234:star-a";
+            stored.add(msgId);
+            filter.markSeen(msgId);
+        }
+
+        assertFalse(filter.isDuplicate("0@1234:star-a", id -> false));
+        assertTrue(filter.isDuplicate("0@1234:star-a", stored::contains));
+
+        Map<String, Object> statistics = filter.getStatistics();
+        assertEquals(2L, statistics.get("bloom-hits"));
+        assertEquals(1L, statistics.get("bloom-false-positives"));
+        assertEquals(1L, statistics.get("duplicates"));
+    }
+}
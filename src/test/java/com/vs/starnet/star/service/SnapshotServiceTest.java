@@ -0,0 +1,133 @@
+package com.vs.starnet.star.service;
+
+import com.vs.starnet.star.constants.NodeRole;
+import com.vs.starnet.star.model.Component;
+import com.vs.starnet.star.model.Message;
+import com.vs.starnet.star.model.Sol;
+import com.vs.starnet.star.repository.HeapMessageStore;
+import com.vs.starnet.star.repository.MessageRepository;
+import com.vs.starnet.star.repository.SolRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.net.InetAddress;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class SnapshotServiceTest {
+
+    @TempDir
+    Path storeDir;
+
+    private SolRepository solRepository;
+    private MessageRepository messageRepository;
+    private MessageService messageService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        ApplicationState.setCurrentRole(NodeRole.SOL);
+        ApplicationState.setIp(InetAddress.getLoopbackAddress());
+        ApplicationState.setPort(8080);
+        ApplicationState.setGroupId("test-group");
+        ApplicationState.setComUuid("1234");
+        ApplicationState.setStarUuid("star-a");
+        StarService.resetForTests();
+
+        solRepository = new SolRepository();
+        messageRepository = new MessageRepository(new HeapMessageStore());
+        messageService = mock(MessageService.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        StarService.resetForTests();
+    }
+
+    private SnapshotService snapshotService(long maxAgeMillis) {
+        return new SnapshotService(solRepository, messageRepository, messageService, storeDir.toString(), 8080, 0, maxAgeMillis);
+    }
+
+    private void fillState() {
+        StarService.getComponents().put("5678", Component.builder()
+                .solStarUuid("star-a").solComUuid("1234").comUuid("5678")
+                .comIp("127.0.0.1").comPort(8081).status("200")
+                .lastInteractionTime(new AtomicReference<>(Instant.now()))
+                .integrationTime(Instant.ofEpochMilli(1000)).build());
+        StarService.getInactiveComponents().put("9999", Component.builder()
+                .solStarUuid("star-a").solComUuid("1234").comUuid("9999")
+                .comIp("127.0.0.1").comPort(8082).status("left").build());
+        // Deregistered on EXIT before the last snapshot
+        StarService.getComponents().put("6789", Component.builder()
+                .solStarUuid("star-a").solComUuid("1234").comUuid("6789")
+                .comIp("127.0.0.1").comPort(8083).status("disconnected").build());
+        solRepository.save("star-b", Sol.builder().solStarUuid("star-b").solUuid("4321")
+                .comIp("10.0.0.2").comPort(8090).noCom(4).status("200").build());
+        solRepository.save("star-c", Sol.builder().solStarUuid("star-c").solUuid("5432")
+                .comIp("10.0.0.3").comPort(8090).noCom(4).status("200").build());
+        solRepository.delete("star-c");
+        messageRepository.saveIfAbsent("7@1234:star-a", Message.builder()
+                .star("star-a").origin("5678:star-a").sender("5678").msgId("7@1234:star-a")
+                .version("1").created(100L).changed(100L).subject("Subject").message("Body").status("active").build());
+    }
+
+    @Test
+    void testSnapshotRestoresSolState() {
+        SnapshotService snapshotService = snapshotService(60_000);
+        fillState();
+        assertTrue(snapshotService.writeSnapshot());
+
+        // A restart starts with empty stores and a new random COM-UUID
+        StarService.resetForTests();
+        solRepository = new SolRepository();
+        messageRepository = new MessageRepository(new HeapMessageStore());
+        ApplicationState.setComUuid("4444");
+        SnapshotService restarted = snapshotService(60_000);
+
+        SnapshotService.Snapshot snapshot = restarted.loadSnapshot();
+        assertNotNull(snapshot);
+        restarted.restoreIdentity(snapshot);
+        assertEquals("1234", ApplicationState.getComUuid());
+
+        restarted.restore(snapshot);
+        Component component = StarService.getComponents().get("5678");
+        assertEquals(8081, component.getComPort());
+        assertEquals(Instant.ofEpochMilli(1000), component.getIntegrationTime());
+        assertNotNull(component.getLastInteractionTime());
+        assertEquals("left", StarService.getInactiveComponents().get("9999").getStatus());
+        assertFalse(StarService.getComponents().containsKey("6789"));
+        assertEquals("disconnected", StarService.getInactiveComponents().get("6789").getStatus());
+        assertEquals("10.0.0.2", solRepository.findById("star-b").getComIp());
+        // Restored inactive stars change the version like every other change of the stars
+        long version = solRepository.getVersion();
+        assertTrue(solRepository.findAllInactive().containsKey("star-c"));
+        assertFalse(solRepository.saveInactiveIfAbsent("star-c", solRepository.findAllInactive().get("star-c")));
+        assertEquals(version, solRepository.getVersion());
+        assertTrue(version >= 2);
+        assertEquals("Body", messageRepository.findById("7@1234:star-a").getMessage());
+        verify(messageService).restoreNonce();
+    }
+
+    @Test
+    void testSnapshotOfAnotherStarIsIgnored() {
+        fillState();
+        assertTrue(snapshotService(60_000).writeSnapshot());
+
+        ApplicationState.setGroupId("other-group");
+        assertNull(snapshotService(60_000).loadSnapshot());
+    }
+
+    @Test
+    void testStaleSnapshotIsIgnored() throws InterruptedException {
+        fillState();
+        assertTrue(snapshotService(1).writeSnapshot());
+        Thread.sleep(10);
+
+        assertNull(snapshotService(1).loadSnapshot());
+    }
+}
@@ -0,0 +1,55 @@
+package com.vs.starnet.star.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SubjectIndexTest {
+
+    private SubjectIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new SubjectIndex();
+    }
+
+    private List<String> search(String query) {
+        return index.search(query, 10).stream().map(SubjectIndex.Hit::msgId).toList();
+    }
+
+    @Test
+    void testTokenizeSplitsOnPunctuationAndLowerCases() {
+        assertEquals(List.of("status", "report", "2024", "star"), SubjectIndex.tokenize("Status-Report: 2024 (star) status"));
+        assertTrue(SubjectIndex.tokenize(" ,.- ").isEmpty());
+        assertTrue(SubjectIndex.tokenize(null).isEmpty());
+    }
+
+    @Test
+    void testMessagesMatchingMoreAndRarerWordsRankFirst() {
+        index.add("1@1234:star-a", "weekly status report");
+        index.add("2@1234:star-a", "status of the build");
+        index.add("3@1234:star-a", "lunch");
+        index.add("4@1234:star-a", "build report");
+        index.add("5@1234:star-a", "status update");
+
+        // "report" is rarer than "status", equal scores are ordered by msg-id
+        assertEquals(List.of("1@1234:star-a", "4@1234:star-a", "2@1234:star-a", "5@1234:star-a"), search("status REPORT"));
+        assertEquals(List.of("3@1234:star-a"), search("lunch"));
+        assertTrue(search("dinner").isEmpty());
+        assertEquals(1, index.search("report", 1).size());
+    }
+
+    @Test
+    void testRemoveDropsMessageAndEmptyWords() {
+        index.add("1@1234:star-a", "weekly status");
+        index.add("2@1234:star-a", "status");
+
+        index.remove("1@1234:star-a", "weekly status");
+
+        assertEquals(List.of("2@1234:star-a"), search("weekly status"));
+        assertEquals(1, index.getTokenCount());
+    }
+}
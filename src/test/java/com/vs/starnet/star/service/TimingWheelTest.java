@@ -0,0 +1,50 @@
+package com.vs.starnet.star.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimingWheelTest {
+
+    @Test
+    void testValuesAreDueAtTheirDeadline() {
+        TimingWheel<String> wheel = new TimingWheel<>(1000);
+        wheel.schedule(1005, "level 0");
+        wheel.schedule(1000 + 64 * 64 - 1, "level 1");
+        wheel.schedule(1000 + 300_000, "level 2");
+        wheel.schedule(1000 + 20_000_000L, "beyond the wheel");
+        wheel.schedule(900, "past");
+        assertEquals(5, wheel.size());
+
+        assertEquals(List.of("past"), wheel.advance(1001));
+        assertTrue(wheel.advance(1004).isEmpty());
+        assertEquals(List.of("level 0"), wheel.advance(1005));
+        assertTrue(wheel.advance(1000 + 64 * 64 - 2).isEmpty());
+        assertEquals(List.of("level 1"), wheel.advance(1000 + 64 * 64 - 1));
+        assertTrue(wheel.advance(1000 + 299_999).isEmpty());
+        assertEquals(List.of("level 2"), wheel.advance(1000 + 300_000));
+        assertTrue(wheel.advance(1000 + 19_999_999L).isEmpty());
+        assertEquals(List.of("beyond the wheel"), wheel.advance(1000 + 20_000_000L));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void testEveryDeadlineFiresExactlyOnce() {
+        TimingWheel<Long> wheel = new TimingWheel<>(0);
+        for (long deadline = 1; deadline <= 10_000; deadline += 7) {
+            wheel.schedule(deadline, deadline);
+        }
+
+        List<Long> fired = new ArrayList<>();
+        for (long now = 1; now <= 10_000; now++) {
+            for (long deadline : wheel.advance(now)) {
+                assertEquals(now, deadline);
+                fired.add(deadline);
+            }
+        }
+        assertEquals(1429, fired.size());
+    }
+}
@@ -0,0 +1,36 @@
+package com.vs.starnet.star.service;
+
+import com.vs.starnet.star.repository.HeapMessageStore;
+import com.vs.starnet.star.repository.MessageRepository;
+import org.junit.jupiter.api.Test;
+
+import static com.vs.starnet.star.TestMessages.message;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TombstoneCompactorTest {
+
+    @Test
+    void testRemovesOnlyOldTombstones() {
+        MessageRepository messageRepository = new MessageRepository(new HeapMessageStore());
+        messageRepository.saveIfAbsent("1@1234:star-a", message("1@1234:star-a", "deleted", 100));
+        messageRepository.saveIfAbsent("2@1234:star-a", message("2@1234:star-a", "deleted", 950));
+        messageRepository.saveIfAbsent("3@1234:star-a", message("3@1234:star-a", "active", 100));
+        TombstoneCompactor compactor = new TombstoneCompactor(messageRepository, 0, 100, 500);
+
+        assertEquals(1, compactor.compact(1000));
+
+        assertFalse(messageRepository.existsById("1@1234:star-a"));
+        assertTrue(messageRepository.existsById("2@1234:star-a"));
+        assertTrue(messageRepository.existsById("3@1234:star-a"));
+        assertEquals(1, messageRepository.findIdsByStatus("deleted").size());
+        assertEquals(1L, compactor.getStatistics().get("removedTombstones"));
+        assertTrue(compactor.getStatistics().get("reclaimedBytes") > 0);
+
+        // The id of the removed tombstone is kept for late deliveries until its own retention ends
+        assertTrue(compactor.wasCompacted("1@1234:star-a"));
+        assertFalse(compactor.wasCompacted("3@1234:star-a"));
+        assertFalse(compactor.wasCompacted(null));
+        compactor.compact(1600);
+        assertFalse(compactor.wasCompacted("1@1234:star-a"));
+    }
+}
@@ -4,6 +4,8 @@ import com.vs.starnet.star.constants.NodeRole;
 import com.vs.starnet.star.service.ApplicationState;
 import com.vs.starnet.star.service.ComponentService;
 import com.vs.starnet.star.service.GalaxyService;
+import com.vs.starnet.star.service.MessageService;
+import com.vs.starnet.star.service.SnapshotService;
 import com.vs.starnet.star.service.StarService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -21,12 +23,18 @@ class CommandListenerTest {
     @Mock
     private GalaxyService galaxyService;
 
+    @Mock
+    private MessageService messageService;
+
+    @Mock
+    private SnapshotService snapshotService;
+
     private CommandListener commandListener;
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
-        commandListener = new CommandListener(componentService, starService, galaxyService);
+        commandListener = new CommandListener(componentService, starService, galaxyService, messageService, snapshotService);
     }
 
     @Test
@@ -37,6 +45,7 @@ class CommandListenerTest {
         commandListenerTestExit();
 
         verify(componentService).deregisterComponent();
+        verify(snapshotService, never()).writeSnapshot();
         verify(starService, never()).deregisterComponents();
         verify(galaxyService, never()).unregisterLocalStar();
     }
@@ -48,8 +57,12 @@ class CommandListenerTest {
 
         commandListenerTestExit();
 
-        verify(starService).deregisterComponents();
-        verify(galaxyService).unregisterLocalStar();
+        // The snapshot is written once the components were told to leave
+        InOrder order = inOrder(galaxyService, starService, snapshotService);
+        order.verify(galaxyService).unregisterLocalStar();
+        order.verify(starService).deregisterComponents();
+        order.verify(snapshotService).writeSnapshot();
+        order.verify(starService).exitSol();
         verify(componentService, never()).deregisterComponent();
     }
 